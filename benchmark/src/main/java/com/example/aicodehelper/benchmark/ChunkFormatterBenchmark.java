@@ -0,0 +1,102 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.controller.ChunkFormatter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 AiController 原来的逐 chunk 处理 (trim + UnicodeBlock + indexOf + Map + ObjectMapper) 与 ChunkFormatter
+ * <p>
+ * 运行: 在 IDE 中执行 main, 或加 -prof gc 查看每次操作的分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkFormatterBenchmark {
+
+    private static final String[] CHUNKS = {
+            "Java", " is", " a", " language", "，", "你好", "世界", "。", " Here", "'s", " the",
+            " code", ":\n", "```java", "\n", "public", " class", " Main", " {", "\"quoted\"", " ", "学习", "路线", "!"
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Benchmark
+    public void legacyPerChunkMap(Blackhole blackhole) throws JsonProcessingException {
+        boolean isFirst = true;
+        for (String chunk : CHUNKS) {
+            if (chunk == null || chunk.trim().isEmpty()) {
+                continue;
+            }
+            String trimmedChunk = chunk.trim();
+            String processedChunk = trimmedChunk;
+            if (!isFirst && !trimmedChunk.isEmpty()) {
+                char firstChar = trimmedChunk.charAt(0);
+                if (!legacyIsPunctuation(firstChar) && !legacyIsCJK(firstChar)) {
+                    processedChunk = " " + trimmedChunk;
+                }
+            }
+            isFirst = false;
+            blackhole.consume(objectMapper.writeValueAsString(Map.of("chunk", processedChunk)));
+        }
+    }
+
+    @Benchmark
+    public void formatterPerChunkFrame(Blackhole blackhole) {
+        ChunkFormatter formatter = new ChunkFormatter();
+        for (String chunk : CHUNKS) {
+            formatter.append(chunk);
+            blackhole.consume(formatter.flush());
+        }
+    }
+
+    @Benchmark
+    public void formatterCoalescedFrame(Blackhole blackhole) {
+        ChunkFormatter formatter = new ChunkFormatter();
+        for (String chunk : CHUNKS) {
+            formatter.append(chunk);
+        }
+        blackhole.consume(formatter.flush());
+    }
+
+    private static boolean legacyIsCJK(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+
+    private static boolean legacyIsPunctuation(char c) {
+        String punctuations = ".,;:!?，。；：！？、\"\"''()[]{}《》【】";
+        return punctuations.indexOf(c) != -1;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChunkFormatterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
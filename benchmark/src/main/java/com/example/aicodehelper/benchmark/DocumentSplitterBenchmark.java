@@ -0,0 +1,79 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.rag.TokenBudgetContentRetriever;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 RagConfig 的参数 (段落最多 1000 字, 重叠 200 字) 切分 resources/docs 下的全部文档,
+ * 以及把切分结果按 token 预算组装成提示词上下文
+ * <p>
+ * 文档目录默认是 ../src/main/resources/docs (在 benchmark 目录下运行), 可用 -Ddocs.path=... 指定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentSplitterBenchmark {
+
+    private final DocumentByParagraphSplitter splitter = new DocumentByParagraphSplitter(1000, 200);
+
+    private List<Document> documents;
+
+    private TokenBudgetContentRetriever packer;
+
+    @Setup
+    public void setup() {
+        Path docs = Path.of(System.getProperty("docs.path", "../src/main/resources/docs"));
+        documents = FileSystemDocumentLoader.loadDocuments(docs);
+        if (documents.isEmpty()) {
+            throw new IllegalStateException("no documents under " + docs.toAbsolutePath());
+        }
+        // 取前 8 个段落作为检索候选, 和线上的候选数一致
+        List<Content> candidates = splitter.splitAll(documents).stream()
+                .limit(8)
+                .map(segment -> Content.from(TextSegment.from(
+                        segment.metadata().getString("file_name") + "\n" + segment.text(), segment.metadata())))
+                .toList();
+        packer = new TokenBudgetContentRetriever(query -> candidates, 1200, 200);
+    }
+
+    @Benchmark
+    public List<TextSegment> splitCorpus() {
+        return splitter.splitAll(documents);
+    }
+
+    @Benchmark
+    public List<Content> packContext() {
+        return packer.retrieve(Query.from("Java 集合面试题"));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DocumentSplitterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
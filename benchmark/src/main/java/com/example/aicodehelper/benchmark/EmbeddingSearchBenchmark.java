@@ -0,0 +1,137 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.rag.HnswEmbeddingStore;
+import com.example.aicodehelper.ai.rag.MappedVectorStore;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量检索: langchain4j 自带的内存库、内存映射的精确检索、HNSW 近似检索, 1k/10k/100k 段落
+ * <p>
+ * 向量按固定种子生成, 带聚类结构; HNSW 在 100k 时建索引较慢, 只在 Trial 开始时建一次
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class EmbeddingSearchBenchmark {
+
+    private static final int DIMENSION = 256;
+
+    private static final int QUERIES = 64;
+
+    @Param({"1000", "10000", "100000"})
+    public int segments;
+
+    @Param({"in-memory", "mapped", "hnsw"})
+    public String store;
+
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    private Path tempDir;
+
+    private EmbeddingSearchRequest[] requests;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        float[][] centroids = new float[Math.max(16, segments / 1000)][];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = gaussian(random, 1);
+        }
+        List<String> ids = new ArrayList<>(segments);
+        List<Embedding> embeddings = new ArrayList<>(segments);
+        List<TextSegment> textSegments = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            ids.add("seg-" + i);
+            embeddings.add(Embedding.from(around(random, centroids[random.nextInt(centroids.length)])));
+            textSegments.add(TextSegment.from("segment " + i));
+        }
+        tempDir = Files.createTempDirectory("embedding-search");
+        embeddingStore = switch (store) {
+            case "in-memory" -> new InMemoryEmbeddingStore<>();
+            case "mapped" -> new MappedVectorStore(tempDir.resolve("vectors.f32"));
+            case "hnsw" -> new HnswEmbeddingStore(tempDir.resolve("hnsw.idx"), 16, 100, 64);
+            default -> throw new IllegalArgumentException(store);
+        };
+        embeddingStore.addAll(ids, embeddings, textSegments);
+        requests = new EmbeddingSearchRequest[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            requests[i] = EmbeddingSearchRequest.builder()
+                    .queryEmbedding(Embedding.from(around(random, centroids[random.nextInt(centroids.length)])))
+                    .maxResults(10)
+                    .minScore(0.0)
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public Object search() {
+        next = (next + 1) % QUERIES;
+        return embeddingStore.search(requests[next]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (embeddingStore instanceof Closeable closeable) {
+            closeable.close();
+        }
+        try (var files = Files.walk(tempDir)) {
+            files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static float[] gaussian(Random random, double sigma) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) (random.nextGaussian() * sigma);
+        }
+        return vector;
+    }
+
+    private static float[] around(Random random, float[] centroid) {
+        float[] vector = gaussian(random, 0.3);
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] += centroid[i];
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmbeddingSearchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.aicodehelper.benchmark;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+
+/**
+ * 确定性的本地对话模型: 不发网络请求, 固定返回一段中英混排的回答
+ * <p>
+ * 流式版本在调用线程上逐个回调 chunk, 基准里测到的只是本项目自己的开销
+ */
+public class FakeChatModel implements ChatModel {
+
+    static final List<String> CHUNKS = List.of(
+            "学习", "Java", " 建议", "先", "掌握", "集合", "框架", "，", "再", "深入", " JVM", " 和",
+            " concurrency", "。", "\n", "```java", "\n", "Map<String, Integer>", " counts", " =",
+            " new", " HashMap<>();", "\n", "```", "\n", "最后", "多做", "项目", "!");
+
+    private static final String ANSWER = String.join("", CHUNKS);
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return response();
+    }
+
+    static ChatResponse response() {
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from(ANSWER))
+                .tokenUsage(new TokenUsage(100, CHUNKS.size()))
+                .build();
+    }
+
+    public static class Streaming implements StreamingChatModel {
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            for (String chunk : CHUNKS) {
+                handler.onPartialResponse(chunk);
+            }
+            handler.onCompleteResponse(response());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.aicodehelper.benchmark;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 确定性的本地向量模型: 分词后按哈希散列到固定维度并归一化
+ * <p>
+ * 同样的文本总是得到同样的向量, 词语重合越多余弦相似度越高, 足够让检索链路跑出有意义的结果
+ */
+public class FakeEmbeddingModel implements EmbeddingModel {
+
+    private final int dimension;
+
+    public FakeEmbeddingModel(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        List<Embedding> embeddings = new ArrayList<>(textSegments.size());
+        int tokens = 0;
+        for (TextSegment segment : textSegments) {
+            List<String> terms = terms(segment.text());
+            tokens += terms.size();
+            embeddings.add(Embedding.from(embed(terms)));
+        }
+        return Response.from(embeddings, new TokenUsage(tokens));
+    }
+
+    /**
+     * 英文数字按词, 中文按相邻两字切分
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 128 && Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+                continue;
+            }
+            if (!word.isEmpty()) {
+                terms.add(word.toString());
+                word.setLength(0);
+            }
+            if (Character.isIdeographic(c)) {
+                boolean pair = i + 1 < text.length() && Character.isIdeographic(text.charAt(i + 1));
+                terms.add(pair ? text.substring(i, i + 2) : String.valueOf(c));
+            }
+        }
+        if (!word.isEmpty()) {
+            terms.add(word.toString());
+        }
+        return terms;
+    }
+
+    private float[] embed(List<String> terms) {
+        float[] vector = new float[dimension];
+        for (String term : terms) {
+            int hash = term.hashCode() * 0x9E3779B1;
+            vector[Math.floorMod(hash, dimension)] += (hash & 1) == 0 ? 1 : -1;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            vector[0] = 1;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+}
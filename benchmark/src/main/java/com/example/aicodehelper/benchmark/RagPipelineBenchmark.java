@@ -0,0 +1,93 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.rag.TokenBudgetContentRetriever;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次完整对话在本地的开销: 输入护栏、查询向量化、检索、上下文组装、会话记忆、提示词拼装
+ * <p>
+ * 对话和向量模型都是确定性的假模型, 结果不含网络时间, 用来发现本项目代码引入的回退
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RagPipelineBenchmark {
+
+    private static final String[] QUESTIONS = {
+            "HashMap 的扩容机制是什么", "Java 学习路线怎么规划", "校招面试要准备哪些项目", "JVM 垃圾回收器有哪些"
+    };
+
+    private AiCodeHelperService service;
+
+    private int next;
+
+    @Setup
+    public void setup() {
+        FakeEmbeddingModel embeddingModel = new FakeEmbeddingModel(256);
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        List<Document> documents = FileSystemDocumentLoader.loadDocuments(
+                Path.of(System.getProperty("docs.path", "../src/main/resources/docs")));
+        List<TextSegment> segments = new DocumentByParagraphSplitter(1000, 200).splitAll(documents).stream()
+                .map(segment -> TextSegment.from(segment.metadata().getString("file_name") + "\n" + segment.text(),
+                        segment.metadata()))
+                .toList();
+        store.addAll(embeddingModel.embedAll(segments).content(), segments);
+        EmbeddingStoreContentRetriever retriever = EmbeddingStoreContentRetriever.builder()
+                .embeddingModel(embeddingModel)
+                .embeddingStore(store)
+                .maxResults(8)
+                .build();
+        service = AiServices.builder(AiCodeHelperService.class)
+                .chatModel(new FakeChatModel())
+                .streamingChatModel(new FakeChatModel.Streaming())
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(6))
+                .contentRetriever(new TokenBudgetContentRetriever(retriever, 1200, 200))
+                .build();
+    }
+
+    @Benchmark
+    public String chat() {
+        next = (next + 1) % QUESTIONS.length;
+        return service.chat(next, QUESTIONS[next]);
+    }
+
+    @Benchmark
+    public List<String> chatStream() {
+        next = (next + 1) % QUESTIONS.length;
+        return service.chatStream(next, QUESTIONS[next]).collectList().block();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RagPipelineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.aicodehelper.benchmark;
+
+import com.example.aicodehelper.ai.guardrail.AhoCorasickMatcher;
+import com.example.aicodehelper.ai.guardrail.SafeInputGuardRail;
+import com.example.aicodehelper.ai.guardrail.SensitiveWords;
+import dev.langchain4j.data.message.UserMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比原来的 toLowerCase + split("\\W+") + Set 查找与 Aho-Corasick 单遍扫描, 以及完整的 SafeInputGuardRail.validate
+ * <p>
+ * 词典规模和输入长度两个维度, 长输入模拟用户粘贴的大段代码; 加 -prof gc 可看到前者的分配量随输入线性增长
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeInputGuardRailBenchmark {
+
+    @Param({"2", "1000", "10000"})
+    public int dictionarySize;
+
+    @Param({"64", "100000"})
+    public int inputLength;
+
+    private Set<String> words;
+
+    private AhoCorasickMatcher matcher;
+
+    private String input;
+
+    private UserMessage message;
+
+    private final SafeInputGuardRail guardRail = new SafeInputGuardRail();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        words = new HashSet<>(Set.of("kill", "evil"));
+        while (words.size() < dictionarySize) {
+            StringBuilder word = new StringBuilder();
+            for (int i = 4 + random.nextInt(6); i > 0; i--) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(word + "zq");
+        }
+        matcher = AhoCorasickMatcher.compile(words);
+        String code = "public static void main(String[] args) { System.out.println(\"Hello, 世界\"); }\n";
+        StringBuilder text = new StringBuilder(inputLength + code.length());
+        while (text.length() < inputLength) {
+            text.append(code);
+        }
+        input = text.substring(0, inputLength);
+        message = UserMessage.from(input);
+        SensitiveWords.replace(words);
+    }
+
+    @Benchmark
+    public void legacySplit(Blackhole blackhole) {
+        String hit = null;
+        for (String word : input.toLowerCase().split("\\W+")) {
+            if (words.contains(word)) {
+                hit = word;
+                break;
+            }
+        }
+        blackhole.consume(hit);
+    }
+
+    @Benchmark
+    public void ahoCorasick(Blackhole blackhole) {
+        blackhole.consume(matcher.findFirst(input));
+    }
+
+    @Benchmark
+    public void validate(Blackhole blackhole) {
+        blackhole.consume(guardRail.validate(message));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SafeInputGuardRailBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
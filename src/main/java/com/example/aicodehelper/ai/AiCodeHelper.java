@@ -15,7 +15,7 @@ import org.springframework.stereotype.Service;
 public class AiCodeHelper {
 
     @Resource
-    private ChatModel GithubChatModel;
+    private ChatModel routingChatModel;
 
     private static final String SYSTEM_PROMPT = """
             """ ;
@@ -23,9 +23,9 @@ public class AiCodeHelper {
     public String chat(String message){
         SystemMessage systemMessage = SystemMessage.from(SYSTEM_PROMPT);
         UserMessage userMessage = UserMessage.from(message);
-        ChatResponse response = GithubChatModel.chat(systemMessage, userMessage);
+        ChatResponse response = routingChatModel.chat(systemMessage, userMessage);
         String text = response.aiMessage().text();
-        log.info("AI Response: {}", text);
+        log.debug("AI Response: {}", text);
         return text;
     }
 
@@ -33,9 +33,9 @@ public class AiCodeHelper {
 
     // 简单对话-自定义用户消息
     public String chat(UserMessage userMessage) {
-        ChatResponse response = GithubChatModel.chat(userMessage);
+        ChatResponse response = routingChatModel.chat(userMessage);
         String text = response.aiMessage().text();
-        log.info("AI Response: {}", text);
+        log.debug("AI Response: {}", text);
         return text;
     }
 }
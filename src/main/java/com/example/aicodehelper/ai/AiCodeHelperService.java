@@ -6,12 +6,13 @@ import dev.langchain4j.service.Result;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.guardrail.InputGuardrails;
+import dev.langchain4j.service.memory.ChatMemoryAccess;
 import reactor.core.publisher.Flux;
 
 import java.util.List;
 
 @InputGuardrails(SafeInputGuardRail.class)
-public interface AiCodeHelperService {
+public interface AiCodeHelperService extends ChatMemoryAccess {
     @SystemMessage("fromResource = 'system-prompt.txt'")
     String chat(@MemoryId int memoryId, @UserMessage String userMessage);
 
@@ -1,43 +1,103 @@
 package com.example.aicodehelper.ai;
 
-import com.example.aicodehelper.ai.tools.InterviewQuestionTool;
-import dev.langchain4j.mcp.McpToolProvider;
-import dev.langchain4j.memory.ChatMemory;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import com.example.aicodehelper.ai.cache.SemanticAnswerCache;
+import com.example.aicodehelper.ai.cache.SemanticCachingAiCodeHelperService;
+import com.example.aicodehelper.ai.memory.BoundedChatMemoryStore;
+import com.example.aicodehelper.ai.rag.PrefetchedContentRetriever;
+import com.example.aicodehelper.ai.ratelimit.LlmRequestScheduler;
+import com.example.aicodehelper.ai.ratelimit.RateLimitedChatModel;
+import com.example.aicodehelper.ai.ratelimit.RateLimitedStreamingChatModel;
+import com.example.aicodehelper.ai.ratelimit.RequestContextAiCodeHelperService;
+import com.example.aicodehelper.ai.routing.TieredAiCodeHelperService;
+import com.example.aicodehelper.ai.tools.ParallelToolProvider;
+import com.example.aicodehelper.ai.tools.ToolPrefetchingChatModel;
+import com.example.aicodehelper.ai.tools.ToolPrefetchingStreamingChatModel;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.service.AiServices;
 import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 @Configuration
 public class AiCodeHelperServiceFactory {
     @Resource
-    private ChatModel GithubChatModel;
+    private ChatModel routingChatModel;
+
+    @Resource
+    private ChatModel cheapChatModel;
 
     @Resource
     private ContentRetriever contentRetriever;
 
     @Resource
-    private McpToolProvider mcpToolProvider;
+    private StreamingChatModel routingStreamingChatModel;
+
+    @Resource
+    private EmbeddingModel queryEmbeddingModel;
+
+    @Resource
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Resource
+    private ChatMemoryProvider chatMemoryProvider;
 
     @Resource
-    private StreamingChatModel GithubStreamingChatModel;
+    private BoundedChatMemoryStore chatMemoryStore;
+
+    @Resource
+    private ParallelToolProvider parallelToolProvider;
+
+    @Resource
+    private LlmRequestScheduler llmRequestScheduler;
+
+    @Value("${llm.rate-limit.expected-output-tokens:512}")
+    private int expectedOutputTokens;
+
+    @Value("${cache.semantic-answer.enabled:false}")
+    private boolean semanticCacheEnabled;
 
     @Bean
-    public AiCodeHelperService aiCodeHelperService() {
+    public AiCodeHelperService aiCodeHelperService() throws IOException {
+        // 多个模型后端按延迟和错误率路由, 学习报告交给便宜档的模型
+        AiCodeHelperService aiCodeHelperService = new TieredAiCodeHelperService(
+                buildService(routingChatModel, routingStreamingChatModel),
+                buildService(cheapChatModel, routingStreamingChatModel));
+        if (semanticCacheEnabled) {
+            // 语义答案缓存, 相近的热门问题直接返回已有答案
+            String systemPrompt = new ClassPathResource("system-prompt.txt").getContentAsString(StandardCharsets.UTF_8);
+            aiCodeHelperService = new SemanticCachingAiCodeHelperService(aiCodeHelperService, queryEmbeddingModel,
+                    contentRetriever, semanticAnswerCache, chatMemoryProvider, systemPrompt);
+        }
+        // 带上 memoryId, 限流调度器按会话公平排队
+        return new RequestContextAiCodeHelperService(aiCodeHelperService);
+    }
+
+    private AiCodeHelperService buildService(ChatModel chatModel, StreamingChatModel streamingChatModel) {
         // 构建AI服务
-        AiCodeHelperService aiCodeHelperService = AiServices.builder(AiCodeHelperService.class)
-                .chatModel(GithubChatModel)
-                .streamingChatModel(GithubStreamingChatModel) // 流式输出
-                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.withMaxMessages(3)) // 减少到3条消息以降低token使用
-                .contentRetriever(contentRetriever) // RAG内容检索器
-                .tools(new InterviewQuestionTool())
-                .toolProvider(mcpToolProvider)  // mcp工具调用
+        AiCodeHelperService service = AiServices.builder(AiCodeHelperService.class)
+                // 模型一次请求多个工具时并发执行
+                // 先经过客户端限流, 再交给路由选择后端
+                .chatModel(new ToolPrefetchingChatModel(
+                        new RateLimitedChatModel(chatModel, llmRequestScheduler, expectedOutputTokens), parallelToolProvider))
+                .streamingChatModel(new ToolPrefetchingStreamingChatModel(
+                        new RateLimitedStreamingChatModel(streamingChatModel, llmRequestScheduler, expectedOutputTokens),
+                        parallelToolProvider)) // 流式输出
+                .chatMemoryProvider(chatMemoryProvider) // 滑动窗口 + 旧消息摘要
+                .contentRetriever(new PrefetchedContentRetriever(contentRetriever)) // RAG内容检索器, 语义缓存已检索过时复用结果
+                .toolProvider(parallelToolProvider)  // 本地工具 + mcp工具调用, 每个工具有独立超时
                 .build();
-        return aiCodeHelperService;
+        // AiServices 按 memoryId 缓存 ChatMemory 且从不清理, 存储淘汰会话时一起移除
+        chatMemoryStore.addEvictionListener(service::evictChatMemory);
+        return service;
     }
 
 }
@@ -0,0 +1,192 @@
+package com.example.aicodehelper.ai.batch;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.ratelimit.LlmRequestContext;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.service.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * 批量生成学习报告或 RAG 回答
+ * <p>
+ * 回答依赖会话记忆, 所以只合并同一会话里重复的问题, 不同 memoryId 的相同问题各自调用模型;
+ * 开始前把所有不同的问题文本一次性向量化, 预热查询向量缓存, 之后每条检索都命中缓存.
+ * 同一会话的问题按出现顺序逐个回答, 免得多轮问答在会话记忆里交错; 不同会话之间并发, 模型调用并发数有上限.
+ * 每完成一个问题就回调一次, 单条失败只体现在该条结果里.
+ */
+public class BatchChatService implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchChatService.class);
+
+    public enum Kind {
+        REPORT, RAG
+    }
+
+    public record Item(int memoryId, String message) {
+    }
+
+    public record Request(Kind kind, List<Item> items) {
+    }
+
+    /**
+     * 去重的键: 同一会话里的同一个问题
+     */
+    private record Question(int memoryId, String message) {
+    }
+
+    /**
+     * 单条结果, 按 index 对应请求里的条目; 成功时 answer 或 report 非空, 失败时只有 error
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ItemResult(int index, int memoryId, String answer, AiCodeHelperService.Report report,
+                             List<String> sources, String error, boolean deduplicated) {
+    }
+
+    private final AiCodeHelperService aiCodeHelperService;
+
+    private final EmbeddingModel queryEmbeddingModel;
+
+    private final int parallelism;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BatchChatService(AiCodeHelperService aiCodeHelperService, EmbeddingModel queryEmbeddingModel, int parallelism) {
+        this.aiCodeHelperService = aiCodeHelperService;
+        this.queryEmbeddingModel = queryEmbeddingModel;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 异步执行一批请求, results 可能被多个线程同时调用, 抛出异常时整批停止;
+     * 取消返回的 future 后不再发起新的模型调用
+     */
+    public CompletableFuture<Void> execute(Kind kind, List<Item> items, Consumer<ItemResult> results) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                run(kind, items, results, done);
+                done.complete(null);
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    private void run(Kind kind, List<Item> items, Consumer<ItemResult> results, CompletableFuture<Void> done)
+            throws InterruptedException {
+        // (会话, 问题) -> 条目下标, 保持首次出现的顺序
+        Map<Question, List<Integer>> questions = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            questions.computeIfAbsent(new Question(item.memoryId(), item.message().strip()), key -> new ArrayList<>()).add(i);
+        }
+        if (kind == Kind.RAG) {
+            // 查询向量与会话无关, 不同会话的相同问题只向量化一次
+            prewarm(questions.keySet().stream().map(Question::message).distinct().toList());
+        }
+        // 会话 -> 该会话的问题, 每个会话占一个并发名额, 会话内串行
+        Map<Integer, List<Map.Entry<Question, List<Integer>>>> sessions = new LinkedHashMap<>();
+        for (Map.Entry<Question, List<Integer>> question : questions.entrySet()) {
+            sessions.computeIfAbsent(question.getKey().memoryId(), key -> new ArrayList<>()).add(question);
+        }
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<Void>> calls = new ArrayList<>(sessions.size());
+        for (List<Map.Entry<Question, List<Integer>>> session : sessions.values()) {
+            permits.acquire();
+            if (done.isDone()) {
+                permits.release();
+                break;
+            }
+            calls.add(CompletableFuture.runAsync(() -> {
+                try {
+                    for (Map.Entry<Question, List<Integer>> question : session) {
+                        if (done.isDone()) {
+                            break;
+                        }
+                        answer(kind, items, question.getKey(), question.getValue(), results);
+                    }
+                } catch (RuntimeException e) {
+                    // 结果写不出去 (通常是客户端已断开), 整批停止
+                    done.completeExceptionally(e);
+                } finally {
+                    permits.release();
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void answer(Kind kind, List<Item> items, Question question, List<Integer> indexes,
+                        Consumer<ItemResult> results) {
+        int memoryId = question.memoryId();
+        String message = question.message();
+        String answer = null;
+        AiCodeHelperService.Report report = null;
+        List<String> sources = null;
+        String error = null;
+        try {
+            // 批量任务按后台优先级排队, 不挤占在线对话的模型额度
+            if (kind == Kind.REPORT) {
+                report = LlmRequestContext.callInBackground(() -> aiCodeHelperService.chatForReport(memoryId, message));
+            } else {
+                Result<String> result = LlmRequestContext.callInBackground(
+                        () -> aiCodeHelperService.chatWithRag(memoryId, message));
+                answer = result.content();
+                sources = sourceFiles(result.sources());
+            }
+        } catch (RuntimeException e) {
+            log.warn("批量请求第 {} 条失败: {}", indexes.get(0), e.toString());
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            results.accept(new ItemResult(index, items.get(index).memoryId(), answer, report, sources, error, i > 0));
+        }
+    }
+
+    /**
+     * 一次请求向量化全部问题, 失败时各条目检索时再各自向量化
+     */
+    private void prewarm(List<String> questions) {
+        List<TextSegment> segments = new ArrayList<>();
+        questions.forEach(question -> segments.add(TextSegment.from(question)));
+        try {
+            LlmRequestContext.callInBackground(() -> queryEmbeddingModel.embedAll(segments));
+        } catch (RuntimeException e) {
+            log.warn("批量预热查询向量失败, 改为逐条向量化: {}", e.toString());
+        }
+    }
+
+    private static List<String> sourceFiles(List<Content> sources) {
+        if (sources == null) {
+            return List.of();
+        }
+        return sources.stream()
+                .map(content -> content.textSegment().metadata().getString("file_name"))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.aicodehelper.ai.batch;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.cache.CachingEmbeddingModel;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class BatchConfig {
+
+    @Value("${batch.parallelism:4}")
+    private int parallelism;
+
+    @Resource
+    private AiCodeHelperService aiCodeHelperService;
+
+    @Resource
+    private CachingEmbeddingModel queryEmbeddingModel;
+
+    @Bean(destroyMethod = "close")
+    public BatchChatService batchChatService() {
+        return new BatchChatService(aiCodeHelperService, queryEmbeddingModel, parallelism);
+    }
+}
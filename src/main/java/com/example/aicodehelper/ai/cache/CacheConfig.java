@@ -0,0 +1,69 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.example.aicodehelper.ai.rag.CoalescingEmbeddingModel;
+import com.example.aicodehelper.ai.ratelimit.LlmRequestScheduler;
+import com.example.aicodehelper.ai.ratelimit.RateLimitedEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 缓存配置
+ */
+@Configuration
+public class CacheConfig {
+
+    @Resource
+    private EmbeddingModel githubEmbeddingModel;
+
+    @Resource
+    private LlmRequestScheduler llmRequestScheduler;
+
+    @Value("${cache.query-embedding.max-size:10000}")
+    private long queryEmbeddingMaxSize;
+
+    @Value("${cache.query-embedding.ttl:1h}")
+    private Duration queryEmbeddingTtl;
+
+    @Value("${cache.query-embedding.coalesce.max-batch-size:32}")
+    private int coalesceMaxBatchSize;
+
+    @Value("${cache.query-embedding.coalesce.max-wait:5ms}")
+    private Duration coalesceMaxWait;
+
+    @Value("${cache.semantic-answer.max-size:1000}")
+    private long semanticAnswerMaxSize;
+
+    @Value("${cache.semantic-answer.ttl:10m}")
+    private Duration semanticAnswerTtl;
+
+    @Value("${cache.semantic-answer.similarity-threshold:0.95}")
+    private double semanticAnswerThreshold;
+
+    /**
+     * 检索时使用的查询向量模型, 未命中缓存时按对话优先级限流; 文档导入使用 ingestEmbeddingModel
+     */
+    @Bean
+    public CachingEmbeddingModel queryEmbeddingModel() {
+        return new CachingEmbeddingModel(coalescingEmbeddingModel(), queryEmbeddingMaxSize, queryEmbeddingTtl);
+    }
+
+    /**
+     * 缓存未命中的并发查询合并成批再请求, 减少上游请求数
+     */
+    @Bean(destroyMethod = "close")
+    public CoalescingEmbeddingModel coalescingEmbeddingModel() {
+        EmbeddingModel rateLimited = new RateLimitedEmbeddingModel(githubEmbeddingModel, llmRequestScheduler,
+                LlmRequestScheduler.Priority.INTERACTIVE);
+        return new CoalescingEmbeddingModel(rateLimited, coalesceMaxBatchSize, coalesceMaxWait);
+    }
+
+    @Bean
+    public SemanticAnswerCache semanticAnswerCache() {
+        return new SemanticAnswerCache(semanticAnswerMaxSize, semanticAnswerTtl, semanticAnswerThreshold);
+    }
+}
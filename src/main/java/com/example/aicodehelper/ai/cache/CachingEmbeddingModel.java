@@ -0,0 +1,75 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 查询向量缓存: 以查询文本为key缓存向量, 热门问题不再重复调用向量模型
+ * <p>
+ * 底层是 Caffeine (W-TinyLFU 淘汰), 按最大条数和写入后TTL过期
+ */
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final Cache<String, Embedding> cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, long maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        Embedding[] embeddings = new Embedding[textSegments.size()];
+        List<TextSegment> missing = new ArrayList<>();
+        List<Integer> missingPositions = new ArrayList<>();
+        for (int i = 0; i < textSegments.size(); i++) {
+            Embedding cached = cache.getIfPresent(textSegments.get(i).text());
+            if (cached != null) {
+                embeddings[i] = cached;
+            } else {
+                missing.add(textSegments.get(i));
+                missingPositions.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return Response.from(Arrays.asList(embeddings));
+        }
+        // 未命中的文本合并成一次请求
+        Response<List<Embedding>> response = delegate.embedAll(missing);
+        List<Embedding> computed = response.content();
+        for (int i = 0; i < computed.size(); i++) {
+            embeddings[missingPositions.get(i)] = computed.get(i);
+            cache.put(missing.get(i).text(), computed.get(i));
+        }
+        return Response.from(Arrays.asList(embeddings), response.tokenUsage());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    public Cache<String, Embedding> cache() {
+        return cache;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 语义答案缓存: 新问题的向量与已缓存问题足够相近, 且作用域(方法、系统提示词、RAG来源)一致时直接复用答案
+ * <p>
+ * 条数有上限, 查找是对缓存条目的线性扫描, 上限应保持在几千以内
+ */
+public class SemanticAnswerCache {
+
+    private record Entry(String scope, float[] vector, String answer) {
+    }
+
+    private final Cache<Long, Entry> entries;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final double similarityThreshold;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public SemanticAnswerCache(long maxSize, Duration ttl, double similarityThreshold) {
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * 查找最相近的已缓存答案, 余弦相似度低于阈值时返回 null
+     */
+    public String lookup(String scope, float[] queryVector) {
+        float[] query = normalize(queryVector);
+        Entry best = null;
+        double bestScore = similarityThreshold;
+        for (Entry entry : entries.asMap().values()) {
+            if (!entry.scope().equals(scope) || entry.vector().length != query.length) {
+                continue;
+            }
+            double score = dot(entry.vector(), query);
+            if (score >= bestScore) {
+                bestScore = score;
+                best = entry;
+            }
+        }
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return best.answer();
+    }
+
+    public void put(String scope, float[] queryVector, String answer) {
+        if (answer == null || answer.isBlank()) {
+            return;
+        }
+        entries.put(sequence.incrementAndGet(), new Entry(scope, normalize(queryVector), answer));
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long size() {
+        return entries.estimatedSize();
+    }
+
+    public long evictionCount() {
+        return entries.stats().evictionCount();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm == 0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
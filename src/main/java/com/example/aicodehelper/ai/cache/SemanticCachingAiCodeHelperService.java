@@ -0,0 +1,202 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.guardrail.SafeInputGuardRail;
+import com.example.aicodehelper.ai.rag.PrefetchedContentRetriever;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.service.Result;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在 AiCodeHelperService 前加一层语义答案缓存 (可选开启)
+ * <p>
+ * 作用域由方法、系统提示词和本次检索到的RAG来源决定, 来源不同的相近问题不会共用答案.
+ * 答案会受之前几轮对话影响, 所以只对会话里的第一个问题查缓存; 命中时和模型回答一样把问答写入会话记忆,
+ * 后续追问带着上下文交给模型.
+ * 未命中时把已检索到的来源交给 {@link PrefetchedContentRetriever}, AiServices 不再重复检索.
+ */
+public class SemanticCachingAiCodeHelperService implements AiCodeHelperService {
+
+    // 方法名 -> AiServices 为该方法生成的系统消息
+    private static final Map<String, SystemMessage> SYSTEM_MESSAGES = systemMessages();
+
+    private record Lookup(String scope, float[] vector, List<Content> sources, String answer) {
+    }
+
+    private final AiCodeHelperService delegate;
+
+    private final EmbeddingModel queryEmbeddingModel;
+
+    private final ContentRetriever contentRetriever;
+
+    private final SemanticAnswerCache cache;
+
+    private final ChatMemoryProvider chatMemoryProvider;
+
+    private final String systemPromptHash;
+
+    private final SafeInputGuardRail guardRail = new SafeInputGuardRail();
+
+    public SemanticCachingAiCodeHelperService(AiCodeHelperService delegate,
+                                              EmbeddingModel queryEmbeddingModel,
+                                              ContentRetriever contentRetriever,
+                                              SemanticAnswerCache cache,
+                                              ChatMemoryProvider chatMemoryProvider,
+                                              String systemPrompt) {
+        this.delegate = delegate;
+        this.queryEmbeddingModel = queryEmbeddingModel;
+        this.contentRetriever = contentRetriever;
+        this.cache = cache;
+        this.chatMemoryProvider = chatMemoryProvider;
+        this.systemPromptHash = sha256(systemPrompt);
+    }
+
+    @Override
+    public String chat(int memoryId, String userMessage) {
+        Lookup lookup = lookup("chat", memoryId, userMessage);
+        if (lookup == null) {
+            return delegate.chat(memoryId, userMessage);
+        }
+        if (lookup.answer() != null) {
+            remember("chat", memoryId, userMessage, lookup.answer());
+            return lookup.answer();
+        }
+        String answer = PrefetchedContentRetriever.callWith(userMessage, lookup.sources(),
+                () -> delegate.chat(memoryId, userMessage));
+        cache.put(lookup.scope(), lookup.vector(), answer);
+        return answer;
+    }
+
+    @Override
+    public Report chatForReport(int memoryId, String userMessage) {
+        return delegate.chatForReport(memoryId, userMessage);
+    }
+
+    @Override
+    public Result<String> chatWithRag(int memoryId, String userMessage) {
+        Lookup lookup = lookup("chatWithRag", memoryId, userMessage);
+        if (lookup == null) {
+            return delegate.chatWithRag(memoryId, userMessage);
+        }
+        if (lookup.answer() != null) {
+            remember("chatWithRag", memoryId, userMessage, lookup.answer());
+            return Result.<String>builder()
+                    .content(lookup.answer())
+                    .sources(lookup.sources())
+                    .build();
+        }
+        Result<String> result = PrefetchedContentRetriever.callWith(userMessage, lookup.sources(),
+                () -> delegate.chatWithRag(memoryId, userMessage));
+        cache.put(lookup.scope(), lookup.vector(), result.content());
+        return result;
+    }
+
+    @Override
+    public Flux<String> chatStream(int memoryId, String message) {
+        return Flux.defer(() -> {
+            Lookup lookup = lookup("chatStream", memoryId, message);
+            if (lookup == null) {
+                return delegate.chatStream(memoryId, message);
+            }
+            if (lookup.answer() != null) {
+                remember("chatStream", memoryId, message, lookup.answer());
+                return Flux.just(lookup.answer());
+            }
+            StringBuilder answer = new StringBuilder();
+            // AiServices 在方法调用时就完成检索, 订阅时才请求模型
+            return PrefetchedContentRetriever.callWith(message, lookup.sources(),
+                            () -> delegate.chatStream(memoryId, message))
+                    .doOnNext(answer::append)
+                    .doOnComplete(() -> cache.put(lookup.scope(), lookup.vector(), answer.toString()));
+        });
+    }
+
+    /**
+     * 计算作用域并查缓存; 会话已有对话或输入未通过安全检查时返回 null, 交给原服务处理
+     */
+    private Lookup lookup(String method, int memoryId, String message) {
+        if (hasPriorTurns(memoryId) || !guardRail.validate(UserMessage.from(message)).isSuccess()) {
+            return null;
+        }
+        float[] vector = queryEmbeddingModel.embed(message).content().vector();
+        List<Content> sources = contentRetriever.retrieve(Query.from(message));
+        String scope = method + ":" + systemPromptHash + ":" + sourcesKey(sources);
+        return new Lookup(scope, vector, sources, cache.lookup(scope, vector));
+    }
+
+    /**
+     * 会话记忆里除系统提示词和摘要外还有消息, 说明之前聊过
+     */
+    private boolean hasPriorTurns(int memoryId) {
+        return chatMemoryProvider.get(memoryId).messages().stream()
+                .anyMatch(message -> !(message instanceof SystemMessage));
+    }
+
+    /**
+     * 命中缓存时按模型回答的方式记一轮对话; 系统消息和 AiServices 写入的一致, 不会被当成换了提示词
+     */
+    private void remember(String method, int memoryId, String userMessage, String answer) {
+        ChatMemory memory = chatMemoryProvider.get(memoryId);
+        SystemMessage systemMessage = SYSTEM_MESSAGES.get(method);
+        if (systemMessage != null) {
+            memory.add(systemMessage);
+        }
+        memory.add(UserMessage.from(userMessage));
+        memory.add(AiMessage.from(answer));
+    }
+
+    private static Map<String, SystemMessage> systemMessages() {
+        Map<String, SystemMessage> messages = new HashMap<>();
+        for (Method method : AiCodeHelperService.class.getMethods()) {
+            dev.langchain4j.service.SystemMessage annotation =
+                    method.getAnnotation(dev.langchain4j.service.SystemMessage.class);
+            if (annotation != null) {
+                messages.put(method.getName(), SystemMessage.from(String.join(annotation.delimiter(), annotation.value())));
+            }
+        }
+        return messages;
+    }
+
+    private static String sourcesKey(List<Content> sources) {
+        return sha256(String.join("\u0000", sources.stream()
+                .map(content -> content.textSegment().text())
+                .sorted()
+                .toList()));
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public ChatMemory getChatMemory(Object memoryId) {
+        return delegate.getChatMemory(memoryId);
+    }
+
+    @Override
+    public boolean evictChatMemory(Object memoryId) {
+        return delegate.evictChatMemory(memoryId);
+    }
+}
@@ -1,16 +1,37 @@
 package com.example.aicodehelper.ai.controller;
 
 import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.batch.BatchChatService;
+import com.example.aicodehelper.ai.cache.CachingEmbeddingModel;
+import com.example.aicodehelper.ai.cache.SemanticAnswerCache;
+import com.example.aicodehelper.ai.memory.BoundedChatMemoryStore;
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import com.example.aicodehelper.ai.rag.CoalescingEmbeddingModel;
+import com.example.aicodehelper.ai.ratelimit.LlmRequestScheduler;
+import com.example.aicodehelper.ai.ratelimit.TokenEstimator;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/ai")
@@ -21,81 +42,135 @@ public class AiController {
     @Resource
     private AiCodeHelperService aiCodeHelperService;
 
+    @Resource
+    private ChatStreamRelay chatStreamRelay;
+
+    @Resource
+    private CachingEmbeddingModel queryEmbeddingModel;
+
+    @Resource
+    private CoalescingEmbeddingModel coalescingEmbeddingModel;
+
+    @Resource
+    private SemanticAnswerCache semanticAnswerCache;
+
+    @Resource
+    private BoundedChatMemoryStore chatMemoryStore;
+
+    @Resource
+    private LlmRequestScheduler llmRequestScheduler;
+
+    @Resource
+    private BatchChatService batchChatService;
+
+    @Value("${batch.max-items:1000}")
+    private int batchMaxItems;
+
+    @Value("${batch.timeout:30m}")
+    private Duration batchTimeout;
+
     @GetMapping(value = "/chat")
     public SseEmitter chat(int memoryId, String message) {
-        SseEmitter emitter = new SseEmitter();
-        AtomicBoolean isFirst = new AtomicBoolean(true);
-
-        aiCodeHelperService.chatStream(memoryId, message)
-                .subscribe(
-                        chunk -> {
-                            try {
-                                log.debug("Received chunk: [{}]", chunk);
-
-                                if (chunk == null || chunk.trim().isEmpty()) {
-                                    log.debug("Empty chunk, skipping");
-                                    return;
-                                }
-
-                                // Trim the chunk first because SSE will trim it anyway
-                                String trimmedChunk = chunk.trim();
-                                String processedChunk = trimmedChunk;
-
-                                // Determine if we need to add a space before this chunk
-                                // Add space if NOT first AND NOT punctuation AND NOT CJK
-                                if (!isFirst.get() && !trimmedChunk.isEmpty()) {
-                                    char firstChar = trimmedChunk.charAt(0);
-
-                                    if (!isPunctuation(firstChar) && !isCJK(firstChar)) {
-                                        processedChunk = " " + trimmedChunk;
-                                        log.debug("Added space: [{}] -> [{}]", trimmedChunk, processedChunk);
-                                    } else {
-                                        log.debug("No space needed for: [{}]", trimmedChunk);
-                                    }
-                                } else {
-                                    log.debug("First chunk or empty: [{}]", trimmedChunk);
-                                }
-
-                                isFirst.set(false);
-
-                                // Send as SSE event with explicit JSON wrapping
-                                // Wrap in a Map to force JSON encoding which preserves spaces
-                                emitter.send(SseEmitter.event()
-                                        .data(java.util.Map.of("chunk", processedChunk)));
-
-                            } catch (IOException e) {
-                                log.error("Error sending SSE event", e);
-                                emitter.completeWithError(e);
-                            }
-                        },
-                        error -> {
-                            log.error("Error in stream", error);
-                            emitter.completeWithError(error);
-                        },
-                        () -> {
-                            log.debug("Stream completed");
-                            emitter.complete();
-                        }
-                );
-
-        return emitter;
+        // 模型额度明显排不上时直接返回 429, 不建立 SSE 连接
+        llmRequestScheduler.checkAdmission(LlmRequestScheduler.Priority.INTERACTIVE, TokenEstimator.estimate(message));
+        // 每个连接一个格式化器, 负责空格处理和 JSON 帧的拼装
+        ChunkFormatter formatter = new ChunkFormatter();
+        return chatStreamRelay.relay(aiCodeHelperService.chatStream(memoryId, message), frame -> {
+            for (String chunk : frame) {
+                formatter.append(chunk);
+            }
+            return formatter.flush();
+        });
     }
 
     /**
-     * Check if character is Chinese, Japanese, or Korean
+     * 批量生成学习报告 (kind=REPORT) 或 RAG 回答 (kind=RAG), 每完成一条输出一行 JSON (NDJSON)
      */
-    private boolean isCJK(char c) {
-        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
-        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
-                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
-                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
-                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
-                || block == Character.UnicodeBlock.HIRAGANA
-                || block == Character.UnicodeBlock.KATAKANA
-                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    @PostMapping(value = "/batch")
+    public ResponseEntity<ResponseBodyEmitter> batch(@RequestBody BatchChatService.Request request) {
+        if (request.kind() == null || request.items() == null || request.items().isEmpty()
+                || request.items().size() > batchMaxItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "kind is required and items must contain 1.." + batchMaxItems + " entries");
+        }
+        if (request.items().stream().anyMatch(item -> item.message() == null || item.message().isBlank())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every item needs a message");
+        }
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeout.toMillis());
+        CompletableFuture<Void> batch = batchChatService.execute(request.kind(), request.items(), result -> {
+            synchronized (emitter) {
+                try {
+                    emitter.send(result, MediaType.APPLICATION_JSON);
+                    emitter.send("\n", MediaType.TEXT_PLAIN);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        // 客户端断开或超时后不再发起新的模型调用
+        emitter.onTimeout(() -> batch.cancel(false));
+        emitter.onError(error -> batch.cancel(false));
+        batch.whenComplete((ignored, error) -> {
+            if (error == null) {
+                emitter.complete();
+            } else if (!batch.isCancelled()) {
+                log.debug("Batch stopped: {}", error.toString());
+                emitter.completeWithError(error);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
     }
-    private boolean isPunctuation(char c) {
-        String punctuations = ".,;:!?，。；：！？、\"\"''()[]{}《》【】";
-        return punctuations.indexOf(c) != -1;
+
+    /**
+     * 缓存命中统计
+     */
+    @GetMapping(value = "/cache/stats")
+    public Map<String, Object> cacheStats() {
+        CacheStats embeddingStats = queryEmbeddingModel.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queryEmbeddingHits", embeddingStats.hitCount());
+        stats.put("queryEmbeddingMisses", embeddingStats.missCount());
+        stats.put("queryEmbeddingEvictions", embeddingStats.evictionCount());
+        stats.put("queryEmbeddingCoalesced", coalescingEmbeddingModel.requests());
+        stats.put("queryEmbeddingBatches", coalescingEmbeddingModel.batches());
+        stats.put("semanticAnswerHits", semanticAnswerCache.hitCount());
+        stats.put("semanticAnswerMisses", semanticAnswerCache.missCount());
+        stats.put("semanticAnswerEvictions", semanticAnswerCache.evictionCount());
+        stats.put("semanticAnswerSize", semanticAnswerCache.size());
+        return stats;
+    }
+
+    /**
+     * 会话记忆统计
+     */
+    @GetMapping(value = "/memory/stats")
+    public Map<String, Object> memoryStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("residentSessions", chatMemoryStore.residentSessions());
+        stats.put("evictions", chatMemoryStore.evictions());
+        stats.put("spills", chatMemoryStore.spills());
+        stats.put("restores", chatMemoryStore.restores());
+        return stats;
+    }
+
+    /**
+     * 模型调用限流统计
+     */
+    @GetMapping(value = "/rate-limit/stats")
+    public Map<String, Object> rateLimitStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", llmRequestScheduler.queued());
+        stats.put("granted", llmRequestScheduler.granted());
+        stats.put("shed", llmRequestScheduler.shed());
+        return stats;
+    }
+
+    /**
+     * 会话累计的 token 用量, 各阶段耗时见 /actuator/prometheus
+     */
+    @GetMapping(value = "/usage")
+    public AiMetrics.Usage usage(int memoryId) {
+        AiMetrics.Usage usage = AiMetrics.usage(memoryId);
+        return usage != null ? usage : new AiMetrics.Usage(0, 0, 0);
     }
 }
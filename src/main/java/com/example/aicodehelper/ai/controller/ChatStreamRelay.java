@@ -0,0 +1,141 @@
+package com.example.aicodehelper.ai.controller;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 把模型的流式输出转发到 SSE 连接
+ * <p>
+ * 每个连接有一个有界缓冲区, 细碎的 chunk 按条数或时间合并成一帧, 写 emitter 的阻塞操作放在虚拟线程上,
+ * 不占用模型回调线程. 全局并发流数量有上限, 满了直接返回 429; 客户端断开或超时后取消上游订阅.
+ */
+@Component
+public class ChatStreamRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatStreamRelay.class);
+
+    private final ExecutorService writerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Scheduler writerScheduler = Schedulers.fromExecutorService(writerExecutor, "sse-writer");
+
+    private final int maxConcurrentStreams;
+
+    private final Semaphore streamPermits;
+
+    private final Duration timeout;
+
+    private final int bufferSize;
+
+    private final int frameMaxChunks;
+
+    private final Duration frameMaxDelay;
+
+    public ChatStreamRelay(@Value("${sse.max-concurrent-streams:1000}") int maxConcurrentStreams,
+                           @Value("${sse.timeout:5m}") Duration timeout,
+                           @Value("${sse.buffer-size:256}") int bufferSize,
+                           @Value("${sse.frame-max-chunks:8}") int frameMaxChunks,
+                           @Value("${sse.frame-max-delay:40ms}") Duration frameMaxDelay) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.streamPermits = new Semaphore(maxConcurrentStreams);
+        this.timeout = timeout;
+        this.bufferSize = bufferSize;
+        this.frameMaxChunks = frameMaxChunks;
+        this.frameMaxDelay = frameMaxDelay;
+    }
+
+    public int activeStreams() {
+        return maxConcurrentStreams - streamPermits.availablePermits();
+    }
+
+    /**
+     * @param upstream    模型输出的 chunk 流, 只在拿到并发名额后才订阅
+     * @param frameEncoder 把一帧内的 chunk 编码成 SSE data 的 JSON, 返回 null 表示这一帧不发送
+     */
+    public SseEmitter relay(Flux<String> upstream, Function<List<String>, String> frameEncoder) {
+        if (!streamPermits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent streams");
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                streamPermits.release();
+            }
+        };
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Disposable.Swap subscription = Disposables.swap();
+        // 客户端断开、超时或出错时取消上游, 不再继续消耗token
+        emitter.onCompletion(() -> {
+            subscription.dispose();
+            release.run();
+        });
+        emitter.onTimeout(() -> {
+            log.debug("SSE stream timed out");
+            subscription.dispose();
+            emitter.complete();
+        });
+        emitter.onError(error -> {
+            log.debug("SSE stream error: {}", error.getMessage());
+            subscription.dispose();
+        });
+
+        subscription.update(upstream
+                .onBackpressureBuffer(bufferSize,
+                        dropped -> log.warn("SSE client too slow, buffer of {} chunks overflowed", bufferSize),
+                        BufferOverflowStrategy.ERROR)
+                .bufferTimeout(frameMaxChunks, frameMaxDelay, true)
+                .publishOn(writerScheduler, 4)
+                .doFinally(signal -> release.run())
+                .subscribe(
+                        frame -> {
+                            String data = frameEncoder.apply(frame);
+                            if (data == null) {
+                                return;
+                            }
+                            try {
+                                emitter.send(SseEmitter.event().data(data, MediaType.APPLICATION_JSON));
+                            } catch (IOException e) {
+                                // 抛出后 reactor 会取消上游订阅
+                                throw new UncheckedIOException(e);
+                            }
+                        },
+                        error -> {
+                            log.error("Error in stream", error);
+                            emitter.completeWithError(error);
+                        },
+                        () -> {
+                            log.debug("Stream completed");
+                            emitter.complete();
+                        }
+                ));
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerScheduler.dispose();
+        writerExecutor.shutdown();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.aicodehelper.ai.controller;
+
+/**
+ * 流式 chunk 格式化器
+ * <p>
+ * 按原有规则处理空格: 去掉首尾空白, 非首个 chunk 且首字符既不是标点也不是中日韩文字时前面补一个空格.
+ * 多个 chunk 直接拼进一个可复用的缓冲区, 输出 SSE data 用的 {"chunk":"..."} JSON, 不经过 Map 和 ObjectMapper.
+ * CJK 和标点判断用启动时预先算好的位表. 非线程安全, 每个连接一个实例.
+ */
+public final class ChunkFormatter {
+
+    private static final String PUNCTUATIONS = ".,;:!?，。；：！？、\"\"''()[]{}《》【】";
+
+    // 覆盖整个 BMP 的位表, 每个 char 一位
+    private static final long[] CJK_TABLE = new long[1 << 10];
+
+    private static final long[] PUNCTUATION_TABLE = new long[1 << 10];
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of((char) c);
+            if (block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                    || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                    || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B
+                    || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                    || block == Character.UnicodeBlock.HIRAGANA
+                    || block == Character.UnicodeBlock.KATAKANA
+                    || block == Character.UnicodeBlock.HANGUL_SYLLABLES) {
+                CJK_TABLE[c >>> 6] |= 1L << c;
+            }
+        }
+        for (int i = 0; i < PUNCTUATIONS.length(); i++) {
+            char c = PUNCTUATIONS.charAt(i);
+            PUNCTUATION_TABLE[c >>> 6] |= 1L << c;
+        }
+    }
+
+    private final StringBuilder frame = new StringBuilder(256);
+
+    private boolean first = true;
+
+    private int chunksInFrame;
+
+    /**
+     * 追加一个 chunk 到当前帧, 空白 chunk 被忽略
+     *
+     * @return 是否追加了内容
+     */
+    public boolean append(CharSequence chunk) {
+        if (chunk == null) {
+            return false;
+        }
+        // 与 String.trim 相同的空白定义, 但不分配新字符串
+        int start = 0;
+        int end = chunk.length();
+        while (start < end && chunk.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && chunk.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+        if (chunksInFrame == 0) {
+            frame.append("{\"chunk\":\"");
+        }
+        char firstChar = chunk.charAt(start);
+        if (!first && !isPunctuation(firstChar) && !isCJK(firstChar)) {
+            frame.append(' ');
+        }
+        first = false;
+        appendEscaped(chunk, start, end);
+        chunksInFrame++;
+        return true;
+    }
+
+    /**
+     * 结束当前帧并返回 JSON, 当前帧没有内容时返回 null
+     */
+    public String flush() {
+        if (chunksInFrame == 0) {
+            return null;
+        }
+        frame.append("\"}");
+        String json = frame.toString();
+        frame.setLength(0);
+        chunksInFrame = 0;
+        return json;
+    }
+
+    /**
+     * Check if character is Chinese, Japanese, or Korean
+     */
+    public static boolean isCJK(char c) {
+        return (CJK_TABLE[c >>> 6] & (1L << c)) != 0;
+    }
+
+    public static boolean isPunctuation(char c) {
+        return (PUNCTUATION_TABLE[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private void appendEscaped(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> frame.append("\\\"");
+                case '\\' -> frame.append("\\\\");
+                case '\n' -> frame.append("\\n");
+                case '\r' -> frame.append("\\r");
+                case '\t' -> frame.append("\\t");
+                case '\b' -> frame.append("\\b");
+                case '\f' -> frame.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        frame.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        frame.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
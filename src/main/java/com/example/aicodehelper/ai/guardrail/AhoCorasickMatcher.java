@@ -0,0 +1,218 @@
+package com.example.aicodehelper.ai.guardrail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 编译好的 Aho-Corasick 多模式匹配自动机, 忽略大小写
+ * <p>
+ * 构建后状态转移压平成数组 (根节点用直接寻址, 其余节点在有序字符表上二分), 扫描一遍输入即可,
+ * 耗时与输入长度线性相关、与词典大小无关, 扫描过程不分配对象.
+ * 由 ASCII 字母数字组成的英文词要求两侧是单词边界 (与原先按 \W+ 分词的行为一致), 中文词按子串匹配.
+ * 实例不可变, 可在多线程间共享.
+ */
+public final class AhoCorasickMatcher {
+
+    private final String[] words;
+
+    // 词两侧是否需要单词边界
+    private final boolean[] leftBoundary;
+
+    private final boolean[] rightBoundary;
+
+    // 根节点的直接转移表, 0 表示回到根
+    private final int[] rootNext;
+
+    // 非根节点的转移: 第 s 个状态的子节点位于 [offsets[s], offsets[s + 1])
+    private final int[] offsets;
+
+    private final char[] labels;
+
+    private final int[] targets;
+
+    private final int[] fail;
+
+    // 在该状态结束的词, -1 表示没有
+    private final int[] wordAt;
+
+    // 沿失败链最近的一个有词结束的状态, 0 表示没有
+    private final int[] outputLink;
+
+    private AhoCorasickMatcher(String[] words, boolean[] leftBoundary, boolean[] rightBoundary, int[] rootNext,
+                               int[] offsets, char[] labels, int[] targets, int[] fail, int[] wordAt, int[] outputLink) {
+        this.words = words;
+        this.leftBoundary = leftBoundary;
+        this.rightBoundary = rightBoundary;
+        this.rootNext = rootNext;
+        this.offsets = offsets;
+        this.labels = labels;
+        this.targets = targets;
+        this.fail = fail;
+        this.wordAt = wordAt;
+        this.outputLink = outputLink;
+    }
+
+    public static AhoCorasickMatcher compile(Collection<String> dictionary) {
+        LinkedHashSet<String> unique = new LinkedHashSet<>();
+        for (String word : dictionary) {
+            if (word != null && !word.isBlank()) {
+                unique.add(lowerCase(word.strip()));
+            }
+        }
+        String[] words = unique.toArray(new String[0]);
+
+        // 1. 构建 trie
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(new TreeMap<>());
+        terminal.add(-1);
+        boolean[] leftBoundary = new boolean[words.length];
+        boolean[] rightBoundary = new boolean[words.length];
+        for (int w = 0; w < words.length; w++) {
+            String word = words[w];
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                Integer next = children.get(state).get(word.charAt(i));
+                if (next == null) {
+                    next = children.size();
+                    children.add(new TreeMap<>());
+                    terminal.add(-1);
+                    children.get(state).put(word.charAt(i), next);
+                }
+                state = next;
+            }
+            terminal.set(state, w);
+            leftBoundary[w] = isWordChar(word.charAt(0));
+            rightBoundary[w] = isWordChar(word.charAt(word.length() - 1));
+        }
+
+        // 2. 压平转移表
+        int stateCount = children.size();
+        int[] offsets = new int[stateCount + 1];
+        int edgeCount = 0;
+        for (int s = 0; s < stateCount; s++) {
+            offsets[s] = edgeCount;
+            if (s != 0) {
+                edgeCount += children.get(s).size();
+            }
+        }
+        offsets[stateCount] = edgeCount;
+        char[] labels = new char[edgeCount];
+        int[] targets = new int[edgeCount];
+        int[] rootNext = new int[Character.MAX_VALUE + 1];
+        for (int s = 0; s < stateCount; s++) {
+            int k = offsets[s];
+            for (Map.Entry<Character, Integer> edge : children.get(s).entrySet()) {
+                if (s == 0) {
+                    rootNext[edge.getKey()] = edge.getValue();
+                } else {
+                    labels[k] = edge.getKey();
+                    targets[k] = edge.getValue();
+                    k++;
+                }
+            }
+        }
+
+        // 3. BFS 计算失败链和输出链
+        int[] fail = new int[stateCount];
+        int[] wordAt = new int[stateCount];
+        int[] outputLink = new int[stateCount];
+        for (int s = 0; s < stateCount; s++) {
+            wordAt[s] = terminal.get(s);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : children.get(0).values()) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        AhoCorasickMatcher partial = new AhoCorasickMatcher(words, leftBoundary, rightBoundary, rootNext,
+                offsets, labels, targets, fail, wordAt, outputLink);
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(state).entrySet()) {
+                int child = edge.getValue();
+                int f = fail[state];
+                int next;
+                while ((next = partial.transition(f, edge.getKey())) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = next < 0 || next == child ? 0 : next;
+                outputLink[child] = wordAt[fail[child]] >= 0 ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+        return partial;
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * 返回输入中第一个出现的词, 没有命中时返回 null
+     */
+    public String findFirst(CharSequence text) {
+        int state = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int s = wordAt[state] >= 0 ? state : outputLink[state]; s != 0; s = outputLink[s]) {
+                int w = wordAt[s];
+                if (matchesBoundary(text, i, w)) {
+                    return words[w];
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean matchesBoundary(CharSequence text, int end, int w) {
+        if (leftBoundary[w]) {
+            int before = end - words[w].length();
+            if (before >= 0 && isWordChar(text.charAt(before))) {
+                return false;
+            }
+        }
+        if (rightBoundary[w]) {
+            int after = end + 1;
+            return after >= text.length() || !isWordChar(text.charAt(after));
+        }
+        return true;
+    }
+
+    /**
+     * 状态转移, 没有对应边时返回 -1 (根节点除外, 根节点返回 0 表示停在根)
+     */
+    private int transition(int state, char c) {
+        if (state == 0) {
+            return rootNext[c];
+        }
+        int index = Arrays.binarySearch(labels, offsets[state], offsets[state + 1], c);
+        return index < 0 ? -1 : targets[index];
+    }
+
+    /**
+     * 与正则 \w 一致: ASCII 字母、数字和下划线
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static String lowerCase(String word) {
+        char[] chars = word.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.aicodehelper.ai.guardrail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 当前生效的敏感词自动机
+ * <p>
+ * 护栏由 LangChain4j 通过无参构造器创建, 无法注入 Spring Bean, 所以词典以静态 volatile 引用持有,
+ * 热更新时整体替换为新编译的自动机, 正在进行的匹配不受影响
+ */
+public final class SensitiveWords {
+
+    static final List<String> DEFAULT_WORDS = List.of("kill", "evil");
+
+    private static volatile AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(DEFAULT_WORDS);
+
+    private SensitiveWords() {
+    }
+
+    public static AhoCorasickMatcher matcher() {
+        return matcher;
+    }
+
+    public static void replace(Collection<String> words) {
+        matcher = AhoCorasickMatcher.compile(words);
+    }
+
+    /**
+     * 每行一个词, 忽略空行和 # 开头的注释
+     */
+    public static List<String> parse(Reader reader) throws IOException {
+        List<String> words = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(reader)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String word = line.strip();
+                if (!word.isEmpty() && !word.startsWith("#")) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+}
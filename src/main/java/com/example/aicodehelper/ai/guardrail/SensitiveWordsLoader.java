@@ -0,0 +1,86 @@
+package com.example.aicodehelper.ai.guardrail;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 加载敏感词词典, 词典是本地文件时定期检查修改时间并热更新
+ */
+@Slf4j
+@Component
+public class SensitiveWordsLoader {
+
+    @Value("${guardrail.sensitive-words:classpath:sensitive-words.txt}")
+    private Resource dictionary;
+
+    @Value("${guardrail.reload-interval:10s}")
+    private Duration reloadInterval;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile long lastModified = -1;
+
+    @PostConstruct
+    public void init() {
+        reload();
+        if (dictionary.isFile() && !reloadInterval.isZero()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "sensitive-words-reload");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = reloadInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::reloadIfModified, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void reloadIfModified() {
+        try {
+            if (dictionary.lastModified() != lastModified) {
+                reload();
+            }
+        } catch (IOException e) {
+            log.warn("检查敏感词词典失败: {}", dictionary, e);
+        }
+    }
+
+    /**
+     * 读取失败时保留当前词典
+     */
+    void reload() {
+        if (!dictionary.exists()) {
+            log.warn("敏感词词典不存在, 使用内置词典: {}", dictionary);
+            return;
+        }
+        try {
+            long modified = dictionary.isFile() ? dictionary.lastModified() : 0;
+            List<String> words = SensitiveWords.parse(
+                    new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8));
+            SensitiveWords.replace(words);
+            lastModified = modified;
+            log.info("敏感词词典已加载: {} 个词, 来源 {}", SensitiveWords.matcher().size(), dictionary);
+        } catch (IOException e) {
+            log.warn("加载敏感词词典失败, 保留当前词典: {}", dictionary, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
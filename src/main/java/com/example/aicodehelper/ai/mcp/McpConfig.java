@@ -1,13 +1,22 @@
 package com.example.aicodehelper.ai.mcp;
 
-import dev.langchain4j.mcp.McpToolProvider;
 import dev.langchain4j.mcp.client.DefaultMcpClient;
 import dev.langchain4j.mcp.client.McpClient;
 import dev.langchain4j.mcp.client.transport.McpTransport;
 import dev.langchain4j.mcp.client.transport.http.HttpMcpTransport;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 @Configuration
 public class McpConfig {
@@ -15,24 +24,55 @@ public class McpConfig {
     @Value("${bigmodel.api-key}")
     private String apiKey;
 
-    @Bean
-    public McpToolProvider mcpToolProvider() {
+    @Value("${mcp.refresh-interval:60s}")
+    private Duration refreshInterval;
+
+    @Value("${mcp.timeout:10s}")
+    private Duration timeout;
+
+    @Value("${mcp.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${mcp.open-duration:30s}")
+    private Duration openDuration;
+
+    @Value("${mcp.log-traffic:false}")
+    private boolean logTraffic;
+
+    @Resource
+    private Environment environment;
+
+    @Bean(destroyMethod = "close")
+    public ResilientMcpToolProvider mcpToolProvider() {
+        // 多个 SSE 端点互为备份, 未配置时使用智谱的联网搜索
+        List<String> sseUrls = Binder.get(environment)
+                .bind("mcp.sse-urls", Bindable.listOf(String.class))
+                .orElse(List.of("https://open.bigmodel.cn/api/mcp/web_search/sse?Authorization=" + apiKey));
+        Map<String, Supplier<McpClient>> clients = new LinkedHashMap<>();
+        for (int i = 0; i < sseUrls.size(); i++) {
+            String key = "yupiMcpClient" + (i == 0 ? "" : "-" + i);
+            String sseUrl = sseUrls.get(i);
+            clients.put(key, () -> mcpClient(key, sseUrl));
+        }
+        // 工具列表缓存在后台刷新, 客户端在后台建连, 启动和每轮对话都不等待 MCP
+        return new ResilientMcpToolProvider(clients,
+                new ResilientMcpToolProvider.Settings(refreshInterval, timeout, failureThreshold, openDuration));
+    }
+
+    private McpClient mcpClient(String key, String sseUrl) {
         // 和mcp服务通讯
         McpTransport transport = new HttpMcpTransport.Builder()
-                .sseUrl("https://open.bigmodel.cn/api/mcp/web_search/sse?Authorization=" + apiKey)
-                .logRequests(true)
-                .logResponses(true)
+                .sseUrl(sseUrl)
+                .timeout(timeout)
+                .logRequests(logTraffic)
+                .logResponses(logTraffic)
                 .build();
         // 创建mcp客户端
-        McpClient mcpClient = new DefaultMcpClient.Builder()
-                .key("yupiMcpClient")
+        return new DefaultMcpClient.Builder()
+                .key(key)
                 .transport(transport)
+                .initializationTimeout(timeout)
+                .toolExecutionTimeout(timeout)
                 .build();
-        // 从mcp客户端获取工具
-        McpToolProvider mcpToolProvider = McpToolProvider.builder()
-                .mcpClients(mcpClient)
-                .build();
-        return mcpToolProvider;
     }
 }
-
@@ -0,0 +1,273 @@
+package com.example.aicodehelper.ai.mcp;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 带缓存、熔断和故障转移的 MCP 工具提供者
+ * <p>
+ * 工具列表在后台定期刷新, 每轮对话直接读缓存, 不会因为 MCP 服务慢或挂掉而阻塞;
+ * 客户端也在后台懒创建, 启动不依赖 MCP 是否可用. 每个端点有一个熔断器, 连续失败达到阈值后
+ * 在一段时间内不再提供该端点的工具; 后台刷新兼做健康探测, 成功后恢复.
+ * 多个端点提供同名工具时, 按延迟 (EWMA) 选择健康的端点, 调用失败再换下一个.
+ */
+@Slf4j
+public class ResilientMcpToolProvider implements ToolProvider, Closeable {
+
+    /**
+     * @param refreshInterval  刷新工具列表 (兼健康检查) 的间隔
+     * @param callTimeout      建连、获取工具列表、执行工具的超时
+     * @param failureThreshold 连续失败多少次后熔断
+     * @param openDuration     熔断持续时间
+     */
+    public record Settings(Duration refreshInterval, Duration callTimeout, int failureThreshold,
+                           Duration openDuration) {
+    }
+
+    /**
+     * 单个 MCP 端点的客户端、工具缓存和健康状态
+     */
+    static final class Endpoint {
+
+        final String key;
+
+        final Supplier<McpClient> clientFactory;
+
+        volatile McpClient client;
+
+        volatile List<ToolSpecification> tools = List.of();
+
+        private int consecutiveFailures;
+
+        private long openUntilNanos;
+
+        private double latencyMillis = -1;
+
+        Endpoint(String key, Supplier<McpClient> clientFactory) {
+            this.key = key;
+            this.clientFactory = clientFactory;
+        }
+
+        synchronized boolean available() {
+            return System.nanoTime() - openUntilNanos >= 0;
+        }
+
+        synchronized double latencyMillis() {
+            return latencyMillis < 0 ? 0 : latencyMillis;
+        }
+
+        synchronized void onSuccess(long elapsedMillis) {
+            consecutiveFailures = 0;
+            openUntilNanos = 0;
+            latencyMillis = latencyMillis < 0 ? elapsedMillis : 0.8 * latencyMillis + 0.2 * elapsedMillis;
+        }
+
+        /**
+         * @return 是否因本次失败进入熔断
+         */
+        synchronized boolean onFailure(Settings settings) {
+            if (++consecutiveFailures >= settings.failureThreshold()) {
+                openUntilNanos = System.nanoTime() + settings.openDuration().toNanos();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final List<Endpoint> endpoints;
+
+    private final Settings settings;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean initialized;
+
+    /**
+     * @param clientFactories 端点名 -> 客户端工厂, 工厂在后台线程调用, 可以阻塞建连
+     */
+    public ResilientMcpToolProvider(Map<String, Supplier<McpClient>> clientFactories, Settings settings) {
+        this.endpoints = clientFactories.entrySet().stream()
+                .map(entry -> new Endpoint(entry.getKey(), entry.getValue()))
+                .toList();
+        this.settings = settings;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mcp-tool-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.refreshInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::refreshAll, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 只读缓存, 不访问网络; 熔断中的端点的工具不出现在本轮对话里
+     */
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        Map<String, ToolSpecification> specifications = new LinkedHashMap<>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.available()) {
+                endpoint.tools.forEach(tool -> specifications.putIfAbsent(tool.name(), tool));
+            }
+        }
+        ToolProviderResult.Builder result = ToolProviderResult.builder();
+        specifications.values().forEach(specification ->
+                result.add(specification, (toolRequest, memoryId) -> execute(toolRequest)));
+        return result.build();
+    }
+
+    /**
+     * 按延迟从低到高尝试提供该工具的健康端点
+     */
+    String execute(ToolExecutionRequest request) {
+        List<Endpoint> candidates = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.available() && endpoint.tools.stream().anyMatch(tool -> tool.name().equals(request.name()))) {
+                candidates.add(endpoint);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Endpoint::latencyMillis));
+        for (Endpoint endpoint : candidates) {
+            long start = System.nanoTime();
+            try {
+                String result = callWithTimeout(() -> client(endpoint).executeTool(request));
+                endpoint.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            } catch (Exception e) {
+                onFailure(endpoint, e);
+            }
+        }
+        return "MCP tool '" + request.name() + "' is currently unavailable.";
+    }
+
+    private void refreshAll() {
+        List<Future<?>> refreshes = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            refreshes.add(executor.submit(() -> refresh(endpoint)));
+        }
+        for (Future<?> refresh : refreshes) {
+            try {
+                refresh.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.warn("刷新 MCP 工具列表失败", e.getCause());
+            }
+        }
+        initialized = true;
+    }
+
+    /**
+     * 是否已完成首次刷新 (不论端点是否可用), 之后不可用的端点只影响工具列表, 不影响服务就绪
+     */
+    public boolean initialized() {
+        return initialized;
+    }
+
+    /**
+     * 当前可提供给模型的 MCP 工具数
+     */
+    public int availableTools() {
+        return provideTools(null).tools().size();
+    }
+
+    private void refresh(Endpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            List<ToolSpecification> tools = callWithTimeout(() -> client(endpoint).listTools());
+            endpoint.tools = List.copyOf(tools);
+            boolean recovered = !endpoint.available();
+            endpoint.onSuccess(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (recovered) {
+                log.info("MCP 端点已恢复: {}", endpoint.key);
+            }
+        } catch (Exception e) {
+            onFailure(endpoint, e);
+        }
+    }
+
+    private McpClient client(Endpoint endpoint) {
+        McpClient client = endpoint.client;
+        if (client == null) {
+            synchronized (endpoint) {
+                client = endpoint.client;
+                if (client == null) {
+                    client = endpoint.clientFactory.get();
+                    endpoint.client = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * 记一次失败并丢弃客户端, 下次使用时重新建连
+     */
+    private void onFailure(Endpoint endpoint, Exception e) {
+        if (endpoint.onFailure(settings)) {
+            log.warn("MCP 端点不可用, 熔断 {}s: {} ({})", settings.openDuration().toSeconds(), endpoint.key, e.toString());
+        } else {
+            log.debug("MCP 端点调用失败: {}", endpoint.key, e);
+        }
+        McpClient client;
+        synchronized (endpoint) {
+            client = endpoint.client;
+            endpoint.client = null;
+        }
+        closeQuietly(client);
+    }
+
+    private <T> T callWithTimeout(Callable<T> call) throws Exception {
+        Future<T> future = executor.submit(call);
+        try {
+            return future.get(settings.callTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private static void closeQuietly(McpClient client) {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (Exception e) {
+                log.debug("关闭 MCP 客户端失败", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        endpoints.forEach(endpoint -> closeQuietly(endpoint.client));
+        executor.shutdownNow();
+    }
+}
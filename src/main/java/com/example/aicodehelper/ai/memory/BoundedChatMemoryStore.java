@@ -0,0 +1,309 @@
+package com.example.aicodehelper.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 有上限、会淘汰的会话记忆存储
+ * <p>
+ * 按 memoryId 哈希分段加锁, 不同会话的并发请求基本不会互相等待; 每段是一个按访问顺序排列的
+ * LinkedHashMap, 超过容量或空闲超时的会话被淘汰. 配置了落盘目录时, 被淘汰的会话压缩后写到磁盘,
+ * 再次访问时读回内存. 淘汰时通知监听者, 让 AiServices 丢掉它为该会话缓存的 ChatMemory 对象.
+ */
+public class BoundedChatMemoryStore implements ChatMemoryStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(BoundedChatMemoryStore.class);
+
+    private static final class Session {
+
+        final List<ChatMessage> messages;
+
+        volatile long lastAccessNanos;
+
+        Session(List<ChatMessage> messages) {
+            this.messages = messages;
+            this.lastAccessNanos = System.nanoTime();
+        }
+    }
+
+    private static final class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        final LinkedHashMap<Object, Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private final Stripe[] stripes;
+
+    private final int maxSessionsPerStripe;
+
+    private final long idleTimeoutNanos;
+
+    private final Path spillDir;
+
+    private final Duration spillTtl;
+
+    private final ScheduledExecutorService sweeper;
+
+    private final AtomicInteger residentSessions = new AtomicInteger();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder spills = new LongAdder();
+
+    private final LongAdder restores = new LongAdder();
+
+    private final List<Consumer<Object>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param spillDir 为 null 时淘汰的会话直接丢弃
+     */
+    public BoundedChatMemoryStore(int maxSessions, int stripeCount, Duration idleTimeout, Path spillDir, Duration spillTtl) {
+        // 段数取不小于 stripeCount 的2的幂
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxSessionsPerStripe = Math.max(1, maxSessions / count);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.spillDir = spillDir;
+        this.spillTtl = spillTtl;
+        if (spillDir != null) {
+            try {
+                Files.createDirectories(spillDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("无法创建会话落盘目录: " + spillDir, e);
+            }
+        }
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-memory-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Math.min(idleTimeout.toSeconds() / 4, 60));
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        Stripe stripe = stripeFor(memoryId);
+        stripe.lock.lock();
+        try {
+            Session session = stripe.sessions.get(memoryId);
+            if (session == null) {
+                List<ChatMessage> restored = restore(memoryId);
+                if (restored == null) {
+                    return List.of();
+                }
+                session = new Session(restored);
+                stripe.sessions.put(memoryId, session);
+                residentSessions.incrementAndGet();
+                evictOverflow(stripe);
+            }
+            session.lastAccessNanos = System.nanoTime();
+            return session.messages;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        Stripe stripe = stripeFor(memoryId);
+        stripe.lock.lock();
+        try {
+            if (stripe.sessions.put(memoryId, new Session(List.copyOf(messages))) == null) {
+                residentSessions.incrementAndGet();
+                evictOverflow(stripe);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        Stripe stripe = stripeFor(memoryId);
+        stripe.lock.lock();
+        try {
+            if (stripe.sessions.remove(memoryId) != null) {
+                residentSessions.decrementAndGet();
+            }
+            if (spillDir != null) {
+                Files.deleteIfExists(spillFile(memoryId));
+            }
+        } catch (IOException e) {
+            log.warn("删除会话落盘文件失败: {}", memoryId, e);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * 会话被淘汰 (丢弃或落盘) 后回调, 在持有分段锁时调用, 监听者不能阻塞
+     */
+    public void addEvictionListener(Consumer<Object> listener) {
+        evictionListeners.add(listener);
+    }
+
+    public int residentSessions() {
+        return residentSessions.get();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public long spills() {
+        return spills.sum();
+    }
+
+    public long restores() {
+        return restores.sum();
+    }
+
+    /**
+     * 淘汰空闲超时的会话, 清理过期的落盘文件
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                // 访问顺序排列, 遇到第一个未超时的会话即可停止
+                Iterator<Map.Entry<Object, Session>> iterator = stripe.sessions.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Object, Session> eldest = iterator.next();
+                    if (now - eldest.getValue().lastAccessNanos < idleTimeoutNanos) {
+                        break;
+                    }
+                    iterator.remove();
+                    evict(eldest.getKey(), eldest.getValue());
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        cleanExpiredSpills();
+    }
+
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    private void evictOverflow(Stripe stripe) {
+        Iterator<Map.Entry<Object, Session>> iterator = stripe.sessions.entrySet().iterator();
+        while (stripe.sessions.size() > maxSessionsPerStripe && iterator.hasNext()) {
+            Map.Entry<Object, Session> eldest = iterator.next();
+            iterator.remove();
+            evict(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void evict(Object memoryId, Session session) {
+        residentSessions.decrementAndGet();
+        evictions.increment();
+        if (spillDir != null && !session.messages.isEmpty()) {
+            spill(memoryId, session.messages);
+        }
+        for (Consumer<Object> listener : evictionListeners) {
+            try {
+                listener.accept(memoryId);
+            } catch (RuntimeException e) {
+                log.warn("会话淘汰回调失败: {}", memoryId, e);
+            }
+        }
+    }
+
+    private void spill(Object memoryId, List<ChatMessage> messages) {
+        Path file = spillFile(memoryId);
+        try {
+            Path tmp = Files.createTempFile(spillDir, file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new DeflaterOutputStream(Files.newOutputStream(tmp))) {
+                out.write(ChatMessageSerializer.messagesToJson(messages).getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            spills.increment();
+        } catch (IOException e) {
+            log.warn("会话落盘失败, 记忆将被丢弃: {}", memoryId, e);
+        }
+    }
+
+    private List<ChatMessage> restore(Object memoryId) {
+        if (spillDir == null) {
+            return null;
+        }
+        Path file = spillFile(memoryId);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(file))) {
+            List<ChatMessage> messages = ChatMessageDeserializer.messagesFromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            Files.deleteIfExists(file);
+            restores.increment();
+            return List.copyOf(messages);
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取会话落盘文件失败: {}", memoryId, e);
+            return null;
+        }
+    }
+
+    private void cleanExpiredSpills() {
+        if (spillDir == null) {
+            return;
+        }
+        FileTime threshold = FileTime.from(Instant.now().minus(spillTtl));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spillDir, "*.bin")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).compareTo(threshold) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理会话落盘目录失败: {}", spillDir, e);
+        }
+    }
+
+    private Path spillFile(Object memoryId) {
+        return spillDir.resolve(String.valueOf(memoryId).replaceAll("[^A-Za-z0-9_-]", "_") + ".bin");
+    }
+
+    private Stripe stripeFor(Object memoryId) {
+        int h = memoryId.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (stripes.length - 1)];
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.aicodehelper.ai.memory;
+
+import com.example.aicodehelper.ai.ratelimit.LlmRequestScheduler;
+import com.example.aicodehelper.ai.ratelimit.RateLimitedChatModel;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+
+/**
+ * 会话记忆存储配置
+ */
+@Configuration
+public class ChatMemoryConfig {
+
+    @Value("${chat-memory.max-sessions:10000}")
+    private int maxSessions;
+
+    @Value("${chat-memory.stripes:64}")
+    private int stripes;
+
+    @Value("${chat-memory.idle-timeout:30m}")
+    private Duration idleTimeout;
+
+    @Value("${chat-memory.spill-dir:}")
+    private String spillDir;
+
+    @Value("${chat-memory.spill-ttl:7d}")
+    private Duration spillTtl;
+
+    @Value("${chat-memory.window-messages:4}")
+    private int windowMessages;
+
+    @Value("${chat-memory.summary.enabled:true}")
+    private boolean summaryEnabled;
+
+    @Value("${chat-memory.summary.max-chars:200}")
+    private int summaryMaxChars;
+
+    @Resource
+    private ChatModel cheapChatModel;
+
+    @Resource
+    private LlmRequestScheduler llmRequestScheduler;
+
+    @Bean
+    public BoundedChatMemoryStore chatMemoryStore() {
+        return new BoundedChatMemoryStore(maxSessions, stripes, idleTimeout,
+                spillDir.isBlank() ? null : Path.of(spillDir), spillTtl);
+    }
+
+    /**
+     * 摘要任务在虚拟线程上执行, 应用关闭时一起关闭线程池
+     */
+    @Bean(destroyMethod = "close")
+    public SummaryCoordinator summaryCoordinator() {
+        return new SummaryCoordinator(stripes, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * 最近的消息原样保留, 更早的消息由便宜档的模型在后台压缩成摘要, 不再直接丢弃
+     */
+    @Bean
+    public ChatMemoryProvider chatMemoryProvider(BoundedChatMemoryStore chatMemoryStore,
+                                                 SummaryCoordinator summaryCoordinator) {
+        if (!summaryEnabled) {
+            return memoryId -> MessageWindowChatMemory.builder()
+                    .id(memoryId)
+                    .maxMessages(windowMessages)
+                    .chatMemoryStore(chatMemoryStore) // 有上限、会淘汰的会话存储
+                    .build();
+        }
+        // 摘要请求按后台优先级限流, 额度紧张时让位给对话
+        ChatMemorySummarizer summarizer = new ChatMemorySummarizer(
+                new RateLimitedChatModel(cheapChatModel, llmRequestScheduler, summaryMaxChars * 2,
+                        LlmRequestScheduler.Priority.BACKGROUND),
+                summaryMaxChars);
+        // 默认档和便宜档的 AiServices 各自为同一会话建 ChatMemory, 锁和摘要顺序放在共享的 coordinator 里
+        return memoryId -> new SummarizingChatMemory(memoryId, chatMemoryStore, windowMessages, summarizer,
+                summaryCoordinator);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.aicodehelper.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+
+import java.util.List;
+
+/**
+ * 用小模型把滑出窗口的旧消息压缩进会话摘要
+ */
+public class ChatMemorySummarizer {
+
+    private final ChatModel chatModel;
+
+    private final int maxSummaryChars;
+
+    public ChatMemorySummarizer(ChatModel chatModel, int maxSummaryChars) {
+        this.chatModel = chatModel;
+        this.maxSummaryChars = maxSummaryChars;
+    }
+
+    /**
+     * @param previousSummary 已有摘要, 没有时为 null
+     * @param evicted         新滑出窗口的消息
+     */
+    public String summarize(String previousSummary, List<ChatMessage> evicted) {
+        StringBuilder prompt = new StringBuilder()
+                .append("请把下面的对话记录合并进已有摘要, 输出新的摘要, 不超过").append(maxSummaryChars)
+                .append("字. 保留用户的编程水平、学习或求职目标、讨论过的技术点和已给出的关键建议, 不要寒暄.\n");
+        if (previousSummary != null && !previousSummary.isBlank()) {
+            prompt.append("\n已有摘要:\n").append(previousSummary).append('\n');
+        }
+        prompt.append("\n对话记录:\n");
+        for (ChatMessage message : evicted) {
+            if (message instanceof UserMessage userMessage) {
+                prompt.append("用户: ").append(text(userMessage)).append('\n');
+            } else if (message instanceof AiMessage aiMessage && aiMessage.text() != null) {
+                prompt.append("助手: ").append(aiMessage.text()).append('\n');
+            }
+        }
+        String summary = chatModel.chat(prompt.toString()).strip();
+        return summary.length() > maxSummaryChars * 2 ? summary.substring(0, maxSummaryChars * 2) : summary;
+    }
+
+    private static String text(UserMessage message) {
+        StringBuilder text = new StringBuilder();
+        for (Content content : message.contents()) {
+            if (content instanceof TextContent textContent) {
+                text.append(textContent.text());
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.aicodehelper.ai.memory;
+
+import com.example.aicodehelper.ai.ratelimit.LlmRequestContext;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 滑动窗口 + 摘要的会话记忆
+ * <p>
+ * 最近 maxMessages 条消息原样保留, 滑出窗口的消息在后台交给小模型并入摘要, 不阻塞当前这轮对话.
+ * 摘要作为一条带前缀的系统消息和其他消息一起存进 {@link ChatMemoryStore}, 取出时拼到系统提示词后面.
+ * 同一会话可能有多个实例, 读写存储的锁和摘要任务链由 {@link SummaryCoordinator} 统一管理.
+ */
+public class SummarizingChatMemory implements ChatMemory {
+
+    private static final Logger log = LoggerFactory.getLogger(SummarizingChatMemory.class);
+
+    static final String SUMMARY_PREFIX = "【此前对话摘要】\n";
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxMessages;
+
+    private final ChatMemorySummarizer summarizer;
+
+    private final SummaryCoordinator coordinator;
+
+    private final ReentrantLock lock;
+
+    public SummarizingChatMemory(Object id, ChatMemoryStore store, int maxMessages,
+                                 ChatMemorySummarizer summarizer, SummaryCoordinator coordinator) {
+        this.id = id;
+        this.store = store;
+        this.maxMessages = maxMessages;
+        this.summarizer = summarizer;
+        this.coordinator = coordinator;
+        this.lock = coordinator.lockFor(id);
+    }
+
+    /**
+     * 存储里的三部分: 系统提示词、摘要、窗口内的消息
+     */
+    private record State(SystemMessage system, String summary, List<ChatMessage> window) {
+
+        static State of(List<ChatMessage> stored) {
+            SystemMessage system = null;
+            String summary = null;
+            List<ChatMessage> window = new ArrayList<>();
+            for (ChatMessage message : stored) {
+                if (message instanceof SystemMessage systemMessage) {
+                    if (systemMessage.text().startsWith(SUMMARY_PREFIX)) {
+                        summary = systemMessage.text().substring(SUMMARY_PREFIX.length());
+                    } else {
+                        system = systemMessage;
+                    }
+                } else {
+                    window.add(message);
+                }
+            }
+            return new State(system, summary, window);
+        }
+
+        List<ChatMessage> toStored() {
+            List<ChatMessage> stored = new ArrayList<>(window.size() + 2);
+            if (system != null) {
+                stored.add(system);
+            }
+            if (summary != null) {
+                stored.add(SystemMessage.from(SUMMARY_PREFIX + summary));
+            }
+            stored.addAll(window);
+            return stored;
+        }
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        lock.lock();
+        try {
+            addLocked(message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void addLocked(ChatMessage message) {
+        State state = State.of(store.getMessages(id));
+        if (message instanceof SystemMessage systemMessage) {
+            if (systemMessage.equals(state.system())) {
+                return;
+            }
+            store.updateMessages(id, new State(systemMessage, state.summary(), state.window()).toStored());
+            return;
+        }
+        List<ChatMessage> window = state.window();
+        window.add(message);
+        List<ChatMessage> evicted = new ArrayList<>();
+        while (window.size() > maxMessages) {
+            ChatMessage removed = window.remove(0);
+            evicted.add(removed);
+            // 工具调用和它的结果一起移出, 不留下没有调用的结果
+            if (removed instanceof AiMessage aiMessage && aiMessage.hasToolExecutionRequests()) {
+                while (!window.isEmpty() && window.get(0) instanceof ToolExecutionResultMessage) {
+                    evicted.add(window.remove(0));
+                }
+            }
+        }
+        while (!window.isEmpty() && window.get(0) instanceof ToolExecutionResultMessage) {
+            evicted.add(window.remove(0));
+        }
+        store.updateMessages(id, new State(state.system(), state.summary(), window).toStored());
+        if (!evicted.isEmpty()) {
+            long generation = coordinator.generation(id);
+            coordinator.submit(id, () -> summarize(evicted, generation));
+        }
+    }
+
+    private void summarize(List<ChatMessage> evicted, long generation) {
+        String previous;
+        lock.lock();
+        try {
+            previous = State.of(store.getMessages(id)).summary();
+        } finally {
+            lock.unlock();
+        }
+        String summary;
+        try {
+            summary = LlmRequestContext.callWith(id, () -> summarizer.summarize(previous, evicted));
+        } catch (RuntimeException e) {
+            // 摘要失败时只是丢掉这几条旧消息, 和普通滑动窗口一样
+            log.warn("会话 {} 生成摘要失败: {}", id, e.toString());
+            return;
+        }
+        lock.lock();
+        try {
+            if (coordinator.generation(id) != generation) {
+                // 摘要期间会话已被清空
+                return;
+            }
+            State state = State.of(store.getMessages(id));
+            store.updateMessages(id, new State(state.system(), summary, state.window()).toStored());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 摘要拼到系统提示词后面, 模型只看到一条系统消息
+     */
+    @Override
+    public List<ChatMessage> messages() {
+        State state;
+        lock.lock();
+        try {
+            state = State.of(store.getMessages(id));
+        } finally {
+            lock.unlock();
+        }
+        List<ChatMessage> messages = new ArrayList<>(state.window().size() + 1);
+        if (state.summary() != null) {
+            String system = state.system() == null ? "" : state.system().text() + "\n\n";
+            messages.add(SystemMessage.from(system + SUMMARY_PREFIX + state.summary()));
+        } else if (state.system() != null) {
+            messages.add(state.system());
+        }
+        messages.addAll(state.window());
+        return messages;
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            store.deleteMessages(id);
+            coordinator.invalidate(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待已提交的摘要任务完成, 测试用
+     */
+    CompletableFuture<Void> pendingSummary() {
+        return coordinator.pending(id);
+    }
+}
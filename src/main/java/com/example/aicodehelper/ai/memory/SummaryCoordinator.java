@@ -0,0 +1,111 @@
+package com.example.aicodehelper.ai.memory;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 同一会话的多个 {@link SummarizingChatMemory} 共享的锁和摘要任务链
+ * <p>
+ * 每个 AiServices 实例都会为同一个 memoryId 各建一个 ChatMemory, 所以锁和摘要顺序不能挂在实例上.
+ * 锁按 memoryId 哈希分段, 数量固定; 任务链只在会话还有未完成的摘要时保留, 不随会话数增长.
+ */
+public class SummaryCoordinator implements Closeable {
+
+    private final ReentrantLock[] locks;
+
+    private final Map<Object, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+
+    // 会话在有未完成摘要期间被清空的次数, 任务链清空时一起移除; 读写时持有该会话的锁
+    private final Map<Object, Long> generations = new ConcurrentHashMap<>();
+
+    private final Executor executor;
+
+    public SummaryCoordinator(int stripeCount, Executor executor) {
+        // 段数取不小于 stripeCount 的2的幂
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * 读写该会话存储内容时持有的锁
+     */
+    ReentrantLock lockFor(Object memoryId) {
+        int h = memoryId.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (locks.length - 1)];
+    }
+
+    /**
+     * 排在该会话已提交的摘要任务之后执行, 后一次总是基于前一次的结果
+     */
+    CompletableFuture<Void> submit(Object memoryId, Runnable task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = pending.put(memoryId, done);
+        (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                .thenRunAsync(task, executor)
+                .whenComplete((ignored, e) -> {
+                    ReentrantLock lock = lockFor(memoryId);
+                    lock.lock();
+                    try {
+                        if (pending.remove(memoryId, done)) {
+                            generations.remove(memoryId);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    done.complete(null);
+                });
+        return done;
+    }
+
+    /**
+     * 会话当前的代数, 提交摘要时记下, 写回前比较; 调用时持有该会话的锁
+     */
+    long generation(Object memoryId) {
+        return generations.getOrDefault(memoryId, 0L);
+    }
+
+    /**
+     * 会话被清空, 之前提交的摘要不再写回, 免得把已删除的会话以只有摘要的形式恢复; 调用时持有该会话的锁
+     */
+    void invalidate(Object memoryId) {
+        if (pending.containsKey(memoryId)) {
+            generations.merge(memoryId, 1L, Long::sum);
+        }
+    }
+
+    /**
+     * 该会话最后一个摘要任务, 没有时返回已完成的 future
+     */
+    CompletableFuture<Void> pending(Object memoryId) {
+        return pending.getOrDefault(memoryId, CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * 等正在进行的摘要短暂收尾, 之后不再接受新任务; 没来得及做的摘要只是丢掉几条旧消息
+     */
+    @Override
+    public void close() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executorService.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.aicodehelper.ai.metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求各阶段的耗时和 token 用量
+ * <p>
+ * 指标注册在 {@link Metrics#globalRegistry} 上, Spring Boot 会把 Actuator 的注册表加进去; 护栏这类由 AiServices
+ * 直接实例化的对象也能记录, 单元测试里没有注册表时什么都不做. 按会话的 token 用量基数太高, 不做成指标标签,
+ * 放在有上限的本地表里, 通过 /ai/usage 查询.
+ */
+public final class AiMetrics {
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    private static final Cache<Object, SessionUsage> USAGE = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    /**
+     * 单个会话的累计用量
+     */
+    public record Usage(long requests, long inputTokens, long outputTokens) {
+
+        public long totalTokens() {
+            return inputTokens + outputTokens;
+        }
+    }
+
+    private static final class SessionUsage {
+
+        final LongAdder requests = new LongAdder();
+
+        final LongAdder inputTokens = new LongAdder();
+
+        final LongAdder outputTokens = new LongAdder();
+    }
+
+    private AiMetrics() {
+    }
+
+    /**
+     * 记录一个阶段的耗时, 名称以 ai. 开头, 标签为键值交替
+     */
+    public static void time(String name, long startNanos, String... tags) {
+        Timer.builder(name)
+                .tags(tags)
+                .register(REGISTRY)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 流式响应的吞吐
+     */
+    public static void tokensPerSecond(String backend, int outputTokens, long durationNanos) {
+        if (outputTokens <= 0 || durationNanos <= 0) {
+            return;
+        }
+        DistributionSummary.builder("ai.model.tokens.per.second")
+                .tag("backend", backend)
+                .register(REGISTRY)
+                .record(outputTokens * 1e9 / durationNanos);
+    }
+
+    /**
+     * 累计 token 用量, 同时按会话记账
+     */
+    public static void tokens(Object memoryId, TokenUsage tokenUsage) {
+        if (tokenUsage == null) {
+            return;
+        }
+        long input = tokenUsage.inputTokenCount() == null ? 0 : tokenUsage.inputTokenCount();
+        long output = tokenUsage.outputTokenCount() == null ? 0 : tokenUsage.outputTokenCount();
+        Counter.builder("ai.tokens").tag("type", "input").register(REGISTRY).increment(input);
+        Counter.builder("ai.tokens").tag("type", "output").register(REGISTRY).increment(output);
+        SessionUsage usage = USAGE.get(String.valueOf(memoryId), key -> new SessionUsage());
+        usage.requests.increment();
+        usage.inputTokens.add(input);
+        usage.outputTokens.add(output);
+    }
+
+    /**
+     * 会话的累计用量, 没有记录时返回 null
+     */
+    public static Usage usage(Object memoryId) {
+        SessionUsage usage = USAGE.getIfPresent(String.valueOf(memoryId));
+        if (usage == null) {
+            return null;
+        }
+        return new Usage(usage.requests.sum(), usage.inputTokens.sum(), usage.outputTokens.sum());
+    }
+}
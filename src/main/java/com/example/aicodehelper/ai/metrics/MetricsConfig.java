@@ -0,0 +1,20 @@
+package com.example.aicodehelper.ai.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Value("${ai.payload-log.sample-rate:0.01}")
+    private double payloadLogSampleRate;
+
+    @Value("${ai.payload-log.queue-capacity:1000}")
+    private int payloadLogQueueCapacity;
+
+    @Bean(destroyMethod = "close")
+    public SampledPayloadLogger sampledPayloadLogger() {
+        return new SampledPayloadLogger(payloadLogSampleRate, payloadLogQueueCapacity);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.aicodehelper.ai.metrics;
+
+import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
+import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 抽样、异步的模型请求/响应日志, 代替 logRequestsAndResponses(true)
+ * <p>
+ * 请求开始时按采样率决定是否记录, 同一次调用的请求和响应要么都记要么都不记. 日志内容先放进有界队列,
+ * 由后台线程格式化输出, 队列满时直接丢弃, 模型回调线程不做字符串拼接也不等待 IO. 出错的调用总是记录.
+ */
+public class SampledPayloadLogger implements ChatModelListener, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SampledPayloadLogger.class);
+
+    private static final String SAMPLED = "payload-log.sampled";
+
+    private final double sampleRate;
+
+    private final BlockingQueue<Runnable> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Thread writer;
+
+    public SampledPayloadLogger(double sampleRate, int queueCapacity) {
+        this.sampleRate = sampleRate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = Thread.ofPlatform().name("payload-log").daemon().start(this::drain);
+    }
+
+    @Override
+    public void onRequest(ChatModelRequestContext requestContext) {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        requestContext.attributes().put(SAMPLED, Boolean.TRUE);
+        submit(() -> log.info("模型请求: {}", requestContext.chatRequest()));
+    }
+
+    @Override
+    public void onResponse(ChatModelResponseContext responseContext) {
+        if (responseContext.attributes().containsKey(SAMPLED)) {
+            submit(() -> log.info("模型响应: {}", responseContext.chatResponse()));
+        }
+    }
+
+    @Override
+    public void onError(ChatModelErrorContext errorContext) {
+        submit(() -> log.warn("模型调用失败: {}", errorContext.error().toString()));
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    private void submit(Runnable entry) {
+        if (!queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                queue.take().run();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.interrupt();
+    }
+}
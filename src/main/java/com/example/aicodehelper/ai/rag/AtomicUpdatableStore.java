@@ -0,0 +1,15 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 支持原子批量更新的向量库: 删除和新增在同一把写锁内完成, 并发检索不会看到更新到一半的索引
+ */
+public interface AtomicUpdatableStore {
+
+    void update(Collection<String> removeIds, List<String> ids, List<Embedding> embeddings, List<TextSegment> segments);
+}
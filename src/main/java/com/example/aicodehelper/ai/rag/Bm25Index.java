@@ -0,0 +1,333 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内的 BM25 倒排索引, 与向量库索引同一批段落
+ * <p>
+ * 分词: 连续的中日韩字符切成二元组 (单字成词时保留单字), ASCII 字母数字按整词小写.
+ * 倒排表按文档号递增追加, 文档号差值和词频都用变长整数编码; 删除只打标记, 已删除文档多于有效文档时整体重建.
+ */
+public class Bm25Index implements AtomicUpdatableStore {
+
+    private static final float K1 = 1.2f;
+
+    private static final float B = 0.75f;
+
+    /**
+     * 检索命中
+     */
+    public record Hit(String id, TextSegment segment, double score) {
+    }
+
+    /**
+     * 单个词的倒排表: (文档号差值, 词频) 变长整数序列
+     */
+    private static final class Postings {
+
+        byte[] data = new byte[8];
+
+        int length;
+
+        int lastDoc = -1;
+
+        // 包含已删除文档, 检索时用有效文档数修正
+        int docFrequency;
+
+        void add(int doc, int termFrequency) {
+            writeVarint(doc - lastDoc);
+            writeVarint(termFrequency);
+            lastDoc = doc;
+            docFrequency++;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, Postings> postings = new HashMap<>();
+
+    // 文档号 -> 段落ID / 段落 / 词数
+    private List<String> docIds = new ArrayList<>();
+
+    private List<TextSegment> docSegments = new ArrayList<>();
+
+    private int[] docLengths = new int[64];
+
+    private BitSet deleted = new BitSet();
+
+    // 段落ID -> 有效文档号
+    private Map<String, Integer> liveDocs = new HashMap<>();
+
+    private long liveLength;
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Collection<String> removeIds, List<String> ids, List<Embedding> embeddings,
+                       List<TextSegment> segments) {
+        lock.writeLock().lock();
+        try {
+            removeIds.forEach(this::removeLocked);
+            for (int i = 0; i < ids.size(); i++) {
+                removeLocked(ids.get(i));
+                addLocked(ids.get(i), segments.get(i));
+            }
+            if (deleted.cardinality() > liveDocs.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void add(String id, TextSegment segment) {
+        update(List.of(), List.of(id), null, List.of(segment));
+    }
+
+    public void remove(Collection<String> ids) {
+        update(ids, List.of(), null, List.of());
+    }
+
+    public List<Hit> search(String query, int maxResults) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        lock.readLock().lock();
+        try {
+            int liveCount = liveDocs.size();
+            if (terms.isEmpty() || liveCount == 0 || maxResults <= 0) {
+                return List.of();
+            }
+            float averageLength = (float) liveLength / liveCount;
+            float[] scores = new float[docIds.size()];
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                int df = Math.min(list.docFrequency, liveCount);
+                float idf = (float) Math.log(1 + (liveCount - df + 0.5) / (df + 0.5));
+                byte[] data = list.data;
+                int pos = 0;
+                int doc = -1;
+                while (pos < list.length) {
+                    int delta = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        byte b = data[pos++];
+                        delta |= (b & 0x7F) << shift;
+                        if (b >= 0) {
+                            break;
+                        }
+                    }
+                    int tf = 0;
+                    for (int shift = 0; ; shift += 7) {
+                        byte b = data[pos++];
+                        tf |= (b & 0x7F) << shift;
+                        if (b >= 0) {
+                            break;
+                        }
+                    }
+                    doc += delta;
+                    if (deleted.get(doc)) {
+                        continue;
+                    }
+                    float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            return topHits(scores, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Hit> topHits(float[] scores, int maxResults) {
+        // 小顶堆取 top-k
+        int[] heap = new int[Math.min(maxResults, scores.length)];
+        int size = 0;
+        for (int doc = 0; doc < scores.length; doc++) {
+            float score = scores[doc];
+            if (score <= 0) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = doc;
+                siftUp(heap, scores, size++);
+            } else if (score > scores[heap[0]]) {
+                heap[0] = doc;
+                siftDown(heap, scores, size);
+            }
+        }
+        List<Hit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int doc = heap[i];
+            hits.add(new Hit(docIds.get(doc), docSegments.get(doc), scores[doc]));
+        }
+        hits.sort((a, b) -> Double.compare(b.score(), a.score()));
+        return hits;
+    }
+
+    private static void siftUp(int[] heap, float[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[heap[parent]] <= scores[heap[i]]) {
+                return;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, float[] scores, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && scores[heap[left + 1]] < scores[heap[left]] ? left + 1 : left;
+            if (scores[heap[i]] <= scores[heap[smallest]]) {
+                return;
+            }
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private void addLocked(String id, TextSegment segment) {
+        int doc = docIds.size();
+        List<String> tokens = tokenize(segment.text());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(doc, entry.getValue());
+        }
+        docIds.add(id);
+        docSegments.add(segment);
+        if (doc == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+        }
+        docLengths[doc] = tokens.size();
+        liveDocs.put(id, doc);
+        liveLength += tokens.size();
+    }
+
+    private void removeLocked(String id) {
+        Integer doc = liveDocs.remove(id);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        liveLength -= docLengths[doc];
+        // 修正文档频率, 让 idf 只反映有效文档
+        for (String term : new HashSet<>(tokenize(docSegments.set(doc, null).text()))) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                list.docFrequency--;
+            }
+        }
+    }
+
+    /**
+     * 丢弃已删除文档, 按有效文档重建倒排表
+     */
+    private void compact() {
+        List<String> ids = new ArrayList<>(liveDocs.size());
+        List<TextSegment> segments = new ArrayList<>(liveDocs.size());
+        for (int doc = 0; doc < docIds.size(); doc++) {
+            if (!deleted.get(doc)) {
+                ids.add(docIds.get(doc));
+                segments.add(docSegments.get(doc));
+            }
+        }
+        postings = new HashMap<>();
+        docIds = new ArrayList<>();
+        docSegments = new ArrayList<>();
+        docLengths = new int[Math.max(64, ids.size())];
+        deleted = new BitSet();
+        liveDocs = new HashMap<>();
+        liveLength = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            addLocked(ids.get(i), segments.get(i));
+        }
+    }
+
+    /**
+     * 中日韩字符按二元组切分, ASCII 字母数字按整词, 其余字符作为分隔
+     */
+    static List<String> tokenize(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder latin = new StringBuilder();
+        int cjkStart = -1;
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            boolean isLatin = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            if (isLatin) {
+                latin.append(Character.toLowerCase(c));
+            } else if (!latin.isEmpty()) {
+                tokens.add(latin.toString());
+                latin.setLength(0);
+            }
+            boolean cjk = i < n && isCjk(c);
+            if (cjk && cjkStart < 0) {
+                cjkStart = i;
+            } else if (!cjk && cjkStart >= 0) {
+                if (i - cjkStart == 1) {
+                    tokens.add(String.valueOf(text.charAt(cjkStart)));
+                }
+                for (int j = cjkStart; j + 1 < i; j++) {
+                    tokens.add(text.subSequence(j, j + 2).toString());
+                }
+                cjkStart = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(char c) {
+        if (Character.isIdeographic(c)) {
+            return true;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(c);
+        return script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.aicodehelper.ai.rag;
+
+import com.example.aicodehelper.ai.ratelimit.LlmRequestContext;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把并发的小向量请求合并成批
+ * <p>
+ * 第一条请求到达后最多等 maxWait, 或攒满 maxBatchSize 条, 合并成一次 embedAll 发出, 再把结果分发给各个调用方.
+ * 同一批里重复的文本只计算一次. 本身已经是大批量的请求直接透传.
+ * <p>
+ * 合并后的批次在独立线程上发出, 按批内第一个调用方的会话排队; 后台任务的请求不参与合并,
+ * 在调用方线程上直接发出, 保留后台优先级, 不会混进在线查询的批次.
+ */
+public class CoalescingEmbeddingModel implements EmbeddingModel, Closeable {
+
+    private record Pending(Object key, TextSegment segment, CompletableFuture<Embedding> future) {
+    }
+
+    private final EmbeddingModel delegate;
+
+    private final int maxBatchSize;
+
+    private final Duration maxWait;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "embedding-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    // 以下字段由 this 保护
+    private List<Pending> pending = new ArrayList<>();
+
+    private ScheduledFuture<?> scheduledFlush;
+
+    public CoalescingEmbeddingModel(EmbeddingModel delegate, int maxBatchSize, Duration maxWait) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        if (textSegments.size() >= maxBatchSize || maxWait.isZero() || LlmRequestContext.isBackground()) {
+            return delegate.embedAll(textSegments);
+        }
+        requests.addAndGet(textSegments.size());
+        Object key = LlmRequestContext.currentKey();
+        List<CompletableFuture<Embedding>> futures = new ArrayList<>(textSegments.size());
+        for (TextSegment segment : textSegments) {
+            CompletableFuture<Embedding> future = new CompletableFuture<>();
+            futures.add(future);
+            enqueue(new Pending(key, segment, future));
+        }
+        List<Embedding> embeddings = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<Embedding> future : futures) {
+                embeddings.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+        // 合并后的 token 用量无法拆分到单个调用方
+        return Response.from(embeddings);
+    }
+
+    private void enqueue(Pending request) {
+        List<Pending> batch = null;
+        synchronized (this) {
+            pending.add(request);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = timer.schedule(this::flushPending, maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+    }
+
+    private void flushPending() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        executor.execute(() -> {
+            // 同一批里相同文本只请求一次
+            Map<String, List<Pending>> byText = new LinkedHashMap<>();
+            List<TextSegment> segments = new ArrayList<>();
+            for (Pending request : batch) {
+                byText.computeIfAbsent(request.segment().text(), text -> {
+                    segments.add(request.segment());
+                    return new ArrayList<>();
+                }).add(request);
+            }
+            batches.incrementAndGet();
+            try {
+                List<Embedding> embeddings = LlmRequestContext.callWith(batch.get(0).key(),
+                        () -> delegate.embedAll(segments)).content();
+                for (int i = 0; i < segments.size(); i++) {
+                    Embedding embedding = embeddings.get(i);
+                    byText.get(segments.get(i).text()).forEach(request -> request.future().complete(embedding));
+                }
+            } catch (RuntimeException e) {
+                batch.forEach(request -> request.future().completeExceptionally(e));
+            }
+        });
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    /**
+     * 经过合并的文本数
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * 实际发给上游的批次数
+     */
+    public long batches() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        flushPending();
+        timer.shutdownNow();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听文档目录, 文件新增、修改或删除后在后台增量更新向量库, 无需重启
+ * <p>
+ * 编辑器保存时往往连续触发多个事件, 等目录安静 debounce 时间后再合并处理一次
+ */
+public class DocsWatcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DocsWatcher.class);
+
+    private final Path directory;
+
+    private final IncrementalIngestor ingestor;
+
+    private final Duration debounce;
+
+    private WatchService watchService;
+
+    private Thread thread;
+
+    public DocsWatcher(Path directory, IncrementalIngestor ingestor, Duration debounce) {
+        this.directory = directory;
+        this.ingestor = ingestor;
+        this.debounce = debounce;
+    }
+
+    public void start() {
+        if (!Files.isDirectory(directory)) {
+            log.warn("文档目录不存在, 不监听变更: {}", directory);
+            return;
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("监听文档目录失败: {}", directory, e);
+            return;
+        }
+        thread = new Thread(this::run, "rag-docs-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.info("开始监听文档目录: {}", directory);
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = drain(watchService.take(), changed);
+                // 合并一段时间内的连续事件
+                WatchKey key;
+                while ((key = watchService.poll(debounce.toMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= drain(key, changed);
+                }
+                try {
+                    if (overflow) {
+                        // 事件丢失, 退回全量比对 (未变化的文件按哈希跳过)
+                        ingestor.ingest(ingestor.load(directory));
+                    } else {
+                        reindex(changed);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("文档增量更新失败: {}", changed, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 关闭
+        }
+    }
+
+    private boolean drain(WatchKey key, Set<Path> changed) {
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    void reindex(Set<Path> changed) {
+        List<Document> documents = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Path file : changed) {
+            if (Files.isRegularFile(file)) {
+                try {
+                    documents.add(FileSystemDocumentLoader.loadDocument(file));
+                } catch (RuntimeException e) {
+                    log.warn("读取文档失败, 跳过: {}", file, e);
+                }
+            } else if (!Files.exists(file)) {
+                removed.add(file.getFileName().toString());
+            }
+        }
+        if (!documents.isEmpty() || !removed.isEmpty()) {
+            ingestor.update(documents, removed);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 向量快照: 按源文件保存切分后的段落和向量, 重启时未变化的文件无需重新向量化
+ * <p>
+ * 快照带有指纹(切分参数 + 向量模型名), 指纹不一致时整个快照作废
+ */
+public class EmbeddingSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingSnapshot.class);
+
+    private static final int MAGIC = 0x52414753; // "RAGS"
+    private static final int VERSION = 1;
+
+    /**
+     * 单个源文件的快照条目
+     */
+    public record Entry(String fileName,
+                        String contentHash,
+                        List<String> segmentIds,
+                        List<TextSegment> segments,
+                        List<Embedding> embeddings) {
+    }
+
+    private final String fingerprint;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public EmbeddingSnapshot(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    public Entry get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    public void put(Entry entry) {
+        entries.put(entry.fileName(), entry);
+    }
+
+    public Entry remove(String fileName) {
+        return entries.remove(fileName);
+    }
+
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    /**
+     * 读取快照, 文件不存在、损坏或指纹不一致时返回空快照
+     */
+    public static EmbeddingSnapshot load(Path path, String fingerprint) {
+        EmbeddingSnapshot snapshot = new EmbeddingSnapshot(fingerprint);
+        if (!Files.isRegularFile(path)) {
+            return snapshot;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("向量快照格式不兼容, 忽略: {}", path);
+                return snapshot;
+            }
+            String storedFingerprint = readString(in);
+            if (!fingerprint.equals(storedFingerprint)) {
+                log.info("切分参数或向量模型已变化, 忽略旧快照: [{}] -> [{}]", storedFingerprint, fingerprint);
+                return snapshot;
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                snapshot.put(readEntry(in));
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("读取向量快照失败, 将重新向量化: {}", path, e);
+            return new EmbeddingSnapshot(fingerprint);
+        }
+    }
+
+    /**
+     * 先写临时文件再原子替换, 避免进程中途退出留下半个快照
+     */
+    public void save(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, fingerprint);
+                List<Entry> snapshotEntries = new ArrayList<>(entries.values());
+                out.writeInt(snapshotEntries.size());
+                for (Entry entry : snapshotEntries) {
+                    writeEntry(out, entry);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        writeString(out, entry.fileName());
+        writeString(out, entry.contentHash());
+        out.writeInt(entry.segments().size());
+        for (int i = 0; i < entry.segments().size(); i++) {
+            TextSegment segment = entry.segments().get(i);
+            writeString(out, entry.segmentIds().get(i));
+            writeSegment(out, segment);
+            float[] vector = entry.embeddings().get(i).vector();
+            out.writeInt(vector.length);
+            for (float v : vector) {
+                out.writeFloat(v);
+            }
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        String fileName = readString(in);
+        String contentHash = readString(in);
+        int segmentCount = in.readInt();
+        List<String> ids = new ArrayList<>(segmentCount);
+        List<TextSegment> segments = new ArrayList<>(segmentCount);
+        List<Embedding> embeddings = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            ids.add(readString(in));
+            segments.add(readSegment(in));
+            float[] vector = new float[in.readInt()];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = in.readFloat();
+            }
+            embeddings.add(Embedding.from(vector));
+        }
+        return new Entry(fileName, contentHash, ids, segments, embeddings);
+    }
+
+    static void writeSegment(DataOutputStream out, TextSegment segment) throws IOException {
+        writeString(out, segment.text());
+        Map<String, Object> metadata = segment.metadata().toMap();
+        out.writeInt(metadata.size());
+        for (Map.Entry<String, Object> kv : metadata.entrySet()) {
+            writeString(out, kv.getKey());
+            writeString(out, String.valueOf(kv.getValue()));
+        }
+    }
+
+    static TextSegment readSegment(DataInputStream in) throws IOException {
+        String text = readString(in);
+        int metadataSize = in.readInt();
+        Map<String, String> metadata = new LinkedHashMap<>();
+        for (int j = 0; j < metadataSize; j++) {
+            metadata.put(readString(in), readString(in));
+        }
+        return TextSegment.from(text, Metadata.from(metadata));
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
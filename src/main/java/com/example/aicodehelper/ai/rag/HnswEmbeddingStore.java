@@ -0,0 +1,394 @@
+package com.example.aicodehelper.ai.rag;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于 HNSW 图索引的向量库, 适合十万级以上段落的近似检索
+ * <p>
+ * 索引、段落ID和段落内容一起持久化到磁盘, 重启后直接加载无需重建图; 删除只打标记,
+ * 已删除节点占比超过一半时在 {@link #flush()} 时整体重建.
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment>, AtomicUpdatableStore, Flushable, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(HnswEmbeddingStore.class);
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int VERSION = 1;
+
+    private final Path path;
+
+    private final int m;
+
+    private final int efConstruction;
+
+    private volatile int efSearch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<float[]> queryBuffer = ThreadLocal.withInitial(() -> new float[0]);
+
+    private HnswIndex index;
+
+    // 节点编号 -> 段落ID / 段落内容
+    private List<String> nodeIds = new ArrayList<>();
+
+    private List<TextSegment> nodeSegments = new ArrayList<>();
+
+    // 段落ID -> 当前有效的节点编号
+    private Map<String, Integer> liveNodes = new HashMap<>();
+
+    private boolean dirty;
+
+    public HnswEmbeddingStore(Path path, int m, int efConstruction, int efSearch) {
+        this.path = path;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        load();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveNodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * efSearch 只影响检索, 可以在运行时调整
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = randomIds(embeddings.size());
+        addAll(ids, embeddings, null);
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = randomIds(embeddings.size());
+        addAll(ids, embeddings, embedded);
+        return ids;
+    }
+
+    /**
+     * 已存在且向量相同的ID只更新段落内容, 从持久化索引启动时重复导入的段落不会重复插图
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != ids.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                index = new HnswIndex(embeddings.get(0).dimension(), m, efConstruction);
+            }
+            float[] existing = new float[index.dimension()];
+            float[] normalized = new float[index.dimension()];
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                float[] vector = embeddings.get(i).vector();
+                Integer node = liveNodes.get(id);
+                if (node != null) {
+                    index.vector(node, existing);
+                    HnswIndex.normalizeInto(vector, normalized, 0);
+                    if (Arrays.equals(existing, normalized)) {
+                        nodeSegments.set(node, segment);
+                        continue;
+                    }
+                    index.markDeleted(node);
+                }
+                int newNode = index.insert(vector);
+                nodeIds.add(id);
+                nodeSegments.add(segment);
+                liveNodes.put(id, newNode);
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer node = liveNodes.remove(id);
+                if (node != null) {
+                    index.markDeleted(node);
+                    nodeSegments.set(node, null);
+                    dirty = true;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            List<String> matched = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : liveNodes.entrySet()) {
+                TextSegment segment = nodeSegments.get(entry.getValue());
+                if (segment != null && filter.test(segment.metadata())) {
+                    matched.add(entry.getKey());
+                }
+            }
+            removeAll(matched);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            index = null;
+            nodeIds = new ArrayList<>();
+            nodeSegments = new ArrayList<>();
+            liveNodes = new HashMap<>();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写锁可重入, 删除和新增在同一次加锁内完成
+     */
+    @Override
+    public void update(Collection<String> removeIds, List<String> ids, List<Embedding> embeddings,
+                       List<TextSegment> segments) {
+        lock.writeLock().lock();
+        try {
+            removeAll(removeIds);
+            addAll(ids, embeddings, segments);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (index == null || liveNodes.isEmpty()) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] vector = request.queryEmbedding().vector();
+            if (vector.length != index.dimension()) {
+                throw new IllegalArgumentException("Expected dimension " + index.dimension() + " but got " + vector.length);
+            }
+            float[] query = queryBuffer.get();
+            if (query.length != vector.length) {
+                query = new float[vector.length];
+                queryBuffer.set(query);
+            }
+            HnswIndex.normalizeInto(vector, query, 0);
+            // 有过滤条件时多取一些候选, 再做后置过滤
+            Filter filter = request.filter();
+            int k = filter == null ? request.maxResults() : Math.max(request.maxResults() * 4, efSearch);
+            int[] nodes = new int[k];
+            float[] scores = new float[k];
+            int found = index.search(query, k, Math.max(efSearch, k), nodes, scores);
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(Math.min(found, request.maxResults()));
+            for (int i = 0; i < found && matches.size() < request.maxResults(); i++) {
+                // 与 langchain4j 一致, 相关度为 (cosine + 1) / 2
+                double score = (scores[i] + 1) / 2.0;
+                if (score < request.minScore()) {
+                    break;
+                }
+                TextSegment segment = nodeSegments.get(nodes[i]);
+                if (filter != null && (segment == null || !filter.test(segment.metadata()))) {
+                    continue;
+                }
+                float[] matchVector = new float[index.dimension()];
+                index.vector(nodes[i], matchVector);
+                matches.add(new EmbeddingMatch<>(score, nodeIds.get(nodes[i]), Embedding.from(matchVector), segment));
+            }
+            return new EmbeddingSearchResult<>(matches);
+        } finally {
+            lock.readLock().unlock();
+            AiMetrics.time("ai.vector.search.duration", start, "store", "hnsw");
+        }
+    }
+
+    /**
+     * 有改动时写回磁盘; 删除标记过多时先重建索引
+     */
+    @Override
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            if (index != null && index.size() > 0 && index.liveSize() * 2 < index.size()) {
+                rebuild();
+            }
+            save();
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void rebuild() {
+        HnswIndex rebuilt = new HnswIndex(index.dimension(), m, efConstruction);
+        List<String> ids = new ArrayList<>(liveNodes.size());
+        List<TextSegment> segments = new ArrayList<>(liveNodes.size());
+        Map<String, Integer> nodes = new HashMap<>();
+        float[] vector = new float[index.dimension()];
+        for (int node = 0; node < index.size(); node++) {
+            if (index.isDeleted(node)) {
+                continue;
+            }
+            index.vector(node, vector);
+            int newNode = rebuilt.insert(vector);
+            ids.add(nodeIds.get(node));
+            segments.add(nodeSegments.get(node));
+            nodes.put(nodeIds.get(node), newNode);
+        }
+        log.info("HNSW索引重建: {} -> {} 个节点", index.size(), rebuilt.size());
+        index = rebuilt;
+        nodeIds = ids;
+        nodeSegments = segments;
+        liveNodes = nodes;
+    }
+
+    private void save() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeBoolean(index != null);
+                if (index != null) {
+                    index.writeTo(out);
+                    for (int node = 0; node < index.size(); node++) {
+                        EmbeddingSnapshot.writeString(out, nodeIds.get(node));
+                        TextSegment segment = nodeSegments.get(node);
+                        out.writeBoolean(segment != null);
+                        if (segment != null) {
+                            EmbeddingSnapshot.writeSegment(out, segment);
+                        }
+                    }
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readBoolean()) {
+                return;
+            }
+            HnswIndex loaded = HnswIndex.readFrom(in);
+            if (loaded.m() != m || loaded.efConstruction() != Math.max(efConstruction, m)) {
+                log.info("HNSW构建参数已变化, 丢弃旧索引: M={} efConstruction={}", loaded.m(), loaded.efConstruction());
+                return;
+            }
+            for (int node = 0; node < loaded.size(); node++) {
+                String id = EmbeddingSnapshot.readString(in);
+                TextSegment segment = in.readBoolean() ? EmbeddingSnapshot.readSegment(in) : null;
+                nodeIds.add(id);
+                nodeSegments.add(segment);
+                if (!loaded.isDeleted(node)) {
+                    liveNodes.put(id, node);
+                }
+            }
+            index = loaded;
+            log.info("已加载HNSW索引: {} 个节点 ({} 个有效)", loaded.size(), liveNodes.size());
+        } catch (IOException e) {
+            log.warn("读取HNSW索引失败, 将重新构建: {}", path, e);
+            index = null;
+            nodeIds = new ArrayList<>();
+            nodeSegments = new ArrayList<>();
+            liveNodes = new HashMap<>();
+        }
+    }
+
+    private static List<String> randomIds(int n) {
+        List<String> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,544 @@
+package com.example.aicodehelper.ai.rag;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * HNSW 近似最近邻图索引 (Malkov &amp; Yashunin)
+ * <p>
+ * 向量归一化后按节点顺序平铺在一个 float[] 里, 相似度为点积, 越大越近.
+ * 支持边导入边插入; 删除只打标记, 被删节点仍参与图遍历但不会出现在结果里.
+ * 本类不做同步, 由调用方保证单写多读.
+ */
+public class HnswIndex {
+
+    private final int dimension;
+
+    // 第1层及以上每个节点的最大邻居数
+    private final int m;
+
+    // 第0层每个节点的最大邻居数
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private final double levelMultiplier;
+
+    private final SplittableRandom random;
+
+    private final ThreadLocal<SearchContext> contexts = ThreadLocal.withInitial(SearchContext::new);
+
+    private float[] vectors;
+
+    // links[node][level] = [邻居数, 邻居1, 邻居2, ...]
+    private int[][][] links;
+
+    private boolean[] deleted;
+
+    private int size;
+
+    private int deletedCount;
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        this(dimension, m, efConstruction, 42L);
+    }
+
+    public HnswIndex(int dimension, int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be >= 2");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.vectors = new float[16 * dimension];
+        this.links = new int[16][][];
+        this.deleted = new boolean[16];
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int m() {
+        return m;
+    }
+
+    public int efConstruction() {
+        return efConstruction;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int liveSize() {
+        return size - deletedCount;
+    }
+
+    public void markDeleted(int node) {
+        if (!deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted[node];
+    }
+
+    public void vector(int node, float[] target) {
+        System.arraycopy(vectors, node * dimension, target, 0, dimension);
+    }
+
+    /**
+     * 插入向量, 返回节点编号
+     */
+    public int insert(float[] vector) {
+        checkDimension(vector);
+        int node = size;
+        ensureCapacity(node + 1);
+        normalizeInto(vector, vectors, node * dimension);
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxNeighbors(l)];
+        }
+        size++;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        SearchContext ctx = contexts.get();
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedyClosest(vectors, node * dimension, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap nearest = searchLayer(vectors, node * dimension, ep, efConstruction, l, ctx);
+            int count = nearest.drainDescending(ctx.candidateIds, ctx.candidateScores);
+            int selected = selectNeighbors(ctx.candidateIds, ctx.candidateScores, count, maxNeighbors(l), ctx.selected);
+            int[] own = links[node][l];
+            own[0] = selected;
+            System.arraycopy(ctx.selected, 0, own, 1, selected);
+            for (int i = 0; i < selected; i++) {
+                connect(ctx.selected[i], node, l, ctx);
+            }
+            ep = ctx.candidateIds[0];
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * 检索最相近的 k 个未删除节点, 结果按相似度降序写入 ids/scores, 返回个数
+     */
+    public int search(float[] normalizedQuery, int k, int ef, int[] ids, float[] scores) {
+        if (entryPoint < 0) {
+            return 0;
+        }
+        SearchContext ctx = contexts.get();
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedyClosest(normalizedQuery, 0, ep, l);
+        }
+        NodeHeap nearest = searchLayer(normalizedQuery, 0, ep, Math.max(ef, k), 0, ctx);
+        int count = nearest.drainDescending(ctx.candidateIds, ctx.candidateScores);
+        int found = 0;
+        for (int i = 0; i < count && found < k; i++) {
+            int node = ctx.candidateIds[i];
+            if (!deleted[node]) {
+                ids[found] = node;
+                scores[found] = ctx.candidateScores[i];
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(size);
+        out.writeInt(deletedCount);
+        out.writeInt(entryPoint);
+        out.writeInt(maxLevel);
+        for (int i = 0; i < size * dimension; i++) {
+            out.writeFloat(vectors[i]);
+        }
+        for (int node = 0; node < size; node++) {
+            out.writeBoolean(deleted[node]);
+            out.writeByte(links[node].length);
+            for (int[] levelLinks : links[node]) {
+                out.writeShort(levelLinks[0]);
+                for (int i = 1; i <= levelLinks[0]; i++) {
+                    out.writeInt(levelLinks[i]);
+                }
+            }
+        }
+    }
+
+    public static HnswIndex readFrom(DataInputStream in) throws IOException {
+        int dimension = in.readInt();
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        HnswIndex index = new HnswIndex(dimension, m, efConstruction);
+        int size = in.readInt();
+        index.ensureCapacity(size);
+        index.size = size;
+        index.deletedCount = in.readInt();
+        index.entryPoint = in.readInt();
+        index.maxLevel = in.readInt();
+        for (int i = 0; i < size * dimension; i++) {
+            index.vectors[i] = in.readFloat();
+        }
+        for (int node = 0; node < size; node++) {
+            index.deleted[node] = in.readBoolean();
+            int levels = in.readByte();
+            index.links[node] = new int[levels][];
+            for (int l = 0; l < levels; l++) {
+                int[] levelLinks = new int[1 + index.maxNeighbors(l)];
+                levelLinks[0] = in.readShort();
+                for (int i = 1; i <= levelLinks[0]; i++) {
+                    levelLinks[i] = in.readInt();
+                }
+                index.links[node][l] = levelLinks;
+            }
+        }
+        return index;
+    }
+
+    public static void normalizeInto(float[] vector, float[] target, int offset) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm == 0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+        for (int j = 0; j < vector.length; j++) {
+            target[offset + j] = vector[j] * scale;
+        }
+    }
+
+    private void connect(int node, int neighbor, int level, SearchContext ctx) {
+        int[] nodeLinks = links[node][level];
+        int count = nodeLinks[0];
+        int max = maxNeighbors(level);
+        if (count < max) {
+            nodeLinks[count + 1] = neighbor;
+            nodeLinks[0] = count + 1;
+            return;
+        }
+        // 邻居已满, 在原邻居 + 新节点中重新启发式选择
+        int base = node * dimension;
+        int[] ids = ctx.pruneIds;
+        float[] scores = ctx.pruneScores;
+        for (int i = 0; i < count; i++) {
+            ids[i] = nodeLinks[i + 1];
+            scores[i] = dot(vectors, base, vectors, ids[i] * dimension);
+        }
+        ids[count] = neighbor;
+        scores[count] = dot(vectors, base, vectors, neighbor * dimension);
+        sortDescending(ids, scores, count + 1);
+        int selected = selectNeighbors(ids, scores, count + 1, max, ctx.pruneSelected);
+        nodeLinks[0] = selected;
+        System.arraycopy(ctx.pruneSelected, 0, nodeLinks, 1, selected);
+    }
+
+    /**
+     * 启发式选邻居: 候选按相似度降序, 只保留比任何已选邻居都更靠近目标的候选, 让邻居分布更分散
+     */
+    private int selectNeighbors(int[] ids, float[] scores, int count, int max, int[] selected) {
+        int chosen = 0;
+        for (int i = 0; i < count && chosen < max; i++) {
+            int candidate = ids[i];
+            boolean keep = true;
+            for (int j = 0; j < chosen; j++) {
+                if (dot(vectors, candidate * dimension, vectors, selected[j] * dimension) > scores[i]) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[chosen++] = candidate;
+            }
+        }
+        return chosen;
+    }
+
+    private int greedyClosest(float[] query, int queryOffset, int ep, int level) {
+        float best = dot(query, queryOffset, vectors, ep * dimension);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] nodeLinks = links[ep][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int candidate = nodeLinks[i];
+                float score = dot(query, queryOffset, vectors, candidate * dimension);
+                if (score > best) {
+                    best = score;
+                    ep = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    private NodeHeap searchLayer(float[] query, int queryOffset, int ep, int ef, int level, SearchContext ctx) {
+        ctx.prepare(size, ef);
+        NodeHeap candidates = ctx.candidates;
+        NodeHeap nearest = ctx.nearest;
+        float score = dot(query, queryOffset, vectors, ep * dimension);
+        ctx.visit(ep);
+        candidates.push(ep, score);
+        nearest.push(ep, score);
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.topScore();
+            int candidate = candidates.pop();
+            if (nearest.size() >= ef && candidateScore < nearest.topScore()) {
+                break;
+            }
+            int[] nodeLinks = links[candidate][level];
+            for (int i = 1; i <= nodeLinks[0]; i++) {
+                int neighbor = nodeLinks[i];
+                if (!ctx.visit(neighbor)) {
+                    continue;
+                }
+                float neighborScore = dot(query, queryOffset, vectors, neighbor * dimension);
+                if (nearest.size() < ef || neighborScore > nearest.topScore()) {
+                    candidates.push(neighbor, neighborScore);
+                    nearest.push(neighbor, neighborScore);
+                    if (nearest.size() > ef) {
+                        nearest.pop();
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double u = 1.0 - random.nextDouble();
+        return Math.min((int) (-Math.log(u) * levelMultiplier), 16);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= deleted.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, deleted.length * 2);
+        vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+        links = Arrays.copyOf(links, newCapacity);
+        deleted = Arrays.copyOf(deleted, newCapacity);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+    }
+
+    private float dot(float[] a, int aOffset, float[] b, int bOffset) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int j = 0;
+        for (int bound = dimension - 3; j < bound; j += 4) {
+            s0 += a[aOffset + j] * b[bOffset + j];
+            s1 += a[aOffset + j + 1] * b[bOffset + j + 1];
+            s2 += a[aOffset + j + 2] * b[bOffset + j + 2];
+            s3 += a[aOffset + j + 3] * b[bOffset + j + 3];
+        }
+        for (; j < dimension; j++) {
+            s0 += a[aOffset + j] * b[bOffset + j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static void sortDescending(int[] ids, float[] scores, int count) {
+        // 邻居数量很小 (<= 2M+1), 插入排序即可
+        for (int i = 1; i < count; i++) {
+            int id = ids[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                ids[j + 1] = ids[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            ids[j + 1] = id;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * 每个线程复用的检索状态: 用代数标记代替 visited 集合, 避免每次检索分配
+     */
+    private final class SearchContext {
+
+        private int[] visitedEpochs = new int[0];
+
+        private int epoch;
+
+        final NodeHeap candidates = new NodeHeap(true);
+
+        final NodeHeap nearest = new NodeHeap(false);
+
+        int[] candidateIds = new int[0];
+
+        float[] candidateScores = new float[0];
+
+        int[] selected = new int[0];
+
+        final int[] pruneIds = new int[maxM0 + 1];
+
+        final float[] pruneScores = new float[maxM0 + 1];
+
+        final int[] pruneSelected = new int[maxM0 + 1];
+
+        void prepare(int nodes, int ef) {
+            if (visitedEpochs.length < nodes) {
+                visitedEpochs = new int[Math.max(nodes, visitedEpochs.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(visitedEpochs, 0);
+                epoch = 1;
+            }
+            if (candidateIds.length < ef + 1) {
+                candidateIds = new int[ef + 1];
+                candidateScores = new float[ef + 1];
+                selected = new int[ef + 1];
+            }
+            candidates.clear();
+            nearest.clear();
+        }
+
+        /**
+         * 标记为已访问, 之前未访问过时返回 true
+         */
+        boolean visit(int node) {
+            if (visitedEpochs[node] == epoch) {
+                return false;
+            }
+            visitedEpochs[node] = epoch;
+            return true;
+        }
+    }
+
+    /**
+     * 基于数组的二叉堆, maxHeap 为 true 时堆顶分数最大, 否则最小
+     */
+    static final class NodeHeap {
+
+        private final boolean maxHeap;
+
+        private int[] ids = new int[64];
+
+        private float[] scores = new float[64];
+
+        private int size;
+
+        NodeHeap(boolean maxHeap) {
+            this.maxHeap = maxHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int id, float score) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            ids[i] = id;
+            scores[i] = score;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(i, parent)) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        int pop() {
+            int top = ids[0];
+            size--;
+            if (size > 0) {
+                ids[0] = ids[size];
+                scores[0] = scores[size];
+                int i = 0;
+                while (true) {
+                    int left = 2 * i + 1;
+                    if (left >= size) {
+                        break;
+                    }
+                    int child = left;
+                    if (left + 1 < size && before(left + 1, left)) {
+                        child = left + 1;
+                    }
+                    if (!before(child, i)) {
+                        break;
+                    }
+                    swap(i, child);
+                    i = child;
+                }
+            }
+            return top;
+        }
+
+        /**
+         * 取出全部元素, 按分数降序写入目标数组 (仅用于小顶堆)
+         */
+        int drainDescending(int[] targetIds, float[] targetScores) {
+            int count = size;
+            for (int i = count - 1; i >= 0; i--) {
+                targetScores[i] = scores[0];
+                targetIds[i] = pop();
+            }
+            return count;
+        }
+
+        private boolean before(int a, int b) {
+            return maxHeap ? scores[a] > scores[b] : scores[a] < scores[b];
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
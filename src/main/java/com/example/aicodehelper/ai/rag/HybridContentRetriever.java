@@ -0,0 +1,110 @@
+package com.example.aicodehelper.ai.rag;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量检索 + BM25 混合检索, 两路结果按倒数排名融合 (RRF)
+ * <p>
+ * 像 "HashMap"、"JVM" 这样的短关键词查询, 字面匹配命中时直接返回 BM25 结果, 省掉一次查询向量化
+ */
+public class HybridContentRetriever implements ContentRetriever {
+
+    private final ContentRetriever denseRetriever;
+
+    private final Bm25Index lexicalIndex;
+
+    private final int candidates;
+
+    private final int maxResults;
+
+    private final int rrfK;
+
+    private final int keywordMaxLength;
+
+    /**
+     * @param denseRetriever   向量检索, 返回的条数应不少于 candidates
+     * @param candidates       每一路参与融合的候选数
+     * @param maxResults       融合后返回的条数
+     * @param rrfK             RRF 平滑常数, 常用 60
+     * @param keywordMaxLength 不超过该长度且以英文/数字为主的查询走纯字面检索
+     */
+    public HybridContentRetriever(ContentRetriever denseRetriever, Bm25Index lexicalIndex,
+                                  int candidates, int maxResults, int rrfK, int keywordMaxLength) {
+        this.denseRetriever = denseRetriever;
+        this.lexicalIndex = lexicalIndex;
+        this.candidates = candidates;
+        this.maxResults = maxResults;
+        this.rrfK = rrfK;
+        this.keywordMaxLength = keywordMaxLength;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        long start = System.nanoTime();
+        List<Bm25Index.Hit> lexical = lexicalIndex.search(query.text(), candidates);
+        AiMetrics.time("ai.retrieval.duration", start, "stage", "bm25");
+        if (!lexical.isEmpty() && isKeywordQuery(query.text())) {
+            return lexical.stream()
+                    .limit(maxResults)
+                    .map(hit -> Content.from(hit.segment()))
+                    .toList();
+        }
+        long denseStart = System.nanoTime();
+        List<Content> dense = denseRetriever.retrieve(query);
+        AiMetrics.time("ai.retrieval.duration", denseStart, "stage", "dense");
+        if (lexical.isEmpty()) {
+            return dense.size() > maxResults ? dense.subList(0, maxResults) : dense;
+        }
+        // 以段落文本为键合并两路排名, 同分时向量结果在前
+        Map<String, Content> contents = new LinkedHashMap<>();
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (int rank = 0; rank < dense.size(); rank++) {
+            Content content = dense.get(rank);
+            String key = content.textSegment().text();
+            contents.putIfAbsent(key, content);
+            scores.merge(key, 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < lexical.size(); rank++) {
+            TextSegment segment = lexical.get(rank).segment();
+            String key = segment.text();
+            contents.putIfAbsent(key, Content.from(segment));
+            scores.merge(key, 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        List<String> keys = new ArrayList<>(scores.keySet());
+        keys.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        return keys.stream()
+                .limit(maxResults)
+                .map(contents::get)
+                .toList();
+    }
+
+    /**
+     * 短查询且中日韩字符不超过 2 个, 视为关键词查询, 例如 "HashMap"、"JVM 调优"、"第35题"
+     */
+    boolean isKeywordQuery(String text) {
+        String trimmed = text.strip();
+        if (trimmed.isEmpty() || trimmed.length() > keywordMaxLength) {
+            return false;
+        }
+        int cjk = 0;
+        boolean hasKeyword = false;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                hasKeyword = true;
+            } else if (c > 0x2E80 && Character.isLetter(c)) {
+                cjk++;
+            }
+        }
+        return hasKeyword && cjk <= 2;
+    }
+}
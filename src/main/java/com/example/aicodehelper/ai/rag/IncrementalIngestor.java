@@ -0,0 +1,558 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.data.segment.TextSegmentTransformer;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 增量向量化: 以文件内容哈希对比本地快照, 只对变化过的文件调用向量模型
+ * <p>
+ * 导入分三个阶段: 在 ForkJoinPool 上并行读取、切分文档; 把所有待向量化的段落按批次请求向量模型,
+ * 同时在途的批次数有上限, 失败按指数退避重试; 最后一次性写入向量库.
+ * 文件变化时按段落比对, 文本没变的段落沿用旧向量, 只有新出现的段落文本才会调用向量模型.
+ */
+public class IncrementalIngestor {
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalIngestor.class);
+
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    /**
+     * 导入参数
+     *
+     * @param parallelism        读取和切分文档的并行度
+     * @param batchSize          每次请求向量模型的段落数
+     * @param maxInFlightBatches 同时在途的向量化请求数
+     * @param maxAttempts        每个批次最多尝试次数
+     * @param initialBackoff     首次重试前的等待时间, 之后每次翻倍
+     */
+    public record Options(int parallelism, int batchSize, int maxInFlightBatches, int maxAttempts,
+                          Duration initialBackoff) {
+
+        public static Options defaults() {
+            return new Options(Runtime.getRuntime().availableProcessors(), 64, 4, 4, Duration.ofMillis(500));
+        }
+    }
+
+    /**
+     * 一次导入的统计
+     */
+    public record Result(int files, int reusedFiles, int embeddedFiles, int embeddedSegments, int reusedSegments,
+                         int removedFiles, int failedFiles, int batches, long elapsedMillis) {
+
+        public double segmentsPerSecond() {
+            return elapsedMillis == 0 ? embeddedSegments : embeddedSegments * 1000.0 / elapsedMillis;
+        }
+    }
+
+    /**
+     * 切分好、等待向量化的文件. 旧版本里文本相同的段落直接沿用向量, 其余下标记在 missing 里由各批次回填
+     */
+    private static final class PendingFile {
+
+        final String fileName;
+
+        final String contentHash;
+
+        final List<TextSegment> segments;
+
+        final Embedding[] embeddings;
+
+        final int[] missing;
+
+        volatile boolean failed;
+
+        PendingFile(String fileName, String contentHash, List<TextSegment> segments, EmbeddingSnapshot.Entry old) {
+            this.fileName = fileName;
+            this.contentHash = contentHash;
+            this.segments = segments;
+            this.embeddings = new Embedding[segments.size()];
+            Map<String, Embedding> reusable = new HashMap<>();
+            if (old != null) {
+                for (int i = 0; i < old.segments().size(); i++) {
+                    reusable.putIfAbsent(old.segments().get(i).text(), old.embeddings().get(i));
+                }
+            }
+            int[] indexes = new int[segments.size()];
+            int count = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                embeddings[i] = reusable.get(segments.get(i).text());
+                if (embeddings[i] == null) {
+                    indexes[count++] = i;
+                }
+            }
+            this.missing = Arrays.copyOf(indexes, count);
+        }
+
+        EmbeddingSnapshot.Entry toEntry() {
+            return new EmbeddingSnapshot.Entry(fileName, contentHash, segmentIds(fileName, segments),
+                    segments, Arrays.asList(embeddings));
+        }
+    }
+
+    /**
+     * 批次中属于同一个文件的一段待向量化段落, from/to 是 missing 数组的下标
+     */
+    private record Slice(PendingFile file, int from, int to) {
+    }
+
+    /**
+     * 第一阶段的产出: 可复用的快照条目, 或者待向量化的文件
+     */
+    private record Prepared(EmbeddingSnapshot.Entry reused, PendingFile pending) {
+    }
+
+    private final DocumentSplitter documentSplitter;
+
+    private final TextSegmentTransformer textSegmentTransformer;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final EmbeddingStore<TextSegment> embeddingStore;
+
+    private final Path snapshotPath;
+
+    private final String fingerprint;
+
+    private final Options options;
+
+    // 最近一次导入后的快照, 增量更新以它为基准
+    private EmbeddingSnapshot snapshot;
+
+    // 与向量库同步更新的辅助索引, 例如 BM25 倒排索引
+    private final List<AtomicUpdatableStore> secondaryIndexes = new CopyOnWriteArrayList<>();
+
+    public IncrementalIngestor(DocumentSplitter documentSplitter,
+                               TextSegmentTransformer textSegmentTransformer,
+                               EmbeddingModel embeddingModel,
+                               EmbeddingStore<TextSegment> embeddingStore,
+                               Path snapshotPath,
+                               String fingerprint) {
+        this(documentSplitter, textSegmentTransformer, embeddingModel, embeddingStore, snapshotPath, fingerprint,
+                Options.defaults());
+    }
+
+    public IncrementalIngestor(DocumentSplitter documentSplitter,
+                               TextSegmentTransformer textSegmentTransformer,
+                               EmbeddingModel embeddingModel,
+                               EmbeddingStore<TextSegment> embeddingStore,
+                               Path snapshotPath,
+                               String fingerprint,
+                               Options options) {
+        this.documentSplitter = documentSplitter;
+        this.textSegmentTransformer = textSegmentTransformer;
+        this.embeddingModel = embeddingModel;
+        this.embeddingStore = embeddingStore;
+        this.snapshotPath = snapshotPath;
+        this.fingerprint = fingerprint;
+        this.options = options;
+    }
+
+    /**
+     * 注册辅助索引, 之后每次导入或增量更新都会把同样的增删同步过去
+     */
+    public void addSecondaryIndex(AtomicUpdatableStore index) {
+        secondaryIndexes.add(index);
+    }
+
+    /**
+     * 并行读取目录下的文档 (不递归), 读取失败的文件跳过
+     */
+    public List<Document> load(Path directory) {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(Files::isRegularFile).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取文档目录失败: " + directory, e);
+        }
+        return inPool(() -> files.parallelStream()
+                .map(IncrementalIngestor::loadQuietly)
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    private static Document loadQuietly(Path file) {
+        try {
+            return FileSystemDocumentLoader.loadDocument(file);
+        } catch (RuntimeException e) {
+            log.warn("读取文档失败, 跳过: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * 全量导入: 以磁盘快照为基准, 不在 documents 中的文件视为已删除
+     */
+    public synchronized Result ingest(List<Document> documents) {
+        EmbeddingSnapshot previous = EmbeddingSnapshot.load(snapshotPath, fingerprint);
+        if (previous.entries().isEmpty()) {
+            // 快照缺失或已作废 (换了向量模型或切分参数), 持久化向量库里的旧段落对不上号, 也可能维度不同, 清空后重建
+            embeddingStore.removeAll();
+        }
+        return apply(previous, documents, List.of(), true);
+    }
+
+    /**
+     * 增量更新: 只处理新增或修改的文档和已删除的文件名, 其余文件保持不动
+     */
+    public synchronized Result update(List<Document> changed, Collection<String> removedFileNames) {
+        EmbeddingSnapshot previous = snapshot != null ? snapshot : EmbeddingSnapshot.load(snapshotPath, fingerprint);
+        return apply(previous, changed, removedFileNames, false);
+    }
+
+    private Result apply(EmbeddingSnapshot previous, List<Document> documents, Collection<String> removedFileNames,
+                         boolean full) {
+        long start = System.nanoTime();
+
+        // 1. 并行计算哈希, 只切分内容变化过的文件
+        List<Prepared> prepared = inPool(() -> documents.parallelStream()
+                .map(document -> prepare(document, previous))
+                .toList());
+        List<EmbeddingSnapshot.Entry> unchanged = new ArrayList<>();
+        List<PendingFile> pending = new ArrayList<>();
+        for (Prepared item : prepared) {
+            if (item.reused() != null) {
+                unchanged.add(item.reused());
+            } else {
+                pending.add(item.pending());
+            }
+        }
+        int reusedFiles = unchanged.size();
+
+        // 2. 分批向量化
+        int batches = embedAll(pending);
+        List<EmbeddingSnapshot.Entry> changedEntries = new ArrayList<>();
+        int embeddedSegments = 0;
+        int reusedSegments = 0;
+        int failedFiles = 0;
+        for (PendingFile file : pending) {
+            if (!file.failed) {
+                changedEntries.add(file.toEntry());
+                embeddedSegments += file.missing.length;
+                reusedSegments += file.segments.size() - file.missing.length;
+                continue;
+            }
+            failedFiles++;
+            // 向量化失败时保留旧版本, 哈希不一致, 下次导入会重试
+            EmbeddingSnapshot.Entry old = previous.get(file.fileName);
+            if (old != null) {
+                unchanged.add(old);
+            }
+        }
+
+        // 3. 生成新快照
+        EmbeddingSnapshot current = new EmbeddingSnapshot(fingerprint);
+        if (!full) {
+            previous.entries().forEach(current::put);
+        }
+        unchanged.forEach(current::put);
+        changedEntries.forEach(current::put);
+        removedFileNames.forEach(current::remove);
+
+        // 4. 与旧快照按段落ID求差, 一次性写入向量库. 全量导入时向量库可能是空的, 所有段落都要写入
+        Set<String> previousIds = new HashSet<>();
+        previous.entries().forEach(entry -> previousIds.addAll(entry.segmentIds()));
+        Set<String> currentIds = new HashSet<>();
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (EmbeddingSnapshot.Entry entry : current.entries()) {
+            currentIds.addAll(entry.segmentIds());
+        }
+        for (EmbeddingSnapshot.Entry entry : full ? current.entries() : changedEntries) {
+            for (int i = 0; i < entry.segmentIds().size(); i++) {
+                String id = entry.segmentIds().get(i);
+                if (full || !previousIds.contains(id)) {
+                    ids.add(id);
+                    embeddings.add(entry.embeddings().get(i));
+                    segments.add(entry.segments().get(i));
+                }
+            }
+        }
+        // 持久化的向量库里可能还留着已修改或已删除文件的旧段落
+        List<String> staleIds = previousIds.stream()
+                .filter(id -> !currentIds.contains(id))
+                .toList();
+        applyToStore(staleIds, ids, embeddings, segments);
+        flushStore();
+
+        int removedFiles = (int) previous.entries().stream()
+                .filter(entry -> current.get(entry.fileName()) == null)
+                .count();
+        // 没有新增向量且文件集合未变时不必重写快照
+        if (!changedEntries.isEmpty() || removedFiles > 0 || previous.entries().size() != current.entries().size()) {
+            try {
+                current.save(snapshotPath);
+            } catch (IOException e) {
+                log.warn("保存向量快照失败, 下次启动将重新向量化: {}", snapshotPath, e);
+            }
+        }
+        snapshot = current;
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        Result result = new Result(documents.size(), reusedFiles,
+                changedEntries.size(), embeddedSegments, reusedSegments, removedFiles, failedFiles, batches,
+                elapsedMillis);
+        log.info("RAG文档{}完成: {}, 向量化吞吐 {} 段/秒", full ? "导入" : "增量更新", result,
+                String.format("%.1f", result.segmentsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 支持原子更新的向量库在一把写锁内完成增删; 其他向量库先加后删,
+     * 检索期间最多短暂看到新旧两份段落, 不会出现内容缺失的空窗
+     */
+    private void applyToStore(List<String> removeIds, List<String> ids, List<Embedding> embeddings,
+                              List<TextSegment> segments) {
+        if (removeIds.isEmpty() && ids.isEmpty()) {
+            return;
+        }
+        for (AtomicUpdatableStore index : secondaryIndexes) {
+            index.update(removeIds, ids, embeddings, segments);
+        }
+        if (embeddingStore instanceof AtomicUpdatableStore atomicStore) {
+            atomicStore.update(removeIds, ids, embeddings, segments);
+            return;
+        }
+        if (!ids.isEmpty()) {
+            embeddingStore.addAll(ids, embeddings, segments);
+        }
+        if (!removeIds.isEmpty()) {
+            embeddingStore.removeAll(removeIds);
+        }
+    }
+
+    private Prepared prepare(Document document, EmbeddingSnapshot previous) {
+        String fileName = document.metadata().getString("file_name");
+        String contentHash = contentHash(document.text());
+        EmbeddingSnapshot.Entry entry = previous.get(fileName);
+        if (entry != null && entry.contentHash().equals(contentHash)) {
+            return new Prepared(entry, null);
+        }
+        List<TextSegment> segments = textSegmentTransformer.transformAll(documentSplitter.split(document));
+        return new Prepared(null, new PendingFile(fileName, contentHash, segments, entry));
+    }
+
+    /**
+     * 把所有待向量化的段落按 batchSize 切成批次 (一个批次可以跨文件), 在虚拟线程上并发请求,
+     * 在途批次数受信号量限制. 返回批次数
+     */
+    private int embedAll(List<PendingFile> pending) {
+        List<List<Slice>> batches = batches(pending);
+        if (batches.isEmpty()) {
+            return 0;
+        }
+        int totalSegments = pending.stream().mapToInt(file -> file.missing.length).sum();
+        log.info("开始向量化: {} 个文件, {} 个段落, {} 个批次", pending.size(), totalSegments, batches.size());
+        Progress progress = new Progress(totalSegments);
+        Semaphore inFlight = new Semaphore(options.maxInFlightBatches());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Slice> batch : batches) {
+                inFlight.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        embedBatch(batch);
+                        progress.advance(batch.stream().mapToInt(slice -> slice.to() - slice.from()).sum());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return batches.size();
+    }
+
+    private List<List<Slice>> batches(List<PendingFile> pending) {
+        int batchSize = Math.max(1, options.batchSize());
+        List<List<Slice>> batches = new ArrayList<>();
+        List<Slice> batch = new ArrayList<>();
+        int batchSegments = 0;
+        for (PendingFile file : pending) {
+            int from = 0;
+            while (from < file.missing.length) {
+                int to = Math.min(file.missing.length, from + batchSize - batchSegments);
+                batch.add(new Slice(file, from, to));
+                batchSegments += to - from;
+                from = to;
+                if (batchSegments == batchSize) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                    batchSegments = 0;
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private void embedBatch(List<Slice> batch) {
+        List<TextSegment> segments = new ArrayList<>();
+        for (Slice slice : batch) {
+            for (int k = slice.from(); k < slice.to(); k++) {
+                segments.add(slice.file().segments.get(slice.file().missing[k]));
+            }
+        }
+        List<Embedding> embeddings;
+        try {
+            embeddings = embedWithRetry(segments);
+        } catch (RuntimeException e) {
+            log.error("向量化批次失败, 放弃本批次涉及的文件: {}",
+                    batch.stream().map(slice -> slice.file().fileName).distinct().toList(), e);
+            batch.forEach(slice -> slice.file().failed = true);
+            return;
+        }
+        int offset = 0;
+        for (Slice slice : batch) {
+            for (int k = slice.from(); k < slice.to(); k++) {
+                slice.file().embeddings[slice.file().missing[k]] = embeddings.get(offset++);
+            }
+        }
+    }
+
+    private List<Embedding> embedWithRetry(List<TextSegment> segments) {
+        long backoff = Math.max(1, options.initialBackoff().toMillis());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+                if (embeddings.size() != segments.size()) {
+                    throw new IllegalStateException("向量数量与段落数量不一致: " + embeddings.size() + " != " + segments.size());
+                }
+                return embeddings;
+            } catch (RuntimeException e) {
+                if (attempt >= options.maxAttempts()) {
+                    throw e;
+                }
+                // 加随机抖动, 避免并发批次同时重试再次触发限流
+                long sleep = backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                log.warn("向量化批次失败, {}ms 后第 {} 次尝试: {}", sleep, attempt + 1, e.toString());
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * 在独立的 ForkJoinPool 里执行并行流, 不占用公共池
+     */
+    private <T> T inPool(Callable<T> task) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, options.parallelism()));
+        try {
+            return pool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("文档导入被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 每完成约 10% 打印一次进度和吞吐
+     */
+    private static final class Progress {
+
+        private final int total;
+
+        private final int step;
+
+        private final long start = System.nanoTime();
+
+        private final AtomicInteger done = new AtomicInteger();
+
+        Progress(int total) {
+            this.total = total;
+            this.step = Math.max(1, total / 10);
+        }
+
+        void advance(int segments) {
+            int after = done.addAndGet(segments);
+            int before = after - segments;
+            if (before / step != after / step || after == total) {
+                double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+                log.info("向量化进度 {}/{} 段, {} 段/秒", after, total, String.format("%.1f", after / seconds));
+            }
+        }
+    }
+
+    private void flushStore() {
+        if (embeddingStore instanceof Flushable flushable) {
+            try {
+                flushable.flush();
+            } catch (IOException e) {
+                log.warn("向量库写盘失败", e);
+            }
+        }
+    }
+
+    /**
+     * 段落ID由文件名和段落内容决定, 同一段落在多次启动间保持不变
+     */
+    static List<String> segmentIds(String fileName, List<TextSegment> segments) {
+        Map<String, Integer> occurrences = new HashMap<>();
+        List<String> ids = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            int occurrence = occurrences.merge(segment.text(), 1, Integer::sum);
+            String key = fileName + "\n" + occurrence + "\n" + segment.text();
+            ids.add(UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString());
+        }
+        return ids;
+    }
+
+    static String contentHash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
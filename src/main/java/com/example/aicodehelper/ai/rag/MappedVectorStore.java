@@ -0,0 +1,475 @@
+package com.example.aicodehelper.ai.rag;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于内存映射文件的向量库
+ * <p>
+ * 所有向量归一化后连续存放在堆外的映射区里, 相似度就是点积; 检索时用固定大小的小顶堆取 top-k,
+ * 扫描过程不产生对象分配. 映射文件只是向量的存放区, 每次启动都会截断并从向量快照重建.
+ */
+public class MappedVectorStore implements EmbeddingStore<TextSegment>, AtomicUpdatableStore, Closeable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final FileChannel channel;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 每个检索线程复用的查询向量和 top-k 堆
+    private final ThreadLocal<SearchScratch> scratch = ThreadLocal.withInitial(SearchScratch::new);
+
+    private FloatBuffer vectors;
+
+    private int dimension = -1;
+
+    private int capacity;
+
+    private int size;
+
+    private final List<String> ids = new ArrayList<>();
+
+    private final List<TextSegment> segments = new ArrayList<>();
+
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    public MappedVectorStore(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        addAll(List.of(id), List.of(embedding), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment textSegment) {
+        String id = UUID.randomUUID().toString();
+        addAll(List.of(id), List.of(embedding), textSegment == null ? null : List.of(textSegment));
+        return id;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> newIds = randomIds(embeddings.size());
+        addAll(newIds, embeddings, null);
+        return newIds;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> newIds = randomIds(embeddings.size());
+        addAll(newIds, embeddings, embedded);
+        return newIds;
+    }
+
+    /**
+     * 已存在的ID直接覆盖, 重复导入同一批段落不会产生重复向量
+     */
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        if (ids.size() != embeddings.size() || (embedded != null && embedded.size() != ids.size())) {
+            throw new IllegalArgumentException("ids, embeddings and embedded must have the same size");
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // 先校验整批的维度, 出错时不留下写了一半的状态
+            dimension = checkDimension(embeddings);
+            ensureCapacity(size + ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i);
+                TextSegment segment = embedded == null ? null : embedded.get(i);
+                Integer position = positions.get(id);
+                if (position == null) {
+                    position = size++;
+                    positions.put(id, position);
+                    this.ids.add(id);
+                    this.segments.add(segment);
+                } else {
+                    this.segments.set(position, segment);
+                }
+                writeNormalized(position, embeddings.get(i).vector());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer position = positions.remove(id);
+                if (position != null) {
+                    removeAt(position);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        lock.writeLock().lock();
+        try {
+            for (int i = size - 1; i >= 0; i--) {
+                TextSegment segment = segments.get(i);
+                if (segment != null && filter.test(segment.metadata())) {
+                    positions.remove(ids.get(i));
+                    removeAt(i);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        lock.writeLock().lock();
+        try {
+            ids.clear();
+            segments.clear();
+            positions.clear();
+            size = 0;
+            dimension = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写锁可重入, 删除和新增在同一次加锁内完成
+     */
+    @Override
+    public void update(Collection<String> removeIds, List<String> ids, List<Embedding> embeddings,
+                       List<TextSegment> segments) {
+        lock.writeLock().lock();
+        try {
+            if (!embeddings.isEmpty()) {
+                checkDimension(embeddings);
+            }
+            removeAll(removeIds);
+            addAll(ids, embeddings, segments);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        long start = System.nanoTime();
+        SearchScratch local = scratch.get();
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new EmbeddingSearchResult<>(List.of());
+            }
+            float[] query = local.normalizedQuery(request.queryEmbedding().vector(), dimension);
+            TopK top = local.topK(request.maxResults());
+            // minScore 是 langchain4j 的相关度 (cosine + 1) / 2, 换算回余弦阈值
+            float minCosine = (float) (2 * request.minScore() - 1);
+            Filter filter = request.filter();
+            FloatBuffer data = vectors;
+            for (int i = 0, base = 0; i < size; i++, base += dimension) {
+                float cosine = dot(data, base, query, dimension);
+                if (cosine < minCosine || !top.accepts(cosine)) {
+                    continue;
+                }
+                if (filter != null) {
+                    TextSegment segment = segments.get(i);
+                    if (segment == null || !filter.test(segment.metadata())) {
+                        continue;
+                    }
+                }
+                top.offer(i, cosine);
+            }
+            return new EmbeddingSearchResult<>(toMatches(top));
+        } finally {
+            lock.readLock().unlock();
+            AiMetrics.time("ai.vector.search.duration", start, "store", "mapped");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private List<EmbeddingMatch<TextSegment>> toMatches(TopK top) {
+        int count = top.sortDescending();
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int position = top.positions[k];
+            double score = (top.scores[k] + 1) / 2.0;
+            matches.add(new EmbeddingMatch<>(score, ids.get(position), copyVector(position), segments.get(position)));
+        }
+        return matches;
+    }
+
+    private Embedding copyVector(int position) {
+        float[] vector = new float[dimension];
+        vectors.get(position * dimension, vector);
+        return Embedding.from(vector);
+    }
+
+    private void removeAt(int position) {
+        int last = size - 1;
+        if (position != last) {
+            int from = last * dimension;
+            int to = position * dimension;
+            for (int j = 0; j < dimension; j++) {
+                vectors.put(to + j, vectors.get(from + j));
+            }
+            String movedId = ids.get(last);
+            ids.set(position, movedId);
+            segments.set(position, segments.get(last));
+            positions.put(movedId, position);
+        }
+        ids.remove(last);
+        segments.remove(last);
+        size = last;
+    }
+
+    /**
+     * 返回这批向量共同的维度; 与已有维度或彼此之间不一致时抛出异常
+     */
+    private int checkDimension(List<Embedding> embeddings) {
+        int expected = dimension < 0 ? embeddings.get(0).dimension() : dimension;
+        for (Embedding embedding : embeddings) {
+            if (embedding.dimension() != expected) {
+                throw new IllegalArgumentException("Expected dimension " + expected + " but got " + embedding.dimension());
+            }
+        }
+        return expected;
+    }
+
+    private void writeNormalized(int position, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float scale = norm == 0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+        int base = position * dimension;
+        for (int j = 0; j < dimension; j++) {
+            vectors.put(base + j, vector[j] * scale);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(INITIAL_CAPACITY, capacity);
+        while (newCapacity < required) {
+            newCapacity <<= 1;
+        }
+        long bytes = (long) newCapacity * dimension * Float.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Vector region exceeds 2GB: " + required + " x " + dimension);
+        }
+        try {
+            // 重新映射更大的区域, 已写入的数据在同一个文件里, 无需拷贝
+            vectors = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to map vector file", e);
+        }
+        capacity = newCapacity;
+    }
+
+    private static float dot(FloatBuffer data, int base, float[] query, int dimension) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int j = 0;
+        for (int bound = dimension - 3; j < bound; j += 4) {
+            s0 += data.get(base + j) * query[j];
+            s1 += data.get(base + j + 1) * query[j + 1];
+            s2 += data.get(base + j + 2) * query[j + 2];
+            s3 += data.get(base + j + 3) * query[j + 3];
+        }
+        for (; j < dimension; j++) {
+            s0 += data.get(base + j) * query[j];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static List<String> randomIds(int n) {
+        List<String> newIds = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            newIds.add(UUID.randomUUID().toString());
+        }
+        return newIds;
+    }
+
+    private static final class SearchScratch {
+
+        private float[] query = new float[0];
+
+        private final TopK topK = new TopK();
+
+        float[] normalizedQuery(float[] vector, int dimension) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+            }
+            if (query.length != dimension) {
+                query = new float[dimension];
+            }
+            double norm = 0;
+            for (float v : vector) {
+                norm += v * v;
+            }
+            float scale = norm == 0 ? 0f : (float) (1.0 / Math.sqrt(norm));
+            for (int j = 0; j < dimension; j++) {
+                query[j] = vector[j] * scale;
+            }
+            return query;
+        }
+
+        TopK topK(int k) {
+            topK.reset(k);
+            return topK;
+        }
+    }
+
+    /**
+     * 按分数的小顶堆, 堆顶是当前 top-k 里最低的分数
+     */
+    static final class TopK {
+
+        int[] positions = new int[16];
+
+        float[] scores = new float[16];
+
+        private int k;
+
+        private int count;
+
+        void reset(int k) {
+            if (positions.length < k) {
+                positions = new int[k];
+                scores = new float[k];
+            }
+            this.k = k;
+            this.count = 0;
+        }
+
+        boolean accepts(float score) {
+            return count < k || score > scores[0];
+        }
+
+        void offer(int position, float score) {
+            if (count < k) {
+                positions[count] = position;
+                scores[count] = score;
+                siftUp(count++);
+            } else {
+                positions[0] = position;
+                scores[0] = score;
+                siftDown(0, count);
+            }
+        }
+
+        /**
+         * 原地堆排序为降序, 返回结果个数
+         */
+        int sortDescending() {
+            int n = count;
+            for (int end = n - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            count = 0;
+            return n;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int n) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= n) {
+                    return;
+                }
+                int smallest = left;
+                int right = left + 1;
+                if (right < n && scores[right] < scores[left]) {
+                    smallest = right;
+                }
+                if (scores[i] <= scores[smallest]) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int p = positions[a];
+            positions[a] = positions[b];
+            positions[b] = p;
+            float s = scores[a];
+            scores[a] = scores[b];
+            scores[b] = s;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 调用方已经检索过同一个问题时直接返回已有结果, 不再检索第二次
+ * <p>
+ * 已有结果通过当前线程传入, 只对文本完全相同的查询生效, 其他查询照常交给 delegate.
+ */
+public class PrefetchedContentRetriever implements ContentRetriever {
+
+    private record Prefetched(String query, List<Content> contents) {
+    }
+
+    private static final ThreadLocal<Prefetched> PREFETCHED = new ThreadLocal<>();
+
+    private final ContentRetriever delegate;
+
+    public PrefetchedContentRetriever(ContentRetriever delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 在 action 里检索 query 时使用 contents
+     */
+    public static <T> T callWith(String query, List<Content> contents, Supplier<T> action) {
+        Prefetched previous = PREFETCHED.get();
+        PREFETCHED.set(new Prefetched(query, contents));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PREFETCHED.remove();
+            } else {
+                PREFETCHED.set(previous);
+            }
+        }
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        Prefetched prefetched = PREFETCHED.get();
+        if (prefetched != null && prefetched.query().equals(query.text())) {
+            return prefetched.contents();
+        }
+        return delegate.retrieve(query);
+    }
+}
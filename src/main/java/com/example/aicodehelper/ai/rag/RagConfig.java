@@ -1,21 +1,21 @@
 package com.example.aicodehelper.ai.rag;
 
-import dev.langchain4j.data.document.Document;
-import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
 import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import jakarta.annotation.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -26,40 +26,155 @@ public class RagConfig {
 
     private static final Logger log = LoggerFactory.getLogger(RagConfig.class);
 
+    // 段落最大字符数
+    private static final int MAX_SEGMENT_SIZE = 1000;
+
+    // 相邻段落最大重叠字符数
+    private static final int MAX_OVERLAP_SIZE = 200;
+
     @Resource
-    private EmbeddingModel githubEmbeddingModel;
+    private EmbeddingModel ingestEmbeddingModel;
+
+    @Resource
+    private EmbeddingModel queryEmbeddingModel;
 
     @Resource
     private EmbeddingStore<TextSegment>  embeddingStore;
 
+    @Value("${rag.docs-path:src/main/resources/docs}")
+    private String docsPath;
+
+    @Value("${rag.snapshot-path:data/rag-snapshot.bin}")
+    private String snapshotPath;
+
+    @Value("${langchain4j.github-models.embedding-model.model-name:text-embedding-3-small}")
+    private String embeddingModelName;
+
+    @Value("${rag.ingest.parallelism:0}")
+    private int ingestParallelism;
+
+    @Value("${rag.ingest.batch-size:64}")
+    private int ingestBatchSize;
+
+    @Value("${rag.ingest.max-in-flight:4}")
+    private int ingestMaxInFlight;
+
+    @Value("${rag.ingest.max-attempts:4}")
+    private int ingestMaxAttempts;
+
+    @Value("${rag.ingest.initial-backoff:500ms}")
+    private Duration ingestInitialBackoff;
+
+    @Value("${rag.load-retry-backoff:30s}")
+    private Duration loadRetryBackoff;
+
+    @Value("${rag.watch.debounce:1s}")
+    private Duration watchDebounce;
+
+    @Value("${rag.context.candidates:8}")
+    private int contextCandidates;
+
+    @Value("${rag.context.token-budget:1200}")
+    private int contextTokenBudget;
+
+    @Value("${rag.hybrid.enabled:true}")
+    private boolean hybridEnabled;
+
+    @Value("${rag.hybrid.candidates:10}")
+    private int hybridCandidates;
+
+    @Value("${rag.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${rag.hybrid.keyword-max-length:24}")
+    private int keywordMaxLength;
+
+    /**
+     * BM25 倒排索引, 和向量库由同一个导入器同步更新
+     */
+    @Bean
+    public Bm25Index bm25Index() {
+        return new Bm25Index();
+    }
+
     @Bean
-    public ContentRetriever contentRetriever() {
-        // 1.加载文档
-        List<Document> documents = FileSystemDocumentLoader.loadDocuments("src/main/resources/docs");
-        // 2.文档切割, 每个文档按照段落分割, 最大1000个字符, 每次最多重叠200个字符
+    public IncrementalIngestor ragIngestor(Bm25Index bm25Index) {
+        // 1.文档切割, 每个文档按照段落分割, 最大1000个字符, 每次最多重叠200个字符
         DocumentByParagraphSplitter documentByParagraphSplitter =
-                new DocumentByParagraphSplitter(1000, 200);
-        // 3.自定义文档加载器, 把文档转换成向量并保存到向量数据库
-        EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                .documentSplitter(documentByParagraphSplitter)
-                .textSegmentTransformer(textSegment ->
-                        TextSegment.from(
-                                textSegment.metadata().getString("file_name") + "\n" + textSegment.text(),
-                                textSegment.metadata()
-                        )
-                )
-                .embeddingModel(githubEmbeddingModel)
-                .embeddingStore(embeddingStore)
-                .build();
-        // 加载文档
-        ingestor.ingest(documents);
+                new DocumentByParagraphSplitter(MAX_SEGMENT_SIZE, MAX_OVERLAP_SIZE);
+        // 2.增量导入: 对比本地快照, 只把内容变化的文档转换成向量, 其余直接复用快照里的向量
+        IncrementalIngestor ingestor = new IncrementalIngestor(
+                documentByParagraphSplitter,
+                textSegment -> TextSegment.from(
+                        textSegment.metadata().getString("file_name") + "\n" + textSegment.text(),
+                        textSegment.metadata()
+                ),
+                ingestEmbeddingModel,
+                embeddingStore,
+                Path.of(snapshotPath),
+                snapshotFingerprint(),
+                ingestOptions()
+        );
+        if (hybridEnabled) {
+            ingestor.addSecondaryIndex(bm25Index);
+        }
+        return ingestor;
+    }
+
+    /**
+     * 3.在后台并行加载文档, 再分批向量化导入, 不阻塞启动
+     */
+    @Bean(destroyMethod = "close")
+    public RagIndexLoader ragIndexLoader(IncrementalIngestor ragIngestor) {
+        RagIndexLoader loader = new RagIndexLoader(ragIngestor, Path.of(docsPath), loadRetryBackoff);
+        loader.start();
+        return loader;
+    }
+
+    /**
+     * 首次导入完成前返回空结果, 对话降级为不带检索内容
+     */
+    @Bean
+    public ContentRetriever contentRetriever(RagIndexLoader ragIndexLoader, Bm25Index bm25Index) {
         // 4. 自定义内容加载器
         EmbeddingStoreContentRetriever contentRetriever = EmbeddingStoreContentRetriever.builder()
-                .embeddingModel(githubEmbeddingModel)
+                .embeddingModel(queryEmbeddingModel) // 带缓存的查询向量模型
                 .embeddingStore(embeddingStore)
-                .maxResults(2) // 最多返回2个相关内容 (减少token使用)
+                .maxResults(hybridEnabled ? Math.max(hybridCandidates, contextCandidates) : contextCandidates) // 混合检索时多取一些候选参与融合
                 .minScore(0.75) // 过滤掉分数低于0.75的内容
                 .build();
-        return contentRetriever;
+        ContentRetriever candidates = contentRetriever;
+        if (hybridEnabled) {
+            // 5. 与 BM25 字面检索融合
+            candidates = new HybridContentRetriever(contentRetriever, bm25Index, hybridCandidates, contextCandidates,
+                    rrfK, keywordMaxLength);
+        }
+        // 6. 去掉重叠内容后按 token 预算装入, 同一文件的段落合并, 文件名只出现一次
+        ContentRetriever retriever = new TokenBudgetContentRetriever(candidates, contextTokenBudget, MAX_OVERLAP_SIZE);
+        return query -> ragIndexLoader.ready() ? retriever.retrieve(query) : List.of();
+    }
+
+    /**
+     * 文档目录变更后在后台增量更新向量库
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "rag.watch.enabled", havingValue = "true", matchIfMissing = true)
+    public DocsWatcher docsWatcher(IncrementalIngestor ragIngestor) {
+        DocsWatcher watcher = new DocsWatcher(Path.of(docsPath), ragIngestor, watchDebounce);
+        watcher.start();
+        return watcher;
+    }
+
+    private IncrementalIngestor.Options ingestOptions() {
+        int parallelism = ingestParallelism > 0 ? ingestParallelism : Runtime.getRuntime().availableProcessors();
+        return new IncrementalIngestor.Options(parallelism, ingestBatchSize, ingestMaxInFlight,
+                ingestMaxAttempts, ingestInitialBackoff);
+    }
+
+    /**
+     * 快照指纹: 切分参数、段落前缀规则或向量模型变化时, 旧快照全部作废
+     */
+    private String snapshotFingerprint() {
+        return "paragraph(" + MAX_SEGMENT_SIZE + "," + MAX_OVERLAP_SIZE + ")|file-name-prefix|" + embeddingModelName;
     }
-}
\ No newline at end of file
+}
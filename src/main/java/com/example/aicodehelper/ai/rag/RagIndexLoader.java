@@ -0,0 +1,94 @@
+package com.example.aicodehelper.ai.rag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * 在后台线程完成首次文档导入, 不阻塞 Spring 容器启动
+ * <p>
+ * 首次导入完成前检索直接返回空结果 (对话照常进行, 只是没有 RAG 上下文); 导入出错或有文件向量化失败时
+ * 按退避间隔重试, 直到全部成功或应用关闭.
+ */
+public class RagIndexLoader implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RagIndexLoader.class);
+
+    private static final Duration MAX_RETRY_BACKOFF = Duration.ofMinutes(5);
+
+    private final IncrementalIngestor ingestor;
+
+    private final Path docsPath;
+
+    private final Duration retryBackoff;
+
+    private volatile boolean ready;
+
+    private volatile String lastError;
+
+    private Thread thread;
+
+    public RagIndexLoader(IncrementalIngestor ingestor, Path docsPath, Duration retryBackoff) {
+        this.ingestor = ingestor;
+        this.docsPath = docsPath;
+        this.retryBackoff = retryBackoff;
+    }
+
+    public void start() {
+        thread = new Thread(this::run, "rag-index-loader");
+        // 守护线程, CDS 训练运行在容器刷新后直接退出时不必等它
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        Duration backoff = retryBackoff;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                IncrementalIngestor.Result result = ingestor.ingest(ingestor.load(docsPath));
+                if (!ready) {
+                    ready = true;
+                    log.info("RAG 索引就绪, 开始提供检索内容");
+                }
+                if (result.failedFiles() == 0) {
+                    lastError = null;
+                    return;
+                }
+                // 已导入的部分先提供检索, 失败的文件稍后重试 (成功的文件从快照复用, 不会重复向量化)
+                lastError = result.failedFiles() + " 个文件向量化失败";
+            } catch (RuntimeException e) {
+                lastError = e.toString();
+                log.warn("RAG 索引加载失败, 在此之前对话不带检索内容", e);
+            }
+            log.info("{}ms 后重试 RAG 导入", backoff.toMillis());
+            try {
+                Thread.sleep(backoff.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+            Duration doubled = backoff.multipliedBy(2);
+            backoff = doubled.compareTo(MAX_RETRY_BACKOFF) > 0 ? MAX_RETRY_BACKOFF : doubled;
+        }
+    }
+
+    public boolean ready() {
+        return ready;
+    }
+
+    /**
+     * 最近一次失败的原因, 没有失败时为 null
+     */
+    public String lastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.aicodehelper.ai.rag;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import com.example.aicodehelper.ai.ratelimit.TokenEstimator;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按 token 预算组装检索结果
+ * <p>
+ * 多取一些候选, 去掉切分时相邻段落重叠的部分和被包含的段落, 再按检索排名贪心装入预算;
+ * 同一文件的段落合并成一条, 文件名只出现一次. token 数用本地估算, 不调用分词器.
+ */
+public class TokenBudgetContentRetriever implements ContentRetriever {
+
+    // 重叠部分至少这么长才认为是切分重叠, 避免误删偶然相同的短句
+    private static final int MIN_OVERLAP = 20;
+
+    private static final String SEPARATOR = "\n...\n";
+
+    private final ContentRetriever delegate;
+
+    private final int tokenBudget;
+
+    private final int maxOverlap;
+
+    /**
+     * @param delegate    返回按相关度排序的候选
+     * @param tokenBudget 检索内容总共最多占用的 token 数
+     * @param maxOverlap  切分器的最大重叠字符数
+     */
+    public TokenBudgetContentRetriever(ContentRetriever delegate, int tokenBudget, int maxOverlap) {
+        this.delegate = delegate;
+        this.tokenBudget = tokenBudget;
+        this.maxOverlap = maxOverlap;
+    }
+
+    private record Piece(String fileName, Metadata metadata, String text) {
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        long start = System.nanoTime();
+        try {
+            return pack(delegate.retrieve(query));
+        } finally {
+            AiMetrics.time("ai.retrieval.duration", start, "stage", "total");
+        }
+    }
+
+    private List<Content> pack(List<Content> candidates) {
+        Map<String, List<Piece>> byFile = new LinkedHashMap<>();
+        int used = 0;
+        for (Content content : candidates) {
+            Piece piece = dedupe(strip(content.textSegment()), byFile.get(key(content.textSegment())));
+            if (piece == null) {
+                continue;
+            }
+            boolean newFile = !byFile.containsKey(key(content.textSegment()));
+            int cost = TokenEstimator.estimate(piece.text())
+                    + (newFile ? TokenEstimator.estimate(piece.fileName()) + 1 : TokenEstimator.estimate(SEPARATOR));
+            if (used + cost > tokenBudget) {
+                if (!byFile.isEmpty()) {
+                    // 装不下就跳过, 后面更短的段落可能还放得下
+                    continue;
+                }
+                // 第一条就超出预算时截断, 至少保留最相关的内容
+                piece = new Piece(piece.fileName(), piece.metadata(), truncate(piece.text(), tokenBudget - cost
+                        + TokenEstimator.estimate(piece.text())));
+                cost = tokenBudget;
+            }
+            byFile.computeIfAbsent(key(content.textSegment()), k -> new ArrayList<>()).add(piece);
+            used += cost;
+        }
+        List<Content> packed = new ArrayList<>(byFile.size());
+        for (List<Piece> pieces : byFile.values()) {
+            StringBuilder text = new StringBuilder();
+            Piece first = pieces.get(0);
+            if (first.fileName() != null) {
+                text.append(first.fileName()).append('\n');
+            }
+            for (int i = 0; i < pieces.size(); i++) {
+                text.append(i == 0 ? "" : SEPARATOR).append(pieces.get(i).text());
+            }
+            packed.add(Content.from(TextSegment.from(text.toString(), first.metadata())));
+        }
+        return packed;
+    }
+
+    private static String key(TextSegment segment) {
+        String fileName = segment.metadata().getString("file_name");
+        return fileName == null ? "" : fileName;
+    }
+
+    /**
+     * 去掉导入时加在段落前面的文件名
+     */
+    private static Piece strip(TextSegment segment) {
+        String fileName = segment.metadata().getString("file_name");
+        String text = segment.text();
+        if (fileName != null && text.startsWith(fileName + "\n")) {
+            text = text.substring(fileName.length() + 1);
+        }
+        return new Piece(fileName, segment.metadata(), text);
+    }
+
+    /**
+     * 和同一文件已选的段落比较: 被包含的丢弃, 首尾重叠的部分裁掉; 什么都不剩时返回 null
+     */
+    private Piece dedupe(Piece piece, List<Piece> selected) {
+        if (selected == null) {
+            return piece;
+        }
+        String text = piece.text();
+        for (Piece other : selected) {
+            if (other.text().contains(text)) {
+                return null;
+            }
+            int head = overlap(other.text(), text);
+            if (head > 0) {
+                text = text.substring(head);
+            }
+            int tail = overlap(text, other.text());
+            if (tail > 0) {
+                text = text.substring(0, text.length() - tail);
+            }
+        }
+        text = text.strip();
+        return text.isEmpty() ? null : new Piece(piece.fileName(), piece.metadata(), text);
+    }
+
+    /**
+     * first 的结尾和 second 的开头相同的最大长度
+     */
+    private int overlap(String first, String second) {
+        int max = Math.min(Math.min(first.length(), second.length()), maxOverlap);
+        for (int length = max; length >= MIN_OVERLAP; length--) {
+            if (first.regionMatches(first.length() - length, second, 0, length)) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private static String truncate(String text, int tokens) {
+        int end = 0;
+        int used = 0;
+        while (end < text.length() && used < tokens) {
+            int next = Math.min(text.length(), end + 4);
+            used += TokenEstimator.estimate(text.subSequence(end, next));
+            end = next;
+        }
+        return text.substring(0, end);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 向量库配置, rag.index.type 可选 exact (精确暴力检索) 或 hnsw (近似图索引)
+ */
+@Configuration
+public class VectorStoreConfig {
+
+    @Value("${rag.vector-file:data/vectors.f32}")
+    private String vectorFile;
+
+    @Value("${rag.index.hnsw.path:data/hnsw.idx}")
+    private String hnswPath;
+
+    @Value("${rag.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${rag.index.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${rag.index.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Bean
+    @ConditionalOnProperty(name = "rag.index.type", havingValue = "exact", matchIfMissing = true)
+    public EmbeddingStore<TextSegment> embeddingStore() throws IOException {
+        // 向量放在堆外的映射文件里, 语料增长时堆占用和检索分配保持平稳
+        return new MappedVectorStore(Path.of(vectorFile));
+    }
+
+    @Bean(name = "embeddingStore")
+    @ConditionalOnProperty(name = "rag.index.type", havingValue = "hnsw")
+    public EmbeddingStore<TextSegment> hnswEmbeddingStore() {
+        // 段落数很大时用近似检索, 参数取舍参考 HnswRecallReport 的召回率/延迟报告
+        return new HnswEmbeddingStore(Path.of(hnswPath), hnswM, hnswEfConstruction, hnswEfSearch);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程上的会话标识, 模型装饰器据此做按会话的公平排队; 离线批量任务还会把优先级降为后台
+ */
+public final class LlmRequestContext {
+
+    private static final ThreadLocal<Object> MEMORY_ID = new ThreadLocal<>();
+
+    private static final ThreadLocal<Boolean> BACKGROUND = new ThreadLocal<>();
+
+    private static final Object ANONYMOUS = "anonymous";
+
+    private LlmRequestContext() {
+    }
+
+    public static Object currentKey() {
+        Object key = MEMORY_ID.get();
+        return key == null ? ANONYMOUS : key;
+    }
+
+    /**
+     * 在后台任务里调用时一律按后台优先级排队, 否则使用装饰器声明的优先级
+     */
+    public static LlmRequestScheduler.Priority priority(LlmRequestScheduler.Priority declared) {
+        return isBackground() ? LlmRequestScheduler.Priority.BACKGROUND : declared;
+    }
+
+    public static boolean isBackground() {
+        return Boolean.TRUE.equals(BACKGROUND.get());
+    }
+
+    /**
+     * 离线批量任务里的模型调用不和在线对话抢额度
+     */
+    public static <T> T callInBackground(Supplier<T> action) {
+        Boolean previous = BACKGROUND.get();
+        BACKGROUND.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                BACKGROUND.remove();
+            } else {
+                BACKGROUND.set(previous);
+            }
+        }
+    }
+
+    public static <T> T callWith(Object memoryId, Supplier<T> action) {
+        Object previous = MEMORY_ID.get();
+        MEMORY_ID.set(memoryId);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                MEMORY_ID.remove();
+            } else {
+                MEMORY_ID.set(previous);
+            }
+        }
+    }
+
+    public static void runWith(Object memoryId, Runnable action) {
+        callWith(memoryId, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
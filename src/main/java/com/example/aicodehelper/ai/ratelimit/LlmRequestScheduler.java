@@ -0,0 +1,356 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 模型调用的客户端限流调度器
+ * <p>
+ * 两个令牌桶分别限制每分钟请求数和预估 token 数. 请求先按优先级排队 (对话优先于后台的文档向量化),
+ * 同一优先级内按会话轮转, 一个会话的突发请求不会挤占其他会话. 由单个调度线程按桶的余量依次放行,
+ * 排队超过截止时间的请求以 429 拒绝; 放行后按响应里的实际 token 用量结算差额.
+ */
+public class LlmRequestScheduler implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LlmRequestScheduler.class);
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    /**
+     * @param requestsPerMinute 每分钟请求数, 0 表示不限制
+     * @param tokensPerMinute   每分钟 token 数, 0 表示不限制
+     */
+    public record Settings(long requestsPerMinute,
+                           long tokensPerMinute,
+                           Duration interactiveMaxWait,
+                           Duration backgroundMaxWait) {
+
+        Duration maxWait(Priority priority) {
+            return priority == Priority.INTERACTIVE ? interactiveMaxWait : backgroundMaxWait;
+        }
+    }
+
+    /**
+     * 放行凭证, 调用结束后用实际用量结算
+     */
+    public final class Permit {
+
+        private final long estimatedTokens;
+
+        private boolean settled;
+
+        private Permit(long estimatedTokens) {
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * @param actualTokens 实际用量, 未知 (如调用失败) 时传负数, 按预估计
+         */
+        public void release(long actualTokens) {
+            lock.lock();
+            try {
+                if (settled) {
+                    return;
+                }
+                settled = true;
+                if (tokens != null && actualTokens >= 0 && actualTokens != estimatedTokens) {
+                    tokens.settle(actualTokens - estimatedTokens);
+                    changed.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Ticket {
+
+        final Priority priority;
+
+        final Object key;
+
+        final long tokens;
+
+        final CompletableFuture<Permit> future;
+
+        // 是否还计在 queuedTokens/queuedRequests 里, 只在持有锁时读写
+        boolean counted = true;
+
+        Ticket(Priority priority, Object key, long tokens, CompletableFuture<Permit> future) {
+            this.priority = priority;
+            this.key = key;
+            this.tokens = tokens;
+            this.future = future;
+        }
+    }
+
+    private final Settings settings;
+
+    private final TokenBucket requests;
+
+    private final TokenBucket tokens;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition changed = lock.newCondition();
+
+    // 每个优先级一组会话队列, LinkedHashMap 的顺序即轮转顺序
+    private final Map<Priority, LinkedHashMap<Object, ArrayDeque<Ticket>>> queues = new LinkedHashMap<>();
+
+    private final long[] queuedTokens = new long[Priority.values().length];
+
+    private final int[] queuedRequests = new int[Priority.values().length];
+
+    private final AtomicLong granted = new AtomicLong();
+
+    private final AtomicLong shed = new AtomicLong();
+
+    private final Thread dispatcher;
+
+    private volatile boolean closed;
+
+    public LlmRequestScheduler(Settings settings) {
+        this.settings = settings;
+        long now = System.nanoTime();
+        this.requests = settings.requestsPerMinute() > 0 ? new TokenBucket(settings.requestsPerMinute(), now) : null;
+        this.tokens = settings.tokensPerMinute() > 0 ? new TokenBucket(settings.tokensPerMinute(), now) : null;
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new LinkedHashMap<>());
+        }
+        this.dispatcher = Thread.ofPlatform().name("llm-request-scheduler").daemon().start(this::dispatch);
+    }
+
+    /**
+     * 排队等待放行, 超过该优先级的截止时间后以 {@link RequestThrottledException} 失败
+     */
+    public CompletableFuture<Permit> submit(Priority priority, Object key, long estimatedTokens) {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        if (requests == null && tokens == null) {
+            future.complete(new Permit(estimatedTokens));
+            return future;
+        }
+        Duration maxWait = settings.maxWait(priority);
+        Ticket ticket = new Ticket(priority, key, estimatedTokens, future);
+        lock.lock();
+        try {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("scheduler closed"));
+                return future;
+            }
+            queues.get(priority).computeIfAbsent(key, k -> new ArrayDeque<>()).add(ticket);
+            queuedTokens[priority.ordinal()] += estimatedTokens;
+            queuedRequests[priority.ordinal()]++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        CompletableFuture.delayedExecutor(maxWait.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            // 超时的请求可能排在会话队列中间, 先从排队量里扣掉, 票据等轮到队首时再丢弃
+            boolean timedOut;
+            lock.lock();
+            try {
+                timedOut = future.completeExceptionally(new RequestThrottledException(
+                        "Model request queued longer than " + maxWait.toMillis() + "ms"));
+                if (timedOut) {
+                    forget(ticket);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (timedOut) {
+                shed.incrementAndGet();
+                log.warn("模型请求排队超过 {}ms, 已拒绝: priority={}, key={}", maxWait.toMillis(), priority, key);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 阻塞等待放行
+     */
+    public Permit acquire(Priority priority, Object key, long estimatedTokens) {
+        try {
+            return submit(priority, key, estimatedTokens).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 按当前排队量预测等待时间, 明显等不到的请求在入口直接拒绝, 不必占着连接排队
+     */
+    public void checkAdmission(Priority priority, long estimatedTokens) {
+        if (requests == null && tokens == null) {
+            return;
+        }
+        long wait;
+        lock.lock();
+        try {
+            long aheadTokens = estimatedTokens;
+            long aheadRequests = 1;
+            for (Priority p : Priority.values()) {
+                if (p.ordinal() <= priority.ordinal()) {
+                    aheadTokens += queuedTokens[p.ordinal()];
+                    aheadRequests += queuedRequests[p.ordinal()];
+                }
+            }
+            long now = System.nanoTime();
+            wait = Math.max(requests == null ? 0 : requests.nanosUntil(aheadRequests, now),
+                    tokens == null ? 0 : tokens.nanosUntil(aheadTokens, now));
+        } finally {
+            lock.unlock();
+        }
+        if (wait > settings.maxWait(priority).toNanos()) {
+            shed.incrementAndGet();
+            throw new RequestThrottledException("Model request rate limit reached, retry later");
+        }
+    }
+
+    public long granted() {
+        return granted.get();
+    }
+
+    public long shed() {
+        return shed.get();
+    }
+
+    public int queued() {
+        lock.lock();
+        try {
+            int total = 0;
+            for (int count : queuedRequests) {
+                total += count;
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch() {
+        lock.lock();
+        try {
+            while (!closed) {
+                Ticket ticket = peek();
+                if (ticket == null) {
+                    changed.await();
+                    continue;
+                }
+                long now = System.nanoTime();
+                long wait = Math.max(requests == null ? 0 : requests.nanosUntil(1, now),
+                        tokens == null ? 0 : tokens.nanosUntil(ticket.tokens, now));
+                if (wait > 0) {
+                    // 等待期间可能来了更高优先级的请求, 醒来后重新挑选
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+                poll(ticket);
+                if (requests != null) {
+                    requests.take(1, now);
+                }
+                if (tokens != null) {
+                    tokens.take(ticket.tokens, now);
+                }
+                // 先计数再完成, complete 会同步执行等待方的回调
+                granted.incrementAndGet();
+                if (!ticket.future.complete(new Permit(ticket.tokens))) {
+                    // 刚好超时, 退回额度
+                    granted.decrementAndGet();
+                    if (requests != null) {
+                        requests.settle(-1);
+                    }
+                    if (tokens != null) {
+                        tokens.settle(-ticket.tokens);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按优先级取下一个请求, 同一优先级取轮转到的会话的队首; 顺带清掉已超时的请求
+     */
+    private Ticket peek() {
+        for (LinkedHashMap<Object, ArrayDeque<Ticket>> byKey : queues.values()) {
+            Iterator<ArrayDeque<Ticket>> iterator = byKey.values().iterator();
+            while (iterator.hasNext()) {
+                ArrayDeque<Ticket> queue = iterator.next();
+                while (!queue.isEmpty() && queue.peekFirst().future.isDone()) {
+                    forget(queue.pollFirst());
+                }
+                if (queue.isEmpty()) {
+                    iterator.remove();
+                    continue;
+                }
+                return queue.peekFirst();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 取出队首, 并把该会话移到轮转顺序的末尾
+     */
+    private void poll(Ticket ticket) {
+        LinkedHashMap<Object, ArrayDeque<Ticket>> byKey = queues.get(ticket.priority);
+        ArrayDeque<Ticket> queue = byKey.remove(ticket.key);
+        queue.pollFirst();
+        forget(ticket);
+        if (!queue.isEmpty()) {
+            byKey.put(ticket.key, queue);
+        }
+    }
+
+    /**
+     * 从排队量里扣掉, 同一张票据只扣一次
+     */
+    private void forget(Ticket ticket) {
+        if (!ticket.counted) {
+            return;
+        }
+        ticket.counted = false;
+        queuedTokens[ticket.priority.ordinal()] -= ticket.tokens;
+        queuedRequests[ticket.priority.ordinal()]--;
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (LinkedHashMap<Object, ArrayDeque<Ticket>> byKey : queues.values()) {
+                byKey.values().forEach(queue -> queue.forEach(ticket -> {
+                    ticket.future.completeExceptionally(new IllegalStateException("scheduler closed"));
+                    forget(ticket);
+                }));
+                byKey.clear();
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        dispatcher.interrupt();
+    }
+}
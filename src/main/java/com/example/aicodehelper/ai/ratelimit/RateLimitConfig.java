@@ -0,0 +1,43 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${llm.rate-limit.requests-per-minute:60}")
+    private long requestsPerMinute;
+
+    @Value("${llm.rate-limit.tokens-per-minute:150000}")
+    private long tokensPerMinute;
+
+    @Value("${llm.rate-limit.interactive-max-wait:5s}")
+    private Duration interactiveMaxWait;
+
+    @Value("${llm.rate-limit.background-max-wait:2m}")
+    private Duration backgroundMaxWait;
+
+    @Resource
+    private EmbeddingModel githubEmbeddingModel;
+
+    @Bean(destroyMethod = "close")
+    public LlmRequestScheduler llmRequestScheduler() {
+        return new LlmRequestScheduler(new LlmRequestScheduler.Settings(
+                requestsPerMinute, tokensPerMinute, interactiveMaxWait, backgroundMaxWait));
+    }
+
+    /**
+     * 文档导入用的向量模型, 额度紧张时让位给对话请求
+     */
+    @Bean
+    public EmbeddingModel ingestEmbeddingModel(LlmRequestScheduler llmRequestScheduler) {
+        return new RateLimitedEmbeddingModel(githubEmbeddingModel, llmRequestScheduler,
+                LlmRequestScheduler.Priority.BACKGROUND);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.Set;
+
+/**
+ * 经过限流调度器放行后再调用模型
+ */
+public class RateLimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final LlmRequestScheduler scheduler;
+
+    private final int expectedOutputTokens;
+
+    private final LlmRequestScheduler.Priority priority;
+
+    public RateLimitedChatModel(ChatModel delegate, LlmRequestScheduler scheduler, int expectedOutputTokens) {
+        this(delegate, scheduler, expectedOutputTokens, LlmRequestScheduler.Priority.INTERACTIVE);
+    }
+
+    public RateLimitedChatModel(ChatModel delegate, LlmRequestScheduler scheduler, int expectedOutputTokens,
+                                LlmRequestScheduler.Priority priority) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.expectedOutputTokens = expectedOutputTokens;
+        this.priority = priority;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        Object key = LlmRequestContext.currentKey();
+        LlmRequestScheduler.Priority effective = LlmRequestContext.priority(priority);
+        long waitStart = System.nanoTime();
+        LlmRequestScheduler.Permit permit = scheduler.acquire(effective,
+                key, TokenEstimator.estimate(chatRequest, expectedOutputTokens));
+        AiMetrics.time("ai.ratelimit.wait", waitStart, "priority", effective.name().toLowerCase());
+        ChatResponse response = null;
+        try {
+            response = delegate.chat(chatRequest);
+            AiMetrics.tokens(key, response.tokenUsage());
+            return response;
+        } finally {
+            permit.release(response == null ? -1 : totalTokens(response.tokenUsage()));
+        }
+    }
+
+    static long totalTokens(TokenUsage tokenUsage) {
+        return tokenUsage == null || tokenUsage.totalTokenCount() == null ? -1 : tokenUsage.totalTokenCount();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+
+/**
+ * 向量模型的限流, 查询向量按对话优先级排队, 文档导入按后台优先级排队
+ */
+public class RateLimitedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+
+    private final LlmRequestScheduler scheduler;
+
+    private final LlmRequestScheduler.Priority priority;
+
+    public RateLimitedEmbeddingModel(EmbeddingModel delegate, LlmRequestScheduler scheduler,
+                                     LlmRequestScheduler.Priority priority) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.priority = priority;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        LlmRequestScheduler.Priority effective = LlmRequestContext.priority(priority);
+        String priorityTag = effective.name().toLowerCase();
+        long waitStart = System.nanoTime();
+        LlmRequestScheduler.Permit permit = scheduler.acquire(effective, LlmRequestContext.currentKey(),
+                TokenEstimator.estimate(textSegments));
+        AiMetrics.time("ai.ratelimit.wait", waitStart, "priority", priorityTag);
+        long start = System.nanoTime();
+        Response<List<Embedding>> response = null;
+        try {
+            response = delegate.embedAll(textSegments);
+            return response;
+        } finally {
+            AiMetrics.time("ai.embedding.duration", start, "priority", priorityTag);
+            permit.release(response == null ? -1 : RateLimitedChatModel.totalTokens(response.tokenUsage()));
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 流式调用的限流: 异步排队, 放行后在虚拟线程上发起请求, 不阻塞调用线程
+ * <p>
+ * 回调里重新设置会话标识和后台标记, 工具调用后的下一轮请求仍按原会话、原优先级排队.
+ */
+public class RateLimitedStreamingChatModel implements StreamingChatModel {
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final StreamingChatModel delegate;
+
+    private final LlmRequestScheduler scheduler;
+
+    private final int expectedOutputTokens;
+
+    public RateLimitedStreamingChatModel(StreamingChatModel delegate, LlmRequestScheduler scheduler, int expectedOutputTokens) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.expectedOutputTokens = expectedOutputTokens;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        Object key = LlmRequestContext.currentKey();
+        LlmRequestScheduler.Priority effective = LlmRequestContext.priority(LlmRequestScheduler.Priority.INTERACTIVE);
+        long waitStart = System.nanoTime();
+        scheduler.submit(effective, key, TokenEstimator.estimate(chatRequest, expectedOutputTokens))
+                .whenCompleteAsync((permit, error) -> {
+                    AiMetrics.time("ai.ratelimit.wait", waitStart, "priority", effective.name().toLowerCase());
+                    if (error != null) {
+                        handler.onError(error instanceof CompletionException ? error.getCause() : error);
+                        return;
+                    }
+                    try {
+                        runWith(key, effective, () -> delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+
+                            @Override
+                            public void onPartialResponse(String partialResponse) {
+                                handler.onPartialResponse(partialResponse);
+                            }
+
+                            @Override
+                            public void onCompleteResponse(ChatResponse completeResponse) {
+                                permit.release(RateLimitedChatModel.totalTokens(completeResponse.tokenUsage()));
+                                AiMetrics.tokens(key, completeResponse.tokenUsage());
+                                runWith(key, effective, () -> handler.onCompleteResponse(completeResponse));
+                            }
+
+                            @Override
+                            public void onError(Throwable error) {
+                                permit.release(-1);
+                                handler.onError(error);
+                            }
+                        }));
+                    } catch (RuntimeException e) {
+                        permit.release(-1);
+                        handler.onError(e);
+                    }
+                }, EXECUTOR);
+    }
+
+    private static void runWith(Object key, LlmRequestScheduler.Priority priority, Runnable action) {
+        if (priority == LlmRequestScheduler.Priority.BACKGROUND) {
+            LlmRequestContext.callInBackground(() -> {
+                LlmRequestContext.runWith(key, action);
+                return null;
+            });
+        } else {
+            LlmRequestContext.runWith(key, action);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
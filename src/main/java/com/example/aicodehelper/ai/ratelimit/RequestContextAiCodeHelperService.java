@@ -0,0 +1,51 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.service.Result;
+import reactor.core.publisher.Flux;
+
+/**
+ * 把 memoryId 放进 {@link LlmRequestContext}, 限流调度器据此按会话公平排队
+ * <p>
+ * 流式接口在订阅时才发起模型调用, 所以上下文要包住订阅过程而不是方法调用本身.
+ */
+public class RequestContextAiCodeHelperService implements AiCodeHelperService {
+
+    private final AiCodeHelperService delegate;
+
+    public RequestContextAiCodeHelperService(AiCodeHelperService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String chat(int memoryId, String userMessage) {
+        return LlmRequestContext.callWith(memoryId, () -> delegate.chat(memoryId, userMessage));
+    }
+
+    @Override
+    public Report chatForReport(int memoryId, String userMessage) {
+        return LlmRequestContext.callWith(memoryId, () -> delegate.chatForReport(memoryId, userMessage));
+    }
+
+    @Override
+    public Result<String> chatWithRag(int memoryId, String userMessage) {
+        return LlmRequestContext.callWith(memoryId, () -> delegate.chatWithRag(memoryId, userMessage));
+    }
+
+    @Override
+    public Flux<String> chatStream(int memoryId, String message) {
+        return Flux.<String>from(subscriber -> LlmRequestContext.runWith(memoryId,
+                () -> delegate.chatStream(memoryId, message).subscribe(subscriber)));
+    }
+
+    @Override
+    public ChatMemory getChatMemory(Object memoryId) {
+        return delegate.getChatMemory(memoryId);
+    }
+
+    @Override
+    public boolean evictChatMemory(Object memoryId) {
+        return delegate.evictChatMemory(memoryId);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * 排队超过截止时间, 直接以 429 拒绝
+ */
+public class RequestThrottledException extends ResponseStatusException {
+
+    public RequestThrottledException(String reason) {
+        super(HttpStatus.TOO_MANY_REQUESTS, reason);
+    }
+}
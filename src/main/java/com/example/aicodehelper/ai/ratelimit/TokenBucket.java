@@ -0,0 +1,48 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+/**
+ * 按每分钟额度连续补充的令牌桶, 非线程安全, 由调度器加锁访问
+ */
+final class TokenBucket {
+
+    private final double capacity;
+
+    private final double refillPerNano;
+
+    private double available;
+
+    private long lastRefill;
+
+    TokenBucket(long perMinute, long now) {
+        this.capacity = perMinute;
+        this.refillPerNano = perMinute / 60_000_000_000d;
+        this.available = perMinute;
+        this.lastRefill = now;
+    }
+
+    /**
+     * 距离桶里攒够 amount 还要多久, 超过容量的请求按容量计算, 避免永远等不到
+     */
+    long nanosUntil(double amount, long now) {
+        refill(now);
+        double missing = Math.min(amount, capacity) - available;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / refillPerNano);
+    }
+
+    void take(double amount, long now) {
+        refill(now);
+        available -= Math.min(amount, capacity);
+    }
+
+    /**
+     * 按实际用量结算, 多用的记为欠账, 少用的退回
+     */
+    void settle(double extra) {
+        available = Math.min(capacity, available - extra);
+    }
+
+    private void refill(long now) {
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.request.ChatRequest;
+
+import java.util.List;
+
+/**
+ * 不依赖分词器的 token 粗估: 中日韩文字按每字 1 个, 其他字符按每 4 个 1 个, 每条消息另加少量开销
+ * <p>
+ * 只用于限流前的预扣, 响应返回实际用量后再按差额结算
+ */
+public final class TokenEstimator {
+
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= '\u2E80') {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * @param expectedOutputTokens 请求未指定 maxOutputTokens 时预估的输出长度
+     */
+    public static int estimate(ChatRequest request, int expectedOutputTokens) {
+        int tokens = 0;
+        for (ChatMessage message : request.messages()) {
+            tokens += MESSAGE_OVERHEAD + estimate(message);
+        }
+        Integer maxOutputTokens = request.parameters() == null ? null : request.parameters().maxOutputTokens();
+        return tokens + (maxOutputTokens != null ? maxOutputTokens : expectedOutputTokens);
+    }
+
+    public static int estimate(List<TextSegment> segments) {
+        int tokens = 0;
+        for (TextSegment segment : segments) {
+            tokens += estimate(segment.text());
+        }
+        return tokens;
+    }
+
+    private static int estimate(ChatMessage message) {
+        if (message instanceof SystemMessage systemMessage) {
+            return estimate(systemMessage.text());
+        }
+        if (message instanceof UserMessage userMessage) {
+            int tokens = 0;
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimate(textContent.text());
+                }
+            }
+            return tokens;
+        }
+        if (message instanceof AiMessage aiMessage) {
+            int tokens = estimate(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
+                    tokens += estimate(toolExecutionRequest.name()) + estimate(toolExecutionRequest.arguments());
+                }
+            }
+            return tokens;
+        }
+        if (message instanceof ToolExecutionResultMessage toolResult) {
+            return estimate(toolResult.text());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.aicodehelper.ai.routing;
+
+import com.azure.core.exception.HttpResponseException;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 多个模型后端的实时状态和选择策略
+ * <p>
+ * 每个后端记录延迟 (普通调用为总耗时, 流式调用为首 token 耗时) 和错误率的指数加权平均,
+ * 按 延迟 × (1 + 4 × 错误率) 从低到高排序; 返回 429 的后端冷却一段时间后再参与排序.
+ * 请求优先使用指定档位 (如便宜的小模型) 的后端, 其他档位作为兜底.
+ */
+public class ModelRouter implements Closeable {
+
+    /**
+     * 后端档位
+     */
+    public enum Tier {
+        DEFAULT, CHEAP
+    }
+
+    /**
+     * 单个后端及其统计
+     */
+    public static final class Backend {
+
+        private final String name;
+
+        private final Tier tier;
+
+        private final ChatModel chatModel;
+
+        private final StreamingChatModel streamingChatModel;
+
+        private double latencyMillis = -1;
+
+        private double firstTokenMillis = -1;
+
+        private double errorRate;
+
+        private long cooldownUntilNanos;
+
+        public Backend(String name, Tier tier, ChatModel chatModel, StreamingChatModel streamingChatModel) {
+            this.name = name;
+            this.tier = tier;
+            this.chatModel = chatModel;
+            this.streamingChatModel = streamingChatModel;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public Tier tier() {
+            return tier;
+        }
+
+        public ChatModel chatModel() {
+            return chatModel;
+        }
+
+        public StreamingChatModel streamingChatModel() {
+            return streamingChatModel;
+        }
+
+        public synchronized double latencyMillis() {
+            return latencyMillis;
+        }
+
+        public synchronized double firstTokenMillis() {
+            return firstTokenMillis;
+        }
+
+        public synchronized double errorRate() {
+            return errorRate;
+        }
+
+        synchronized boolean coolingDown(long now) {
+            return now - cooldownUntilNanos < 0;
+        }
+
+        synchronized double score(boolean streaming) {
+            double latency = streaming ? firstTokenMillis : latencyMillis;
+            // 没有样本的后端按 0 处理, 让它尽快得到样本
+            return (Math.max(latency, 0) + 1) * (1 + 4 * errorRate);
+        }
+
+        synchronized void onSuccess(boolean streaming, long elapsedMillis, double alpha) {
+            if (streaming) {
+                firstTokenMillis = firstTokenMillis < 0 ? elapsedMillis : (1 - alpha) * firstTokenMillis + alpha * elapsedMillis;
+            } else {
+                latencyMillis = latencyMillis < 0 ? elapsedMillis : (1 - alpha) * latencyMillis + alpha * elapsedMillis;
+            }
+            errorRate = (1 - alpha) * errorRate;
+        }
+
+        synchronized void onFailure(boolean throttled, Duration cooldown, double alpha) {
+            errorRate = (1 - alpha) * errorRate + alpha;
+            if (throttled) {
+                cooldownUntilNanos = System.nanoTime() + cooldown.toNanos();
+            }
+        }
+    }
+
+    private final List<Backend> backends;
+
+    private final double alpha;
+
+    private final Duration throttleCooldown;
+
+    private final Duration hedgeDelay;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "model-router-hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param alpha            指数加权平均的系数
+     * @param throttleCooldown 返回 429 后的冷却时间
+     * @param hedgeDelay       流式请求首 token 超过该时间未到时, 同时向下一个后端发起请求
+     */
+    public ModelRouter(List<Backend> backends, double alpha, Duration throttleCooldown, Duration hedgeDelay) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个模型后端");
+        }
+        this.backends = List.copyOf(backends);
+        this.alpha = alpha;
+        this.throttleCooldown = throttleCooldown;
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    public List<Backend> backends() {
+        return backends;
+    }
+
+    Duration hedgeDelay() {
+        return hedgeDelay;
+    }
+
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    /**
+     * 按优先级排序: 未冷却 > 档位匹配 > 得分低
+     */
+    List<Backend> rank(Tier tier, boolean streaming) {
+        long now = System.nanoTime();
+        List<Backend> ranked = new ArrayList<>();
+        for (Backend backend : backends) {
+            if (streaming ? backend.streamingChatModel != null : backend.chatModel != null) {
+                ranked.add(backend);
+            }
+        }
+        ranked.sort(Comparator.<Backend, Boolean>comparing(backend -> backend.coolingDown(now))
+                .thenComparing(backend -> backend.tier != tier)
+                .thenComparingDouble(backend -> backend.score(streaming)));
+        return ranked;
+    }
+
+    void onSuccess(Backend backend, boolean streaming, long elapsedMillis) {
+        backend.onSuccess(streaming, elapsedMillis, alpha);
+    }
+
+    void onFailure(Backend backend, Throwable error) {
+        backend.onFailure(statusOf(error) == 429, throttleCooldown, alpha);
+    }
+
+    /**
+     * 限流、服务端错误、超时和网络错误可以换一个后端重试; 400 这类请求本身的问题不行
+     */
+    static boolean isRetryable(Throwable error) {
+        int status = statusOf(error);
+        if (status > 0) {
+            return status == 408 || status == 429 || status >= 500;
+        }
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof IOException || e instanceof UncheckedIOException || e instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int statusOf(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof HttpResponseException httpResponseException && httpResponseException.getResponse() != null) {
+                return httpResponseException.getResponse().getStatusCode();
+            }
+            if (e instanceof HttpException httpException) {
+                return httpException.statusCode();
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.aicodehelper.ai.routing;
+
+import com.example.aicodehelper.ai.metrics.SampledPayloadLogger;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.github.GitHubModelsChatModel;
+import dev.langchain4j.model.github.GitHubModelsStreamingChatModel;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@Configuration
+public class ModelRoutingConfig {
+
+    /**
+     * 额外的模型后端, 接口兼容 GitHub Models / Azure AI Inference
+     *
+     * @param tier       default 或 cheap, cheap 档优先处理学习报告这类简单请求
+     * @param apiKey     留空时使用 GitHub Token
+     * @param maxRetries 单个后端内部的重试次数, 默认 0, 失败直接交给路由切换后端
+     */
+    record BackendSettings(String name, String tier, String endpoint, String apiKey, String modelName,
+                           Duration timeout, Integer maxRetries) {
+    }
+
+    @Value("${langchain4j.github-models.chat-model.api-key:}")
+    private String githubToken;
+
+    @Value("${models.routing.hedge-delay:3s}")
+    private Duration hedgeDelay;
+
+    @Value("${models.routing.throttle-cooldown:20s}")
+    private Duration throttleCooldown;
+
+    @Value("${models.routing.ewma-alpha:0.2}")
+    private double ewmaAlpha;
+
+    @Resource
+    private ChatModel GithubChatModel;
+
+    @Resource
+    private StreamingChatModel GithubStreamingChatModel;
+
+    @Resource
+    private Environment environment;
+
+    @Resource
+    private SampledPayloadLogger sampledPayloadLogger;
+
+    @Bean(destroyMethod = "close")
+    public ModelRouter modelRouter() {
+        List<ModelRouter.Backend> backends = new ArrayList<>();
+        // 原有的 GitHub Models 后端始终参与路由
+        backends.add(new ModelRouter.Backend("github", ModelRouter.Tier.DEFAULT, GithubChatModel, GithubStreamingChatModel));
+        List<BackendSettings> configured = Binder.get(environment)
+                .bind("models.routing.backends", Bindable.listOf(BackendSettings.class))
+                .orElse(List.of());
+        for (BackendSettings settings : configured) {
+            backends.add(backend(settings));
+        }
+        return new ModelRouter(backends, ewmaAlpha, throttleCooldown, hedgeDelay);
+    }
+
+    @Bean
+    public ChatModel routingChatModel(ModelRouter modelRouter) {
+        return new RoutingChatModel(modelRouter, ModelRouter.Tier.DEFAULT);
+    }
+
+    @Bean
+    public StreamingChatModel routingStreamingChatModel(ModelRouter modelRouter) {
+        return new RoutingStreamingChatModel(modelRouter, ModelRouter.Tier.DEFAULT);
+    }
+
+    @Bean
+    public ChatModel cheapChatModel(ModelRouter modelRouter) {
+        return new RoutingChatModel(modelRouter, ModelRouter.Tier.CHEAP);
+    }
+
+    private ModelRouter.Backend backend(BackendSettings settings) {
+        String token = settings.apiKey() == null || settings.apiKey().isEmpty() ? githubToken : settings.apiKey();
+        Duration timeout = settings.timeout() == null ? Duration.ofSeconds(60) : settings.timeout();
+        int maxRetries = settings.maxRetries() == null ? 0 : settings.maxRetries();
+        ModelRouter.Tier tier = settings.tier() == null
+                ? ModelRouter.Tier.DEFAULT : ModelRouter.Tier.valueOf(settings.tier().toUpperCase(Locale.ROOT));
+        GitHubModelsChatModel.Builder chatModel = GitHubModelsChatModel.builder()
+                .gitHubToken(token)
+                .modelName(settings.modelName())
+                .timeout(timeout)
+                .maxRetries(maxRetries)
+                .listeners(List.of(sampledPayloadLogger));
+        GitHubModelsStreamingChatModel.Builder streamingChatModel = GitHubModelsStreamingChatModel.builder()
+                .gitHubToken(token)
+                .modelName(settings.modelName())
+                .timeout(timeout)
+                .maxRetries(maxRetries)
+                .listeners(List.of(sampledPayloadLogger));
+        if (settings.endpoint() != null && !settings.endpoint().isEmpty()) {
+            chatModel.endpoint(settings.endpoint());
+            streamingChatModel.endpoint(settings.endpoint());
+        }
+        String name = settings.name() == null ? settings.modelName() : settings.name();
+        return new ModelRouter.Backend(name, tier, chatModel.build(), streamingChatModel.build());
+    }
+}
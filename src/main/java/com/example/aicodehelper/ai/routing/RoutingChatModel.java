@@ -0,0 +1,62 @@
+package com.example.aicodehelper.ai.routing;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 按实时延迟和错误率选择后端的 ChatModel, 遇到 429/5xx/超时依次换下一个后端
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    private final ModelRouter router;
+
+    private final ModelRouter.Tier tier;
+
+    public RoutingChatModel(ModelRouter router, ModelRouter.Tier tier) {
+        this.router = router;
+        this.tier = tier;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        RuntimeException lastError = null;
+        for (ModelRouter.Backend backend : router.rank(tier, false)) {
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = backend.chatModel().chat(chatRequest);
+                router.onSuccess(backend, false, (System.nanoTime() - start) / 1_000_000);
+                AiMetrics.time("ai.model.duration", start, "backend", backend.name(), "outcome", "success");
+                return response;
+            } catch (RuntimeException e) {
+                AiMetrics.time("ai.model.duration", start, "backend", backend.name(), "outcome", "error");
+                if (!ModelRouter.isRetryable(e)) {
+                    throw e;
+                }
+                router.onFailure(backend, e);
+                log.warn("模型后端 {} 调用失败, 尝试下一个: {}", backend.name(), e.toString());
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new IllegalStateException("没有可用的模型后端");
+    }
+
+    /**
+     * 只声明所有后端都支持的能力, 否则可能被路由到不支持的后端
+     */
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        List<ModelRouter.Backend> backends = router.rank(tier, false);
+        Set<Capability> capabilities = new HashSet<>(backends.get(0).chatModel().supportedCapabilities());
+        backends.forEach(backend -> capabilities.retainAll(backend.chatModel().supportedCapabilities()));
+        return capabilities;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.aicodehelper.ai.routing;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 带对冲的路由 StreamingChatModel
+ * <p>
+ * 首 token 超过 hedgeDelay 还没到, 就同时向下一个后端发起同样的请求, 谁先吐出首 token 就用谁,
+ * 其余请求的输出全部丢弃 (当前版本的流式接口无法取消请求). 首 token 之前出错时换下一个后端,
+ * 之后出错只能直接报给调用方.
+ */
+@Slf4j
+public class RoutingStreamingChatModel implements StreamingChatModel {
+
+    private final ModelRouter router;
+
+    private final ModelRouter.Tier tier;
+
+    public RoutingStreamingChatModel(ModelRouter router, ModelRouter.Tier tier) {
+        this.router = router;
+        this.tier = tier;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new HedgedStream(chatRequest, handler, router.rank(tier, true)).startNext();
+    }
+
+    /**
+     * 一次流式请求的各个尝试
+     */
+    private final class HedgedStream {
+
+        private final ChatRequest request;
+
+        private final StreamingChatResponseHandler handler;
+
+        private final List<ModelRouter.Backend> backends;
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private volatile Throwable lastError;
+
+        HedgedStream(ChatRequest request, StreamingChatResponseHandler handler, List<ModelRouter.Backend> backends) {
+            this.request = request;
+            this.handler = handler;
+            this.backends = backends;
+        }
+
+        /**
+         * 启动下一个后端, 没有可用后端且没有进行中的尝试时报错
+         */
+        void startNext() {
+            int index = next.getAndIncrement();
+            if (index >= backends.size()) {
+                if (active.get() == 0 && done.compareAndSet(false, true)) {
+                    handler.onError(lastError != null ? lastError : new IllegalStateException("没有可用的模型后端"));
+                }
+                return;
+            }
+            Attempt attempt = new Attempt(backends.get(index));
+            active.incrementAndGet();
+            if (index + 1 < backends.size()) {
+                attempt.hedge = router.scheduler().schedule(() -> {
+                    if (winner.get() == null && !done.get()) {
+                        log.info("模型后端 {} 首 token 超过 {}ms, 对冲到下一个后端", attempt.backend.name(),
+                                router.hedgeDelay().toMillis());
+                        startNext();
+                    }
+                }, router.hedgeDelay().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            try {
+                attempt.backend.streamingChatModel().chat(request, attempt);
+            } catch (RuntimeException e) {
+                attempt.onError(e);
+            }
+        }
+
+        private final class Attempt implements StreamingChatResponseHandler {
+
+            private final ModelRouter.Backend backend;
+
+            private final long start = System.nanoTime();
+
+            private volatile ScheduledFuture<?> hedge;
+
+            private volatile long firstTokenNanos;
+
+            Attempt(ModelRouter.Backend backend) {
+                this.backend = backend;
+            }
+
+            /**
+             * 第一个产出内容的尝试胜出
+             */
+            private boolean claim() {
+                if (winner.get() == this) {
+                    return true;
+                }
+                if (!winner.compareAndSet(null, this)) {
+                    return false;
+                }
+                firstTokenNanos = System.nanoTime();
+                router.onSuccess(backend, true, (firstTokenNanos - start) / 1_000_000);
+                AiMetrics.time("ai.model.ttft", start, "backend", backend.name());
+                cancelHedge();
+                return true;
+            }
+
+            private void cancelHedge() {
+                ScheduledFuture<?> scheduled = hedge;
+                if (scheduled != null) {
+                    scheduled.cancel(false);
+                }
+            }
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (!done.get() && claim()) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                active.decrementAndGet();
+                if (claim() && done.compareAndSet(false, true)) {
+                    // 吞吐从首 token 开始算, 不含排队和首 token 前的等待
+                    AiMetrics.time("ai.model.stream.duration", start, "backend", backend.name());
+                    if (completeResponse.tokenUsage() != null && completeResponse.tokenUsage().outputTokenCount() != null) {
+                        AiMetrics.tokensPerSecond(backend.name(), completeResponse.tokenUsage().outputTokenCount(),
+                                System.nanoTime() - firstTokenNanos);
+                    }
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                active.decrementAndGet();
+                cancelHedge();
+                boolean retryable = ModelRouter.isRetryable(error);
+                if (retryable) {
+                    router.onFailure(backend, error);
+                }
+                Attempt current = winner.get();
+                if (current == this || (current == null && !retryable)) {
+                    if (done.compareAndSet(false, true)) {
+                        handler.onError(error);
+                    }
+                    return;
+                }
+                // 已经输给其他后端, 或者对冲的请求还在进行中
+                lastError = error;
+                if (current != null || done.get() || active.get() > 0) {
+                    return;
+                }
+                log.warn("模型后端 {} 流式调用失败, 尝试下一个: {}", backend.name(), error.toString());
+                startNext();
+            }
+        }
+    }
+}
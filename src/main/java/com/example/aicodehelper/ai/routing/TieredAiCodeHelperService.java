@@ -0,0 +1,55 @@
+package com.example.aicodehelper.ai.routing;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.service.Result;
+import reactor.core.publisher.Flux;
+
+/**
+ * 按方法分档: 学习报告这类结构简单的请求交给便宜档的模型, 其余走默认档
+ */
+public class TieredAiCodeHelperService implements AiCodeHelperService {
+
+    private final AiCodeHelperService defaultService;
+
+    private final AiCodeHelperService cheapService;
+
+    public TieredAiCodeHelperService(AiCodeHelperService defaultService, AiCodeHelperService cheapService) {
+        this.defaultService = defaultService;
+        this.cheapService = cheapService;
+    }
+
+    @Override
+    public String chat(int memoryId, String userMessage) {
+        return defaultService.chat(memoryId, userMessage);
+    }
+
+    @Override
+    public Report chatForReport(int memoryId, String userMessage) {
+        return cheapService.chatForReport(memoryId, userMessage);
+    }
+
+    @Override
+    public Result<String> chatWithRag(int memoryId, String userMessage) {
+        return defaultService.chatWithRag(memoryId, userMessage);
+    }
+
+    @Override
+    public Flux<String> chatStream(int memoryId, String message) {
+        return defaultService.chatStream(memoryId, message);
+    }
+
+    @Override
+    public ChatMemory getChatMemory(Object memoryId) {
+        return defaultService.getChatMemory(memoryId);
+    }
+
+    /**
+     * 两档服务各自缓存 ChatMemory, 都要移除
+     */
+    @Override
+    public boolean evictChatMemory(Object memoryId) {
+        boolean evicted = defaultService.evictChatMemory(memoryId);
+        return cheapService.evictChatMemory(memoryId) || evicted;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.aicodehelper.ai.tools;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 面试鸭搜索结果抓取
+ * <p>
+ * 按关键词缓存结果并设置过期时间, 同一关键词的并发请求只发一次 (由 Caffeine 异步缓存合并);
+ * HttpClient 复用连接并优先使用 HTTP/2; 页面流式解析, 读完结果表格后立即停止下载.
+ */
+public class InterviewQuestionFetcher implements Closeable {
+
+    private static final String RESULT_TABLE = "table:has(.ant-table-cell > a)";
+
+    private static final String QUESTION_LINK = ".ant-table-cell > a";
+
+    private final String baseUrl;
+
+    private final Duration timeout;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final HttpClient httpClient;
+
+    private final AsyncLoadingCache<String, List<String>> cache;
+
+    /**
+     * @param baseUrl      站点地址, 测试时可指向本地桩服务
+     * @param timeout      单次查询的总时间预算, 包括建连、等待响应和读取解析
+     * @param ttl          关键词结果的缓存时间
+     * @param maxKeywords  最多缓存的关键词数
+     */
+    public InterviewQuestionFetcher(String baseUrl, Duration timeout, Duration ttl, long maxKeywords) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxKeywords)
+                .expireAfterWrite(ttl)
+                .executor(executor)
+                .recordStats()
+                .buildAsync((keyword, ignored) -> CompletableFuture
+                        .supplyAsync(() -> fetch(keyword), executor)
+                        .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 查询面试题标题, 失败时抛出异常 (失败结果不会被缓存)
+     */
+    public List<String> search(String keyword) {
+        try {
+            return cache.get(normalize(keyword)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private static String normalize(String keyword) {
+        return keyword.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private List<String> fetch(String keyword) {
+        URI uri = URI.create(baseUrl + "/search/all?searchText=" + URLEncoder.encode(keyword, StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("User-Agent", "Mozilla/5.0")
+                .header("Accept", "text/html")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = decode(response)) {
+                if (response.statusCode() != 200) {
+                    throw new IOException("HTTP " + response.statusCode() + " from " + uri);
+                }
+                return extractQuestions(body, charset(response), uri.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while fetching " + uri, e);
+        }
+    }
+
+    /**
+     * 流式解析, 找到第一个包含题目链接的表格后停止读取, 关闭输入流即放弃剩余响应体
+     */
+    static List<String> extractQuestions(InputStream body, Charset charset, String baseUri) throws IOException {
+        List<String> questions = new ArrayList<>();
+        try (StreamParser streamer = new StreamParser(Parser.htmlParser())) {
+            streamer.parse(new InputStreamReader(body, charset), baseUri);
+            Element table = streamer.selectNext(RESULT_TABLE);
+            if (table != null) {
+                table.select(QUESTION_LINK).forEach(el -> questions.add(el.text().trim()));
+            }
+        }
+        return questions;
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue("Content-Encoding")
+                .map(value -> value.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        return gzip ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    private static Charset charset(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Type")
+                .map(type -> {
+                    int index = type.toLowerCase(Locale.ROOT).indexOf("charset=");
+                    if (index < 0) {
+                        return null;
+                    }
+                    try {
+                        return Charset.forName(type.substring(index + 8).replace("\"", "").strip());
+                    } catch (RuntimeException e) {
+                        return null;
+                    }
+                })
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -2,19 +2,17 @@ package com.example.aicodehelper.ai.tools;
 
 import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
-import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class InterviewQuestionTool {
 
+    private final InterviewQuestionFetcher fetcher;
+
+    public InterviewQuestionTool(InterviewQuestionFetcher fetcher) {
+        this.fetcher = fetcher;
+    }
+
     /***
      * 从面试鸭获取面试题列表
      * @param keyword
@@ -27,24 +25,12 @@ public class InterviewQuestionTool {
             """
     )
     public String searchInterviewQuestions(@P(value = "the keyword to search") String keyword){
-        List<String> questions = new ArrayList<>();
-        // 构建搜索URL
-        String encodedKeyword = URLEncoder.encode(keyword, StandardCharsets.UTF_8);
-        String url = "https://www.mianshiya.com/search/all?searchText=" + encodedKeyword;
-        // 发送请求并解析页面
-        Document doc;
+        // 带缓存和并发合并的抓取, 热门关键词不会反复请求站点
         try {
-            doc = Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0")
-                    .timeout(5000)
-                    .get();
-        } catch (IOException e) {
+            return String.join("\n", fetcher.search(keyword));
+        } catch (RuntimeException e) {
             log.error("get web error", e);
             return e.getMessage();
         }
-        // 提取面试题
-        Elements questionElements = doc.select(".ant-table-cell > a");
-        questionElements.forEach(el -> questions.add(el.text().trim()));
-        return String.join("\n", questions);
     }
 }
@@ -0,0 +1,182 @@
+package com.example.aicodehelper.ai.tools;
+
+import com.example.aicodehelper.ai.metrics.AiMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.agent.tool.ToolSpecifications;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.service.tool.DefaultToolExecutor;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProvider;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 统一的工具入口: 合并本地工具和其他 ToolProvider (如 MCP), 每次调用在虚拟线程上执行并有单独的超时
+ * <p>
+ * AiServices 会按顺序逐个执行一条消息里的工具调用. 模型一次返回多个调用时, 由
+ * {@link ToolPrefetchingChatModel} 调用 {@link #prefetch(AiMessage)} 立即并发启动全部调用,
+ * AiServices 随后按顺序执行时只是取回已在进行中的结果, 整轮耗时从各工具耗时之和降到最慢的那一个.
+ * 提前启动时用的是同一会话本轮 {@link #provideTools} 给出的执行器, 不会拿到其他会话的 (可能已失效的 MCP 客户端).
+ */
+@Slf4j
+public class ParallelToolProvider implements ToolProvider, Closeable {
+
+    private final Map<ToolSpecification, ToolExecutor> localTools;
+
+    private final List<ToolProvider> delegates;
+
+    private final Duration defaultTimeout;
+
+    private final Map<String, Duration> timeouts;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // 工具调用ID -> 提前启动的调用, 没被取走的 (如整轮被中断) 过期丢弃
+    private final Cache<String, CompletableFuture<String>> prefetched = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(2))
+            .build();
+
+    // 会话 -> 本轮 provideTools 给出的工具执行器, 模型给出最终回答时移除, 没移除的 (如整轮出错) 过期丢弃
+    private final Cache<Object, Map<String, ToolExecutor>> executorsByMemoryId = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(2))
+            .build();
+
+    /**
+     * @param localTools     本地工具, 见 {@link #toolsFrom(Object...)}
+     * @param delegates      其他工具来源, 每次请求时重新获取工具列表
+     * @param defaultTimeout 未单独配置的工具的超时
+     * @param timeouts       按工具名配置的超时
+     */
+    public ParallelToolProvider(Map<ToolSpecification, ToolExecutor> localTools, List<ToolProvider> delegates,
+                                Duration defaultTimeout, Map<String, Duration> timeouts) {
+        this.localTools = localTools;
+        this.delegates = delegates;
+        this.defaultTimeout = defaultTimeout;
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * 把带 @Tool 注解的对象转换成工具说明和执行器
+     */
+    public static Map<ToolSpecification, ToolExecutor> toolsFrom(Object... objects) {
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>();
+        for (Object object : objects) {
+            for (Method method : object.getClass().getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    tools.put(ToolSpecifications.toolSpecificationFrom(method), new DefaultToolExecutor(object, method));
+                }
+            }
+        }
+        return tools;
+    }
+
+    @Override
+    public ToolProviderResult provideTools(ToolProviderRequest request) {
+        Map<ToolSpecification, ToolExecutor> tools = new LinkedHashMap<>(localTools);
+        for (ToolProvider delegate : delegates) {
+            tools.putAll(delegate.provideTools(request).tools());
+        }
+        Map<String, ToolExecutor> byName = new HashMap<>();
+        ToolProviderResult.Builder result = ToolProviderResult.builder();
+        tools.forEach((specification, toolExecutor) -> {
+            byName.put(specification.name(), toolExecutor);
+            result.add(specification, (toolRequest, memoryId) -> execute(toolRequest, memoryId, toolExecutor));
+        });
+        if (request.chatMemoryId() != null) {
+            executorsByMemoryId.put(request.chatMemoryId(), byName);
+        }
+        return result.build();
+    }
+
+    /**
+     * 模型一次请求了多个工具时, 立即并发启动全部调用; 不再请求工具说明这一轮结束
+     *
+     * @param memoryId 当前会话, 与 AiServices 传给 {@link #provideTools} 的一致
+     */
+    public void prefetch(Object memoryId, AiMessage aiMessage) {
+        if (aiMessage == null || !aiMessage.hasToolExecutionRequests()) {
+            executorsByMemoryId.invalidate(memoryId);
+            return;
+        }
+        if (aiMessage.toolExecutionRequests().size() < 2) {
+            return;
+        }
+        Map<String, ToolExecutor> byName = executorsByMemoryId.getIfPresent(memoryId);
+        if (byName == null) {
+            return;
+        }
+        for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+            ToolExecutor toolExecutor = byName.get(request.name());
+            if (request.id() != null && toolExecutor != null) {
+                prefetched.asMap().computeIfAbsent(request.id(), id -> start(request, memoryId, toolExecutor));
+            }
+        }
+    }
+
+    String execute(ToolExecutionRequest request, Object memoryId, ToolExecutor toolExecutor) {
+        CompletableFuture<String> call = request.id() == null ? null : prefetched.asMap().remove(request.id());
+        if (call == null) {
+            call = start(request, memoryId, toolExecutor);
+        }
+        return call.join();
+    }
+
+    /**
+     * 超时或失败时把说明返回给模型, 而不是让整轮对话卡住或中断
+     */
+    private CompletableFuture<String> start(ToolExecutionRequest request, Object memoryId, ToolExecutor toolExecutor) {
+        Duration timeout = timeouts.getOrDefault(request.name(), defaultTimeout);
+        long start = System.nanoTime();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                call.complete(toolExecutor.execute(request, memoryId));
+            } catch (Throwable e) {
+                call.completeExceptionally(e);
+            }
+        });
+        return call.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        AiMetrics.time("ai.tool.duration", start, "tool", request.name(), "outcome", "success");
+                        return result;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    AiMetrics.time("ai.tool.duration", start, "tool", request.name(),
+                            "outcome", cause instanceof TimeoutException ? "timeout" : "error");
+                    if (cause instanceof TimeoutException) {
+                        task.cancel(true);
+                        log.warn("工具调用超时: {} ({}ms)", request.name(), timeout.toMillis());
+                        return "Tool '" + request.name() + "' did not respond within " + timeout.toMillis()
+                                + " ms and was cancelled. Continue without its result.";
+                    }
+                    log.error("工具调用失败: {}", request.name(), cause);
+                    return "Tool '" + request.name() + "' failed: " + cause.getMessage();
+                });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
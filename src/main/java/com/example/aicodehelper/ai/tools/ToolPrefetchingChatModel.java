@@ -0,0 +1,42 @@
+package com.example.aicodehelper.ai.tools;
+
+import com.example.aicodehelper.ai.ratelimit.LlmRequestContext;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+
+/**
+ * 拿到模型响应后立即并发启动其中的全部工具调用
+ */
+public class ToolPrefetchingChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final ParallelToolProvider toolProvider;
+
+    public ToolPrefetchingChatModel(ChatModel delegate, ParallelToolProvider toolProvider) {
+        this.delegate = delegate;
+        this.toolProvider = toolProvider;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        ChatResponse response = delegate.chat(chatRequest);
+        toolProvider.prefetch(LlmRequestContext.currentKey(), response.aiMessage());
+        return response;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
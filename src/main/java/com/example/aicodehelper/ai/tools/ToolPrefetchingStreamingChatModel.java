@@ -0,0 +1,60 @@
+package com.example.aicodehelper.ai.tools;
+
+import com.example.aicodehelper.ai.ratelimit.LlmRequestContext;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+
+/**
+ * 流式响应结束后立即并发启动其中的全部工具调用
+ */
+public class ToolPrefetchingStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final ParallelToolProvider toolProvider;
+
+    public ToolPrefetchingStreamingChatModel(StreamingChatModel delegate, ParallelToolProvider toolProvider) {
+        this.delegate = delegate;
+        this.toolProvider = toolProvider;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        // 回调可能在其他线程上, 先记下当前会话
+        Object key = LlmRequestContext.currentKey();
+        delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                handler.onPartialResponse(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                toolProvider.prefetch(key, completeResponse.aiMessage());
+                handler.onCompleteResponse(completeResponse);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                handler.onError(error);
+            }
+        });
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
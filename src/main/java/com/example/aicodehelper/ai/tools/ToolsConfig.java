@@ -0,0 +1,63 @@
+package com.example.aicodehelper.ai.tools;
+
+import dev.langchain4j.service.tool.ToolProvider;
+import jakarta.annotation.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 工具后端配置
+ */
+@Configuration
+public class ToolsConfig {
+
+    @Value("${tools.interview-question.base-url:https://www.mianshiya.com}")
+    private String baseUrl;
+
+    @Value("${tools.interview-question.timeout:5s}")
+    private Duration timeout;
+
+    @Value("${tools.interview-question.cache-ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${tools.interview-question.cache-max-size:1000}")
+    private long cacheMaxSize;
+
+    @Value("${tools.execution.default-timeout:10s}")
+    private Duration defaultToolTimeout;
+
+    @Resource
+    private ToolProvider mcpToolProvider;
+
+    @Resource
+    private Environment environment;
+
+    @Bean(destroyMethod = "close")
+    public InterviewQuestionFetcher interviewQuestionFetcher() {
+        return new InterviewQuestionFetcher(baseUrl, timeout, cacheTtl, cacheMaxSize);
+    }
+
+    /**
+     * 本地工具和 MCP 工具的统一入口, 多个工具调用并发执行, 每个工具有独立超时
+     */
+    @Bean(destroyMethod = "close")
+    public ParallelToolProvider parallelToolProvider(InterviewQuestionFetcher interviewQuestionFetcher) {
+        // 按工具名配置的超时, 例如 tools.execution.timeouts.interviewQuestionSearch=6s
+        Map<String, Duration> timeouts = Binder.get(environment)
+                .bind("tools.execution.timeouts", Bindable.mapOf(String.class, Duration.class))
+                .orElse(Map.of());
+        return new ParallelToolProvider(
+                ParallelToolProvider.toolsFrom(new InterviewQuestionTool(interviewQuestionFetcher)),
+                List.of(mcpToolProvider),
+                defaultToolTimeout,
+                timeouts);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.aicodehelper.config;
+
+import com.example.aicodehelper.ai.mcp.ResilientMcpToolProvider;
+import com.example.aicodehelper.ai.rag.RagIndexLoader;
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI 相关组件的就绪状态, 加入 readiness 探针组
+ * <p>
+ * RAG 首次导入完成、MCP 工具列表首次刷新结束 (端点不可用也算结束) 并且模型凭证已配置后才就绪;
+ * 在此之前应用已经可以处理请求, 只是对话不带检索内容和 MCP 工具.
+ */
+@Component
+public class AiHealthIndicator implements HealthIndicator {
+
+    @Resource
+    private GithubModelConfig githubModelConfig;
+
+    @Resource
+    private RagIndexLoader ragIndexLoader;
+
+    @Resource
+    private ResilientMcpToolProvider mcpToolProvider;
+
+    @Override
+    public Health health() {
+        boolean modelReady = githubModelConfig.tokenConfigured();
+        boolean ragReady = ragIndexLoader.ready();
+        boolean mcpReady = mcpToolProvider.initialized();
+        Health.Builder health = modelReady && ragReady && mcpReady ? Health.up() : Health.outOfService();
+        health.withDetail("modelCredentials", modelReady ? "configured" : "missing")
+                .withDetail("rag", ragReady ? "ready" : "loading")
+                .withDetail("mcpTools", mcpReady ? mcpToolProvider.availableTools() : "loading");
+        if (ragIndexLoader.lastError() != null) {
+            health.withDetail("ragError", ragIndexLoader.lastError());
+        }
+        return health.build();
+    }
+}
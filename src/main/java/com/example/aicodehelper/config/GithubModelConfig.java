@@ -1,15 +1,19 @@
 package com.example.aicodehelper.config;
 
+import com.example.aicodehelper.ai.metrics.SampledPayloadLogger;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.github.GitHubModelsChatModel;
 import dev.langchain4j.model.github.GitHubModelsEmbeddingModel;
 import dev.langchain4j.model.github.GitHubModelsStreamingChatModel;
+import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class GithubModelConfig {
 
@@ -22,42 +26,65 @@ public class GithubModelConfig {
     @Value("${langchain4j.github-models.embedding-model.model-name:text-embedding-3-small}")
     private String embeddingModelName;
 
+    // 留空使用 GitHub Models 默认地址; 压测时指向本机的桩服务
+    @Value("${langchain4j.github-models.endpoint:}")
+    private String endpoint;
+
+    @Resource
+    private SampledPayloadLogger sampledPayloadLogger;
+
+    /**
+     * 模型客户端在第一次调用时才创建, 未设置 Token 时应用照常启动, 就绪检查会报告未就绪
+     */
     @Bean
     public ChatModel GithubChatModel() {
-        if (githubToken == null || githubToken.isEmpty()) {
-            throw new IllegalStateException("GitHub Token 未设置!请在环境变量中设置 GITHUB_TOKEN");
-        }
-
-        return GitHubModelsChatModel.builder()
-                .gitHubToken(githubToken)
-                .modelName(modelName)
-                .logRequestsAndResponses(true)
-                .build();
+        return LazyModels.chatModel(() -> {
+            GitHubModelsChatModel.Builder builder = GitHubModelsChatModel.builder()
+                    .gitHubToken(requireToken())
+                    .modelName(modelName)
+                    .listeners(List.of(sampledPayloadLogger));
+            if (!endpoint.isEmpty()) {
+                builder.endpoint(endpoint);
+            }
+            return builder.build();
+        });
     }
 
     @Bean
     public EmbeddingModel githubEmbeddingModel() {
-        if (githubToken == null || githubToken.isEmpty()) {
-            throw new IllegalStateException("GitHub Token 未设置!请在环境变量中设置 GITHUB_TOKEN");
-        }
-
-        return GitHubModelsEmbeddingModel.builder()
-                .gitHubToken(githubToken)
-                .modelName(embeddingModelName)
-                .logRequestsAndResponses(true)
-                .build();
+        return LazyModels.embeddingModel(() -> {
+            GitHubModelsEmbeddingModel.Builder builder = GitHubModelsEmbeddingModel.builder()
+                    .gitHubToken(requireToken())
+                    .modelName(embeddingModelName);
+            if (!endpoint.isEmpty()) {
+                builder.endpoint(endpoint);
+            }
+            return builder.build();
+        });
     }
 
     @Bean
     public StreamingChatModel GithubStreamingChatModel() {
-        if (githubToken == null || githubToken.isEmpty()) {
+        return LazyModels.streamingChatModel(() -> {
+            GitHubModelsStreamingChatModel.Builder builder = GitHubModelsStreamingChatModel.builder()
+                    .gitHubToken(requireToken())
+                    .modelName(modelName)
+                    .listeners(List.of(sampledPayloadLogger));
+            if (!endpoint.isEmpty()) {
+                builder.endpoint(endpoint);
+            }
+            return builder.build();
+        });
+    }
+
+    public boolean tokenConfigured() {
+        return githubToken != null && !githubToken.isEmpty();
+    }
+
+    private String requireToken() {
+        if (!tokenConfigured()) {
             throw new IllegalStateException("GitHub Token 未设置!请在环境变量中设置 GITHUB_TOKEN");
         }
-
-        return GitHubModelsStreamingChatModel.builder()
-                .gitHubToken(githubToken)
-                .modelName(modelName)
-                .logRequestsAndResponses(true)
-                .build();
+        return githubToken;
     }
 }
@@ -0,0 +1,120 @@
+package com.example.aicodehelper.config;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 第一次调用时才创建的模型客户端
+ * <p>
+ * 启动时不创建 HTTP 客户端, 也不因为缺少凭证失败; 凭证缺失时由 factory 抛出异常, 只影响实际调用模型的请求.
+ * 创建失败不缓存, 补上配置后的下一次调用会重新创建.
+ */
+final class LazyModels {
+
+    private LazyModels() {
+    }
+
+    static ChatModel chatModel(Supplier<ChatModel> factory) {
+        Memoized<ChatModel> model = new Memoized<>(factory);
+        return new ChatModel() {
+
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                return model.get().chat(chatRequest);
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.get().defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.get().supportedCapabilities();
+            }
+        };
+    }
+
+    static StreamingChatModel streamingChatModel(Supplier<StreamingChatModel> factory) {
+        Memoized<StreamingChatModel> model = new Memoized<>(factory);
+        return new StreamingChatModel() {
+
+            @Override
+            public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                StreamingChatModel delegate;
+                try {
+                    delegate = model.get();
+                } catch (RuntimeException e) {
+                    handler.onError(e);
+                    return;
+                }
+                delegate.chat(chatRequest, handler);
+            }
+
+            @Override
+            public ChatRequestParameters defaultRequestParameters() {
+                return model.get().defaultRequestParameters();
+            }
+
+            @Override
+            public Set<Capability> supportedCapabilities() {
+                return model.get().supportedCapabilities();
+            }
+        };
+    }
+
+    static EmbeddingModel embeddingModel(Supplier<EmbeddingModel> factory) {
+        Memoized<EmbeddingModel> model = new Memoized<>(factory);
+        return new EmbeddingModel() {
+
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                return model.get().embedAll(textSegments);
+            }
+
+            @Override
+            public int dimension() {
+                return model.get().dimension();
+            }
+        };
+    }
+
+    private static final class Memoized<T> implements Supplier<T> {
+
+        private final Supplier<T> factory;
+
+        private volatile T value;
+
+        Memoized(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public T get() {
+            T result = value;
+            if (result == null) {
+                synchronized (this) {
+                    result = value;
+                    if (result == null) {
+                        result = factory.get();
+                        value = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.aicodehelper.ai.batch;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.service.Result;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchChatServiceTest {
+
+    @Test
+    void deduplicatesQuestionsAndPrewarmsEmbeddingsOnce() throws Exception {
+        FakeService service = new FakeService();
+        List<List<TextSegment>> embedCalls = Collections.synchronizedList(new ArrayList<>());
+        EmbeddingModel embeddingModel = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                embedCalls.add(textSegments);
+                return Response.from(textSegments.stream().map(segment -> Embedding.from(new float[]{1})).toList());
+            }
+        };
+        List<BatchChatService.ItemResult> results = Collections.synchronizedList(new ArrayList<>());
+        try (BatchChatService batch = new BatchChatService(service, embeddingModel, 2)) {
+            batch.execute(BatchChatService.Kind.RAG, List.of(
+                    new BatchChatService.Item(1, "什么是 HashMap"),
+                    new BatchChatService.Item(2, "什么是 JVM"),
+                    new BatchChatService.Item(1, " 什么是 HashMap "),
+                    new BatchChatService.Item(4, "fail")), results::add).get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, embedCalls.size());
+        assertEquals(3, embedCalls.get(0).size());
+        assertEquals(3, service.calls.get());
+        assertEquals(4, results.size());
+        results.sort(Comparator.comparingInt(BatchChatService.ItemResult::index));
+        assertEquals("answer: 什么是 HashMap", results.get(0).answer());
+        assertEquals("answer: 什么是 HashMap", results.get(2).answer());
+        assertEquals(1, results.get(2).memoryId());
+        assertTrue(results.get(2).deduplicated());
+        // 单条失败不影响其他条目
+        assertNull(results.get(3).answer());
+        assertEquals("model unavailable", results.get(3).error());
+        assertEquals("answer: 什么是 JVM", results.get(1).answer());
+    }
+
+    @Test
+    void sameQuestionFromDifferentSessionsIsAnsweredSeparately() throws Exception {
+        FakeService service = new FakeService();
+        List<List<TextSegment>> embedCalls = Collections.synchronizedList(new ArrayList<>());
+        EmbeddingModel embeddingModel = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                embedCalls.add(textSegments);
+                return Response.from(textSegments.stream().map(segment -> Embedding.from(new float[]{1})).toList());
+            }
+        };
+        List<BatchChatService.ItemResult> results = Collections.synchronizedList(new ArrayList<>());
+        try (BatchChatService batch = new BatchChatService(service, embeddingModel, 2)) {
+            batch.execute(BatchChatService.Kind.RAG, List.of(
+                    new BatchChatService.Item(1, "什么是 HashMap"),
+                    new BatchChatService.Item(2, "什么是 HashMap")), results::add).get(10, TimeUnit.SECONDS);
+        }
+
+        // 回答依赖各自的会话记忆, 每个会话都要调用一次模型, 查询向量仍然只算一次
+        assertEquals(2, service.calls.get());
+        assertEquals(List.of(1, 2), service.memoryIds.stream().sorted().toList());
+        assertEquals(1, embedCalls.get(0).size());
+        assertEquals(2, results.size());
+        assertTrue(results.stream().noneMatch(BatchChatService.ItemResult::deduplicated));
+    }
+
+    @Test
+    void questionsOfTheSameSessionAreAnsweredInOrder() throws Exception {
+        FakeService service = new FakeService();
+        List<BatchChatService.ItemResult> results = Collections.synchronizedList(new ArrayList<>());
+        try (BatchChatService batch = new BatchChatService(service, null, 4)) {
+            batch.execute(BatchChatService.Kind.REPORT, List.of(
+                    new BatchChatService.Item(1, "什么是 HashMap"),
+                    new BatchChatService.Item(1, "那它怎么扩容"),
+                    new BatchChatService.Item(2, "什么是 JVM")), results::add).get(10, TimeUnit.SECONDS);
+        }
+
+        // 同一会话的两轮不能并发, 否则问答在会话记忆里交错
+        assertEquals(3, results.size());
+        assertEquals(1, service.maxConcurrentPerSession.get());
+        List<String> session1 = service.messages.stream().filter(message -> !message.contains("JVM")).toList();
+        assertEquals(List.of("什么是 HashMap", "那它怎么扩容"), session1);
+    }
+
+    @Test
+    void boundsConcurrentModelCalls() throws Exception {
+        FakeService service = new FakeService();
+        List<BatchChatService.Item> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(new BatchChatService.Item(i, "question " + i));
+        }
+        AtomicInteger results = new AtomicInteger();
+        try (BatchChatService batch = new BatchChatService(service, null, 3)) {
+            batch.execute(BatchChatService.Kind.REPORT, items, result -> results.incrementAndGet())
+                    .get(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(20, results.get());
+        assertTrue(service.maxConcurrent.get() <= 3);
+    }
+
+    private static final class FakeService implements AiCodeHelperService {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        final List<Integer> memoryIds = Collections.synchronizedList(new ArrayList<>());
+
+        final AtomicInteger concurrent = new AtomicInteger();
+
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        final Map<Integer, AtomicInteger> concurrentPerSession = new ConcurrentHashMap<>();
+
+        final AtomicInteger maxConcurrentPerSession = new AtomicInteger();
+
+        private String answer(int memoryId, String message) {
+            calls.incrementAndGet();
+            memoryIds.add(memoryId);
+            messages.add(message);
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            AtomicInteger session = concurrentPerSession.computeIfAbsent(memoryId, key -> new AtomicInteger());
+            maxConcurrentPerSession.accumulateAndGet(session.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                session.decrementAndGet();
+                concurrent.decrementAndGet();
+            }
+            if (message.equals("fail")) {
+                throw new IllegalStateException("model unavailable");
+            }
+            return "answer: " + message;
+        }
+
+        @Override
+        public String chat(int memoryId, String userMessage) {
+            return answer(memoryId, userMessage);
+        }
+
+        @Override
+        public Report chatForReport(int memoryId, String userMessage) {
+            return new Report(answer(memoryId, userMessage), List.of());
+        }
+
+        @Override
+        public Result<String> chatWithRag(int memoryId, String userMessage) {
+            return Result.<String>builder().content(answer(memoryId, userMessage)).sources(List.of()).build();
+        }
+
+        @Override
+        public Flux<String> chatStream(int memoryId, String message) {
+            return Flux.just(answer(memoryId, message));
+        }
+
+        @Override
+        public ChatMemory getChatMemory(Object memoryId) {
+            return null;
+        }
+
+        @Override
+        public boolean evictChatMemory(Object memoryId) {
+            return false;
+        }
+    }
+}
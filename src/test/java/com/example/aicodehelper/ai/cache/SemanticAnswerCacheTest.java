@@ -0,0 +1,52 @@
+package com.example.aicodehelper.ai.cache;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticAnswerCacheTest {
+
+    @Test
+    void returnsAnswerForSimilarQuestionInSameScope() {
+        SemanticAnswerCache cache = new SemanticAnswerCache(100, Duration.ofMinutes(1), 0.95);
+        cache.put("scope-a", new float[]{1f, 0f, 0f}, "answer");
+
+        assertEquals("answer", cache.lookup("scope-a", new float[]{0.99f, 0.05f, 0f}));
+        assertNull(cache.lookup("scope-a", new float[]{0f, 1f, 0f}));
+        // RAG来源不同则不共用答案
+        assertNull(cache.lookup("scope-b", new float[]{1f, 0f, 0f}));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void embeddingCacheOnlyEmbedsMissingTexts() {
+        AtomicInteger embedded = new AtomicInteger();
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                embedded.addAndGet(textSegments.size());
+                return Response.from(textSegments.stream()
+                        .map(segment -> Embedding.from(new float[]{segment.text().length()}))
+                        .toList());
+            }
+        };
+        CachingEmbeddingModel caching = new CachingEmbeddingModel(model, 100, Duration.ofMinutes(1));
+        caching.embed("怎么学习java");
+        caching.embed("怎么学习java");
+        List<Embedding> embeddings = caching.embedAll(List.of(TextSegment.from("怎么学习java"), TextSegment.from("常见面试题"))).content();
+
+        assertEquals(2, embedded.get());
+        assertEquals(2, embeddings.size());
+        assertEquals(8f, embeddings.get(0).vector()[0]);
+        assertEquals(2, caching.stats().hitCount());
+    }
+}
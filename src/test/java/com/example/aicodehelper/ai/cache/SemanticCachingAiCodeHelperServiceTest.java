@@ -0,0 +1,133 @@
+package com.example.aicodehelper.ai.cache;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import com.example.aicodehelper.ai.rag.PrefetchedContentRetriever;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SemanticCachingAiCodeHelperServiceTest {
+
+    private static final String QUESTION = "HashMap 怎么扩容";
+
+    private final AtomicInteger retrievals = new AtomicInteger();
+
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    private volatile List<ChatMessage> lastRequest;
+
+    private AiCodeHelperService service;
+
+    @BeforeEach
+    void setUp() {
+        ContentRetriever retriever = query -> {
+            retrievals.incrementAndGet();
+            return List.of(Content.from("容量翻倍并重新分布"));
+        };
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                lastRequest = chatRequest.messages();
+                return ChatResponse.builder().aiMessage(AiMessage.from("answer " + modelCalls.incrementAndGet())).build();
+            }
+        };
+        StreamingChatModel streamingChatModel = new StreamingChatModel() {
+            @Override
+            public void doChat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                String answer = "answer " + modelCalls.incrementAndGet();
+                handler.onPartialResponse(answer);
+                handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(answer)).build());
+            }
+        };
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        ChatMemoryProvider chatMemoryProvider = memoryId -> MessageWindowChatMemory.builder()
+                .id(memoryId)
+                .maxMessages(6)
+                .chatMemoryStore(store)
+                .build();
+        AiCodeHelperService delegate = AiServices.builder(AiCodeHelperService.class)
+                .chatModel(chatModel)
+                .streamingChatModel(streamingChatModel)
+                .chatMemoryProvider(chatMemoryProvider)
+                .contentRetriever(new PrefetchedContentRetriever(retriever))
+                .build();
+        EmbeddingModel embeddingModel = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                return Response.from(textSegments.stream().map(segment -> Embedding.from(new float[]{1, 0})).toList());
+            }
+        };
+        service = new SemanticCachingAiCodeHelperService(delegate, embeddingModel, retriever,
+                new SemanticAnswerCache(100, Duration.ofMinutes(1), 0.95), chatMemoryProvider, "你是编程导师");
+    }
+
+    @Test
+    void reusesRetrievedSourcesOnMissAndAnswersOtherSessionsFromCache() {
+        assertEquals("answer 1", service.chatWithRag(1, QUESTION).content());
+        assertEquals(1, retrievals.get());
+
+        // 另一个新会话问相近的问题直接命中
+        assertEquals("answer 1", service.chatWithRag(2, QUESTION).content());
+        assertEquals(1, modelCalls.get());
+
+        // 流式接口同样只检索一次
+        retrievals.set(0);
+        assertEquals(List.of("answer 2"), service.chatStream(3, QUESTION).collectList().block());
+        assertEquals(1, retrievals.get());
+    }
+
+    @Test
+    void scopesAnswersByMethod() {
+        service.chatWithRag(1, QUESTION);
+        assertEquals("answer 2", service.chat(2, QUESTION));
+        assertEquals(2, modelCalls.get());
+    }
+
+    @Test
+    void bypassesCacheWhenSessionHasPriorTurns() {
+        service.chatWithRag(1, QUESTION);
+        service.chat(2, "我是Java初学者");
+
+        // 会话2的回答要结合之前的对话, 不能用会话1缓存的答案
+        assertEquals("answer 3", service.chatWithRag(2, QUESTION).content());
+        assertEquals(3, modelCalls.get());
+    }
+
+    @Test
+    void followUpAfterCacheHitCarriesTheCachedTurn() {
+        service.chatWithRag(1, QUESTION);
+        assertEquals("answer 1", service.chatWithRag(2, QUESTION).content());
+
+        // 命中的问答已记入会话2, 追问不再查缓存, 模型能看到上一轮
+        assertEquals("answer 2", service.chatWithRag(2, "那扩容时链表怎么拆分").content());
+        assertEquals(2, modelCalls.get());
+        assertInstanceOf(SystemMessage.class, lastRequest.get(0));
+        assertEquals(1, lastRequest.stream().filter(SystemMessage.class::isInstance).count());
+        assertTrue(lastRequest.get(1) instanceof UserMessage userMessage && userMessage.singleText().equals(QUESTION));
+        assertTrue(lastRequest.get(2) instanceof AiMessage aiMessage && aiMessage.text().equals("answer 1"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.aicodehelper.ai.controller;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class ChatStreamRelayTest {
+
+    private ChatStreamRelay relay = relay(10, 16, 3);
+
+    @AfterEach
+    void tearDown() {
+        relay.shutdown();
+    }
+
+    @Test
+    void rejectsWith429WhenAllStreamsAreBusy() {
+        relay.shutdown();
+        relay = relay(1, 16, 3);
+        relay.relay(Flux.never(), ChatStreamRelayTest::encode);
+
+        ResponseStatusException error = assertThrows(ResponseStatusException.class,
+                () -> relay.relay(Flux.never(), ChatStreamRelayTest::encode));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, error.getStatusCode());
+        assertEquals(1, relay.activeStreams());
+    }
+
+    @Test
+    void coalescesChunksIntoFramesBySizeAndDelay() throws Exception {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        MvcResult result = start(upstream.asFlux());
+
+        // 攒满3条立即成帧, 剩下的1条等到 frameMaxDelay 后单独成帧
+        for (String chunk : List.of("a", "b", "c", "d")) {
+            upstream.tryEmitNext(chunk);
+        }
+        Thread.sleep(200);
+        upstream.tryEmitNext("e");
+        upstream.tryEmitComplete();
+        result.getAsyncResult(5000);
+
+        assertEquals("data:a|b|c\n\ndata:d\n\ndata:e\n\n", result.getResponse().getContentAsString());
+        awaitNoActiveStreams();
+    }
+
+    @Test
+    void failsStreamWhenSlowClientOverflowsBuffer() throws Exception {
+        relay.shutdown();
+        relay = relay(10, 4, 3);
+        // 不理会下游请求量, 一次推出远超缓冲区的 chunk
+        Flux<String> flood = Flux.create(sink -> {
+            for (int i = 0; i < 1000; i++) {
+                sink.next("chunk" + i);
+            }
+            sink.complete();
+        }, FluxSink.OverflowStrategy.IGNORE);
+        MvcResult result = start(flood);
+
+        Object error = result.getAsyncResult(5000);
+        assertTrue(error instanceof Throwable throwable && Exceptions.isOverflow(throwable), String.valueOf(error));
+        awaitNoActiveStreams();
+    }
+
+    @Test
+    void cancelsUpstreamWhenEmitterTimesOut() throws Exception {
+        assertUpstreamCancelledOn((listener, event) -> listener.onTimeout(event));
+    }
+
+    @Test
+    void cancelsUpstreamWhenClientDisconnects() throws Exception {
+        assertUpstreamCancelledOn((listener, event) -> listener.onComplete(event));
+    }
+
+    @Test
+    void cancelsUpstreamWhenConnectionFails() throws Exception {
+        assertUpstreamCancelledOn((listener, event) -> listener.onError(
+                new AsyncEvent(event.getAsyncContext(), new IOException("Broken pipe"))));
+    }
+
+    private interface AsyncSignal {
+        void fire(AsyncListener listener, AsyncEvent event) throws IOException;
+    }
+
+    private void assertUpstreamCancelledOn(AsyncSignal signal) throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        MvcResult result = start(upstream.asFlux().doOnCancel(cancelled::countDown));
+        upstream.tryEmitNext("a");
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        AsyncEvent event = new AsyncEvent(asyncContext);
+        for (AsyncListener listener : List.copyOf(asyncContext.getListeners())) {
+            signal.fire(listener, event);
+        }
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        awaitNoActiveStreams();
+    }
+
+    private MvcResult start(Flux<String> upstream) throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StreamController(relay, upstream)).build();
+        return mockMvc.perform(get("/stream")).andExpect(request().asyncStarted()).andReturn();
+    }
+
+    private void awaitNoActiveStreams() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (relay.activeStreams() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, relay.activeStreams());
+    }
+
+    private static ChatStreamRelay relay(int maxConcurrentStreams, int bufferSize, int frameMaxChunks) {
+        return new ChatStreamRelay(maxConcurrentStreams, Duration.ofMinutes(1), bufferSize, frameMaxChunks,
+                Duration.ofMillis(20));
+    }
+
+    private static String encode(List<String> frame) {
+        return String.join("|", frame);
+    }
+
+    @RestController
+    static class StreamController {
+
+        private final ChatStreamRelay relay;
+
+        private final Flux<String> upstream;
+
+        StreamController(ChatStreamRelay relay, Flux<String> upstream) {
+            this.relay = relay;
+            this.upstream = upstream;
+        }
+
+        @GetMapping("/stream")
+        SseEmitter stream() {
+            return relay.relay(upstream, ChatStreamRelayTest::encode);
+        }
+    }
+}
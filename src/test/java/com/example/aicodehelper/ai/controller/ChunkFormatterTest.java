@@ -0,0 +1,43 @@
+package com.example.aicodehelper.ai.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkFormatterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void keepsSpacingRules() throws Exception {
+        ChunkFormatter formatter = new ChunkFormatter();
+        for (String chunk : new String[]{"Hello", " world", ",", "  ", "你好", "。", "Java"}) {
+            formatter.append(chunk);
+        }
+        Map<?, ?> frame = objectMapper.readValue(formatter.flush(), Map.class);
+        assertEquals("Hello world,你好。 Java", frame.get("chunk"));
+        assertNull(formatter.flush());
+    }
+
+    @Test
+    void producesValidJsonForSpecialCharacters() throws Exception {
+        ChunkFormatter formatter = new ChunkFormatter();
+        formatter.append("\"quoted\" \\ path\n\tnext\u0001");
+        Map<?, ?> frame = objectMapper.readValue(formatter.flush(), Map.class);
+        assertEquals("\"quoted\" \\ path\n\tnext", frame.get("chunk"));
+    }
+
+    @Test
+    void lookupTablesMatchUnicodeBlocks() {
+        assertTrue(ChunkFormatter.isCJK('中'));
+        assertTrue(ChunkFormatter.isCJK('か'));
+        assertTrue(ChunkFormatter.isCJK('한'));
+        assertFalse(ChunkFormatter.isCJK('a'));
+        assertTrue(ChunkFormatter.isPunctuation('，'));
+        assertTrue(ChunkFormatter.isPunctuation('.'));
+        assertFalse(ChunkFormatter.isPunctuation('a'));
+    }
+}
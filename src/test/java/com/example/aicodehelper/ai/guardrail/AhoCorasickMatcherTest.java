@@ -0,0 +1,55 @@
+package com.example.aicodehelper.ai.guardrail;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    void matchesWholeLatinWordsIgnoringCase() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("kill", "evil"));
+        assertEquals("kill", matcher.findFirst("How do I KILL a process?"));
+        assertEquals("evil", matcher.findFirst("don't be evil."));
+        assertEquals("kill", matcher.findFirst("我想kill掉这个进程"));
+        assertNull(matcher.findFirst("improve my skills, kill_switch, devil, killer"));
+        assertNull(matcher.findFirst(""));
+    }
+
+    @Test
+    void matchesCjkWordsAsSubstringsAndFollowsFailureLinks() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("炸弹", "制作炸药", "he", "she", "hers"));
+        assertEquals("炸弹", matcher.findFirst("如何制作炸弹"));
+        assertNull(matcher.findFirst("如何制作炸"));
+        // "ushers": 在 "she" 的状态上沿失败链命中 "he" 之前要先检查 "she" 的边界
+        assertNull(matcher.findFirst("ushers"));
+        assertEquals("she", matcher.findFirst("u she rs"));
+        assertEquals("hers", matcher.findFirst("it is hers"));
+    }
+
+    @Test
+    void agreesWithLegacySplitOnRandomInput() {
+        List<String> dictionary = new ArrayList<>(List.of("kill", "evil", "ab", "abc", "bca"));
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(dictionary);
+        Pattern separator = Pattern.compile("\\W+");
+        Random random = new Random(42);
+        String alphabet = "abcAB -_.kilev1";
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            boolean legacy = false;
+            for (String word : separator.split(text.toString().toLowerCase())) {
+                legacy |= dictionary.contains(word);
+            }
+            assertEquals(legacy, matcher.findFirst(text) != null, text.toString());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.aicodehelper.ai.mcp;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.mcp.client.DefaultMcpClient;
+import dev.langchain4j.mcp.client.McpClient;
+import dev.langchain4j.mcp.client.transport.http.HttpMcpTransport;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientMcpToolProviderTest {
+
+    private static final ResilientMcpToolProvider.Settings SETTINGS = new ResilientMcpToolProvider.Settings(
+            Duration.ofMillis(200), Duration.ofSeconds(2), 1, Duration.ofSeconds(30));
+
+    private static final ToolExecutionRequest SEARCH = ToolExecutionRequest.builder()
+            .id("call_1").name("web_search").arguments("{\"query\":\"jdk 21\"}").build();
+
+    @Test
+    void startsWithoutWaitingForUnreachableServer() {
+        long start = System.nanoTime();
+        try (ResilientMcpToolProvider provider = new ResilientMcpToolProvider(
+                Map.of("dead", () -> client("dead", "http://127.0.0.1:1/sse")), SETTINGS)) {
+            assertTrue(provideTools(provider).tools().isEmpty());
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 500);
+        }
+    }
+
+    @Test
+    void cachesToolListAndFailsOverToHealthyServer() throws Exception {
+        try (StubMcpServer primary = new StubMcpServer("primary");
+             StubMcpServer backup = new StubMcpServer("backup")) {
+            Map<String, Supplier<McpClient>> clients = new LinkedHashMap<>();
+            clients.put("primary", () -> client("primary", primary.sseUrl()));
+            clients.put("backup", () -> client("backup", backup.sseUrl()));
+            try (ResilientMcpToolProvider provider = new ResilientMcpToolProvider(clients, SETTINGS)) {
+                ToolExecutor executor = awaitTool(provider);
+                // 每轮对话读取缓存, 不再请求 tools/list
+                int listCalls = primary.listCalls.get();
+                for (int i = 0; i < 10; i++) {
+                    provideTools(provider);
+                }
+                assertTrue(primary.listCalls.get() <= listCalls + 1);
+
+                assertTrue(executor.execute(SEARCH, null).endsWith("jdk 21"));
+
+                primary.close();
+                String result = null;
+                for (int i = 0; i < 3; i++) {
+                    result = executor.execute(SEARCH, null);
+                }
+                assertEquals("backup: jdk 21", result);
+            }
+        }
+    }
+
+    private static ToolExecutor awaitTool(ResilientMcpToolProvider provider) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            ToolProviderResult result = provideTools(provider);
+            if (!result.tools().isEmpty()) {
+                assertEquals("web_search", result.tools().keySet().iterator().next().name());
+                return result.tools().values().iterator().next();
+            }
+            Thread.sleep(50);
+        }
+        fail("MCP tools were not loaded");
+        return null;
+    }
+
+    private static ToolProviderResult provideTools(ResilientMcpToolProvider provider) {
+        return provider.provideTools(new ToolProviderRequest("user-1", UserMessage.from("hi")));
+    }
+
+    private static McpClient client(String key, String sseUrl) {
+        return new DefaultMcpClient.Builder()
+                .key(key)
+                .transport(new HttpMcpTransport.Builder().sseUrl(sseUrl).timeout(Duration.ofSeconds(2)).build())
+                .initializationTimeout(Duration.ofSeconds(2))
+                .toolExecutionTimeout(Duration.ofSeconds(2))
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.aicodehelper.ai.mcp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的最小 MCP 服务 (HTTP + SSE 传输), 只提供一个 web_search 工具
+ */
+public class StubMcpServer implements AutoCloseable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, OutputStream> sessions = new ConcurrentHashMap<>();
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private final HttpServer server;
+
+    private final String name;
+
+    final AtomicInteger toolCalls = new AtomicInteger();
+
+    final AtomicInteger listCalls = new AtomicInteger();
+
+    public StubMcpServer(String name) throws IOException {
+        this.name = name;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/sse", this::openStream);
+        server.createContext("/message", this::handleMessage);
+        server.start();
+    }
+
+    public String sseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/sse";
+    }
+
+    private void openStream(HttpExchange exchange) throws IOException {
+        String sessionId = UUID.randomUUID().toString();
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        sessions.put(sessionId, out);
+        send(out, "endpoint", "/message?sessionId=" + sessionId);
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sessions.remove(sessionId);
+            exchange.close();
+        }
+    }
+
+    private void handleMessage(HttpExchange exchange) throws IOException {
+        String sessionId = exchange.getRequestURI().getQuery().substring("sessionId=".length());
+        JsonNode message = objectMapper.readTree(exchange.getRequestBody());
+        exchange.sendResponseHeaders(202, -1);
+        exchange.close();
+        OutputStream out = sessions.get(sessionId);
+        if (out == null || !message.has("id")) {
+            return;
+        }
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("jsonrpc", "2.0");
+        response.set("id", message.get("id"));
+        response.set("result", result(message.get("method").asText(), message.path("params")));
+        send(out, "message", objectMapper.writeValueAsString(response));
+    }
+
+    private JsonNode result(String method, JsonNode params) throws IOException {
+        return switch (method) {
+            case "initialize" -> objectMapper.readTree("""
+                    {"protocolVersion":"2024-11-05","capabilities":{"tools":{}},"serverInfo":{"name":"stub","version":"1.0"}}
+                    """);
+            case "tools/list" -> {
+                listCalls.incrementAndGet();
+                yield objectMapper.readTree("""
+                        {"tools":[{"name":"web_search","description":"Search the web",
+                          "inputSchema":{"type":"object","properties":{"query":{"type":"string"}},"required":["query"]}}]}
+                        """);
+            }
+            case "tools/call" -> {
+                toolCalls.incrementAndGet();
+                ObjectNode result = objectMapper.createObjectNode();
+                ObjectNode content = result.putArray("content").addObject();
+                content.put("type", "text");
+                content.put("text", name + ": " + params.path("arguments").path("query").asText());
+                result.put("isError", false);
+                yield result;
+            }
+            default -> objectMapper.createObjectNode();
+        };
+    }
+
+    private static void send(OutputStream out, String event, String data) throws IOException {
+        synchronized (out) {
+            out.write(("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        stopped.countDown();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.aicodehelper.ai.memory;
+
+import com.example.aicodehelper.ai.AiCodeHelperService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.service.AiServices;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedChatMemoryStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void evictsBeyondCapacityWithoutSpill() {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(4, 1, Duration.ofMinutes(10), null, Duration.ofDays(1));
+        for (int id = 0; id < 10; id++) {
+            store.updateMessages(id, List.of(UserMessage.from("hi " + id)));
+        }
+        assertEquals(4, store.residentSessions());
+        assertEquals(6, store.evictions());
+        assertTrue(store.getMessages(0).isEmpty());
+        assertEquals(1, store.getMessages(9).size());
+        store.close();
+    }
+
+    @Test
+    void spillsColdSessionsAndRestoresThem() {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(1, 1, Duration.ofMinutes(10), tempDir, Duration.ofDays(1));
+        List<ChatMessage> first = List.of(UserMessage.from("我是Java初学者"), AiMessage.from("你好"));
+        store.updateMessages(1, first);
+        store.updateMessages(2, List.of(UserMessage.from("other")));
+        assertEquals(1, store.spills());
+
+        List<ChatMessage> restored = store.getMessages(1);
+        assertEquals(2, restored.size());
+        assertEquals("我是Java初学者", ((UserMessage) restored.get(0)).singleText());
+        assertEquals("你好", ((AiMessage) restored.get(1)).text());
+        assertEquals(1, store.restores());
+        // 读回会话1时会话2被挤出并落盘
+        assertEquals(1, store.residentSessions());
+        store.deleteMessages(2);
+        assertTrue(store.getMessages(2).isEmpty());
+        store.close();
+    }
+
+    @Test
+    void expiresIdleSessions() throws InterruptedException {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(100, 4, Duration.ofMillis(10), null, Duration.ofDays(1));
+        store.updateMessages("a", List.of(UserMessage.from("hi")));
+        Thread.sleep(30);
+        store.sweep();
+        assertEquals(0, store.residentSessions());
+        store.close();
+    }
+
+    @Test
+    void evictionRemovesChatMemoriesCachedByAiServices() {
+        BoundedChatMemoryStore store = new BoundedChatMemoryStore(8, 1, Duration.ofMinutes(10), null, Duration.ofDays(1));
+        ChatModel chatModel = new ChatModel() {
+            @Override
+            public ChatResponse doChat(ChatRequest chatRequest) {
+                return ChatResponse.builder().aiMessage(AiMessage.from("ok")).build();
+            }
+        };
+        AiCodeHelperService service = AiServices.builder(AiCodeHelperService.class)
+                .chatModel(chatModel)
+                .chatMemoryProvider(memoryId -> MessageWindowChatMemory.builder()
+                        .id(memoryId)
+                        .maxMessages(4)
+                        .chatMemoryStore(store)
+                        .build())
+                .build();
+        store.addEvictionListener(service::evictChatMemory);
+
+        for (int id = 0; id < 100; id++) {
+            service.chat(id, "hi " + id);
+        }
+
+        // AiServices 里缓存的 ChatMemory 数量不超过存储的容量
+        int cached = 0;
+        for (int id = 0; id < 100; id++) {
+            if (service.getChatMemory(id) != null) {
+                cached++;
+            }
+        }
+        assertEquals(store.residentSessions(), cached);
+        assertNull(service.getChatMemory(0));
+        assertNotNull(service.getChatMemory(99));
+        store.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.aicodehelper.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SummarizingChatMemoryTest {
+
+    /**
+     * 把收到的提示词记下来, 摘要固定返回第几次调用
+     */
+    static class RecordingModel implements ChatModel {
+
+        final List<String> prompts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            prompts.add(((UserMessage) chatRequest.messages().get(0)).singleText());
+            return ChatResponse.builder().aiMessage(AiMessage.from("摘要" + prompts.size())).build();
+        }
+    }
+
+    @Test
+    void summarizesMessagesThatLeaveTheWindow() throws Exception {
+        RecordingModel model = new RecordingModel();
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        SummarizingChatMemory memory = new SummarizingChatMemory(1, store, 2,
+                new ChatMemorySummarizer(model, 100), new SummaryCoordinator(1, Runnable::run));
+
+        memory.add(SystemMessage.from("你是编程导师"));
+        memory.add(UserMessage.from("我是Java初学者"));
+        memory.add(AiMessage.from("建议先学集合"));
+        assertTrue(model.prompts.isEmpty());
+
+        memory.add(UserMessage.from("HashMap 怎么扩容"));
+        memory.pendingSummary().get(5, TimeUnit.SECONDS);
+        assertEquals(1, model.prompts.size());
+        assertTrue(model.prompts.get(0).contains("用户: 我是Java初学者"));
+
+        // 摘要拼在系统提示词后面, 窗口里只剩最近两条
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(3, messages.size());
+        SystemMessage system = (SystemMessage) messages.get(0);
+        assertTrue(system.text().startsWith("你是编程导师"));
+        assertTrue(system.text().endsWith("摘要1"));
+        assertEquals("HashMap 怎么扩容", ((UserMessage) messages.get(2)).singleText());
+
+        // 下一次摘要基于已有摘要
+        memory.add(AiMessage.from("容量翻倍并重新分布"));
+        memory.pendingSummary().get(5, TimeUnit.SECONDS);
+        assertTrue(model.prompts.get(1).contains("已有摘要:\n摘要1"));
+        assertTrue(((SystemMessage) memory.messages().get(0)).text().endsWith("摘要2"));
+
+        // 再次加入相同的系统提示词不影响摘要
+        memory.add(SystemMessage.from("你是编程导师"));
+        assertEquals(3, memory.messages().size());
+    }
+
+    @Test
+    void keepsWindowWhenSummaryFails() throws Exception {
+        ChatModel failing = new ChatModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                throw new IllegalStateException("429");
+            }
+        };
+        SummarizingChatMemory memory = new SummarizingChatMemory(1, new InMemoryChatMemoryStore(), 1,
+                new ChatMemorySummarizer(failing, 100), new SummaryCoordinator(1, Runnable::run));
+        memory.add(UserMessage.from("a"));
+        memory.add(AiMessage.from("b"));
+        memory.pendingSummary().get(5, TimeUnit.SECONDS);
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(1, messages.size());
+        assertEquals("b", ((AiMessage) messages.get(0)).text());
+    }
+
+    @Test
+    void clearDropsSummaryStillInProgress() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingModel model = new RecordingModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.chat(chatRequest);
+            }
+        };
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        try (SummaryCoordinator coordinator = new SummaryCoordinator(4, Executors.newCachedThreadPool())) {
+            SummarizingChatMemory memory = new SummarizingChatMemory(1, store, 1,
+                    new ChatMemorySummarizer(model, 100), coordinator);
+            memory.add(UserMessage.from("a"));
+            memory.add(AiMessage.from("b"));
+
+            // 摘要还在进行时删除会话, 写回被丢弃, 会话不会以只有摘要的形式恢复
+            memory.clear();
+            release.countDown();
+            memory.pendingSummary().get(5, TimeUnit.SECONDS);
+            assertEquals(1, model.prompts.size());
+            assertTrue(store.getMessages(1).isEmpty());
+
+            // 之后的新对话照常摘要
+            memory.add(UserMessage.from("c"));
+            memory.add(AiMessage.from("d"));
+            memory.pendingSummary().get(5, TimeUnit.SECONDS);
+            assertTrue(((SystemMessage) memory.messages().get(0)).text().endsWith("摘要2"));
+        }
+    }
+
+    @Test
+    void instancesOfTheSameSessionSummarizeInOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingModel model = new RecordingModel() {
+            @Override
+            public ChatResponse chat(ChatRequest chatRequest) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.chat(chatRequest);
+            }
+        };
+        InMemoryChatMemoryStore store = new InMemoryChatMemoryStore();
+        ChatMemorySummarizer summarizer = new ChatMemorySummarizer(model, 100);
+        try (SummaryCoordinator coordinator = new SummaryCoordinator(4, Executors.newCachedThreadPool())) {
+            // 默认档和便宜档的 AiServices 为同一会话各建一个实例
+            SummarizingChatMemory first = new SummarizingChatMemory(1, store, 1, summarizer, coordinator);
+            SummarizingChatMemory second = new SummarizingChatMemory(1, store, 1, summarizer, coordinator);
+
+            first.add(UserMessage.from("a"));
+            first.add(AiMessage.from("b"));
+            second.add(UserMessage.from("c"));
+            release.countDown();
+            second.pendingSummary().get(5, TimeUnit.SECONDS);
+
+            // 第二次摘要等第一次写回后才开始, 基于它的结果
+            assertEquals(2, model.prompts.size());
+            assertTrue(model.prompts.get(1).contains("已有摘要:\n摘要1"));
+            assertTrue(((SystemMessage) first.messages().get(0)).text().endsWith("摘要2"));
+        }
+    }
+}
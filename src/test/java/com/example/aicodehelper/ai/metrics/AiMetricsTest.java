@@ -0,0 +1,57 @@
+package com.example.aicodehelper.ai.metrics;
+
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AiMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void addRegistry() {
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void removeRegistry() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void recordsTimersWithTags() {
+        AiMetrics.time("ai.tool.duration", System.nanoTime(), "tool", "search", "outcome", "timeout");
+        AiMetrics.time("ai.tool.duration", System.nanoTime(), "tool", "search", "outcome", "timeout");
+
+        assertEquals(2, registry.get("ai.tool.duration").tag("outcome", "timeout").timer().count());
+    }
+
+    @Test
+    void accumulatesTokenUsagePerSession() {
+        AiMetrics.tokens("metrics-test-1", new TokenUsage(100, 20));
+        AiMetrics.tokens("metrics-test-1", new TokenUsage(50, null));
+        AiMetrics.tokens("metrics-test-2", new TokenUsage(1, 1));
+
+        AiMetrics.Usage usage = AiMetrics.usage("metrics-test-1");
+        assertEquals(2, usage.requests());
+        assertEquals(150, usage.inputTokens());
+        assertEquals(20, usage.outputTokens());
+        assertEquals(170, usage.totalTokens());
+        assertNull(AiMetrics.usage("metrics-test-unknown"));
+        assertEquals(151, registry.get("ai.tokens").tag("type", "input").counter().count());
+    }
+
+    @Test
+    void ignoresEmptyStreamsForThroughput() {
+        AiMetrics.tokensPerSecond("github", 0, 1_000_000);
+        AiMetrics.tokensPerSecond("github", 200, 2_000_000_000L);
+
+        assertEquals(100.0, registry.get("ai.model.tokens.per.second").summary().mean(), 1e-9);
+        assertEquals(1, registry.get("ai.model.tokens.per.second").summary().count());
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25IndexTest {
+
+    @Test
+    void tokenizesCjkBigramsAndLatinWords() {
+        assertEquals(List.of("hashmap", "的实", "实现", "现原", "原理"), Bm25Index.tokenize("HashMap的实现原理"));
+        assertEquals(List.of("java", "面试", "200", "题", "md"), Bm25Index.tokenize("Java面试200题.md"));
+    }
+
+    @Test
+    void ranksExactIdentifierMatchesFirst() {
+        Bm25Index index = new Bm25Index();
+        index.add("1", TextSegment.from("HashMap 基于数组和链表实现, JDK8 引入红黑树"));
+        index.add("2", TextSegment.from("JVM 内存模型包括堆、栈和方法区"));
+        index.add("3", TextSegment.from("ConcurrentHashMap 使用 CAS 和 synchronized 保证线程安全"));
+
+        List<Bm25Index.Hit> hits = index.search("HashMap", 10);
+        assertEquals(1, hits.size());
+        assertEquals("1", hits.get(0).id());
+        assertEquals("2", index.search("jvm 内存", 10).get(0).id());
+        assertTrue(index.search("Redis", 10).isEmpty());
+    }
+
+    @Test
+    void removedAndReplacedSegmentsAreNotReturned() {
+        Bm25Index index = new Bm25Index();
+        for (int i = 0; i < 10; i++) {
+            index.add("id" + i, TextSegment.from("segment " + i + " 线程池"));
+        }
+        index.remove(List.of("id0", "id1"));
+        index.add("id2", TextSegment.from("替换后的内容 Redis"));
+        assertEquals(8, index.size());
+        assertEquals(7, index.search("线程池", 10).size());
+        assertEquals("id2", index.search("redis", 10).get(0).id());
+
+        // 删除超过一半后触发重建, 结果不变
+        index.remove(List.of("id3", "id4", "id5", "id6", "id7"));
+        assertEquals(3, index.size());
+        assertEquals(2, index.search("线程池", 10).size());
+        assertEquals("id2", index.search("redis", 10).get(0).id());
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.aicodehelper.ai.rag;
+
+import com.example.aicodehelper.ai.ratelimit.LlmRequestContext;
+import com.example.aicodehelper.ai.ratelimit.LlmRequestScheduler;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingEmbeddingModelTest {
+
+    /**
+     * 向量第一维是文本长度, 便于核对结果有没有发错调用方
+     */
+    static class LengthEmbeddingModel implements EmbeddingModel {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        final AtomicInteger texts = new AtomicInteger();
+
+        volatile boolean failing;
+
+        volatile Object lastKey;
+
+        volatile LlmRequestScheduler.Priority lastPriority;
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            calls.incrementAndGet();
+            lastKey = LlmRequestContext.currentKey();
+            lastPriority = LlmRequestContext.priority(LlmRequestScheduler.Priority.INTERACTIVE);
+            texts.addAndGet(textSegments.size());
+            if (failing) {
+                throw new IllegalStateException("upstream down");
+            }
+            List<Embedding> embeddings = new ArrayList<>();
+            for (TextSegment segment : textSegments) {
+                embeddings.add(Embedding.from(new float[]{segment.text().length(), 1}));
+            }
+            return Response.from(embeddings);
+        }
+    }
+
+    @Test
+    void coalescesConcurrentQueriesIntoFewBatches() throws Exception {
+        LengthEmbeddingModel upstream = new LengthEmbeddingModel();
+        int callers = 64;
+        try (CoalescingEmbeddingModel model = new CoalescingEmbeddingModel(upstream, 16, Duration.ofMillis(20));
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Embedding>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                // 每 4 个调用方查询同一个文本
+                String query = "q".repeat(i / 4 + 1);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return model.embed(query).content();
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < callers; i++) {
+                assertEquals(i / 4 + 1, results.get(i).get().vector()[0]);
+            }
+            assertTrue(upstream.calls.get() < callers / 4, "calls: " + upstream.calls.get());
+            assertEquals(callers, model.requests());
+            assertEquals(upstream.calls.get(), model.batches());
+        }
+    }
+
+    @Test
+    void flushesAfterMaxWaitAndPassesLargeBatchesThrough() {
+        LengthEmbeddingModel upstream = new LengthEmbeddingModel();
+        try (CoalescingEmbeddingModel model = new CoalescingEmbeddingModel(upstream, 4, Duration.ofMillis(10))) {
+            long start = System.nanoTime();
+            assertEquals(3, model.embed("abc").content().vector()[0]);
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+
+            List<TextSegment> large = List.of(TextSegment.from("a"), TextSegment.from("bb"),
+                    TextSegment.from("ccc"), TextSegment.from("dddd"));
+            assertEquals(4, model.embedAll(large).content().size());
+            assertEquals(2, upstream.calls.get());
+            assertEquals(1, model.batches());
+        }
+    }
+
+    @Test
+    void keepsCallerSessionAndBackgroundPriority() {
+        LengthEmbeddingModel upstream = new LengthEmbeddingModel();
+        try (CoalescingEmbeddingModel model = new CoalescingEmbeddingModel(upstream, 16, Duration.ofMillis(5))) {
+            LlmRequestContext.runWith(7, () -> model.embed("java"));
+            assertEquals(7, upstream.lastKey);
+            assertEquals(LlmRequestScheduler.Priority.INTERACTIVE, upstream.lastPriority);
+            assertEquals(1, model.batches());
+
+            // 后台请求不合并, 仍按后台优先级排队
+            LlmRequestContext.runWith(8, () -> LlmRequestContext.callInBackground(() -> model.embed("jvm")));
+            assertEquals(8, upstream.lastKey);
+            assertEquals(LlmRequestScheduler.Priority.BACKGROUND, upstream.lastPriority);
+            assertEquals(1, model.batches());
+        }
+    }
+
+    @Test
+    void propagatesUpstreamFailureToEveryCaller() {
+        LengthEmbeddingModel upstream = new LengthEmbeddingModel();
+        upstream.failing = true;
+        try (CoalescingEmbeddingModel model = new CoalescingEmbeddingModel(upstream, 16, Duration.ofMillis(5))) {
+            IllegalStateException error = assertThrows(IllegalStateException.class, () -> model.embed("java"));
+            assertEquals("upstream down", error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HnswEmbeddingStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void recallAgainstExactSearch() throws IOException {
+        Random random = new Random(7);
+        int n = 2000;
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, 48));
+            segments.add(TextSegment.from("segment " + i));
+        }
+        HnswEmbeddingStore hnsw = new HnswEmbeddingStore(tempDir.resolve("hnsw.idx"), 16, 200, 100);
+        hnsw.addAll(ids, embeddings, segments);
+        try (MappedVectorStore exact = new MappedVectorStore(tempDir.resolve("vectors.f32"))) {
+            exact.addAll(ids, embeddings, segments);
+            int hits = 0;
+            int total = 0;
+            for (int q = 0; q < 50; q++) {
+                EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                        .queryEmbedding(randomEmbedding(random, 48))
+                        .maxResults(10)
+                        .build();
+                Set<String> expected = new HashSet<>();
+                exact.search(request).matches().forEach(match -> expected.add(match.embeddingId()));
+                for (EmbeddingMatch<TextSegment> match : hnsw.search(request).matches()) {
+                    if (expected.contains(match.embeddingId())) {
+                        hits++;
+                    }
+                }
+                total += expected.size();
+            }
+            assertTrue(hits >= total * 0.9, "recall@10 too low: " + hits + "/" + total);
+        }
+    }
+
+    @Test
+    void persistsAndSkipsReinsert() throws IOException {
+        Path path = tempDir.resolve("hnsw.idx");
+        HnswEmbeddingStore store = new HnswEmbeddingStore(path, 8, 50, 50);
+        store.addAll(List.of("a", "b", "c"),
+                List.of(Embedding.from(new float[]{1, 0, 0}), Embedding.from(new float[]{0, 1, 0}), Embedding.from(new float[]{0, 0, 1})),
+                List.of(TextSegment.from("a"), TextSegment.from("b"), TextSegment.from("c")));
+        store.removeAll(List.of("c"));
+        store.close();
+
+        HnswEmbeddingStore reloaded = new HnswEmbeddingStore(path, 8, 50, 50);
+        assertEquals(2, reloaded.size());
+        // 同ID同向量再次导入不会新增节点
+        reloaded.addAll(List.of("a"), List.of(Embedding.from(new float[]{2, 0, 0})), List.of(TextSegment.from("a2")));
+        assertEquals(2, reloaded.size());
+        List<EmbeddingMatch<TextSegment>> matches = reloaded.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 0.1f, 0}))
+                .maxResults(3)
+                .build()).matches();
+        assertEquals(2, matches.size());
+        assertEquals("a", matches.get(0).embeddingId());
+        assertEquals("a2", matches.get(0).embedded().text());
+    }
+
+    static Embedding randomEmbedding(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.aicodehelper.ai.rag;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * HNSW 召回率/延迟报告, 用于挑选 rag.index.hnsw 参数
+ * <p>
+ * 用法: 运行 main, 参数依次为 段落数 维度 查询数 (默认 100000 256 500).
+ * 数据为带聚类结构的随机向量, 与精确暴力检索的结果对比 recall@10.
+ */
+public class HnswRecallReport {
+
+    private static final int K = 10;
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int dimension = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        Random random = new Random(42);
+        float[][] data = clustered(random, n, dimension, Math.max(16, n / 1000));
+        float[][] queryVectors = clustered(random, queries, dimension, Math.max(16, n / 1000));
+
+        long exactStart = System.nanoTime();
+        int[][] truth = new int[queries][];
+        for (int q = 0; q < queries; q++) {
+            truth[q] = exactTopK(data, queryVectors[q]);
+        }
+        double exactMicros = (System.nanoTime() - exactStart) / 1000.0 / queries;
+        System.out.printf("n=%d dim=%d queries=%d exact=%.1fus/query%n%n", n, dimension, queries, exactMicros);
+        System.out.println("| M | efConstruction | build(s) | efSearch | recall@10 | p50(us) | p99(us) |");
+        System.out.println("|---|---|---|---|---|---|---|");
+
+        for (int m : new int[]{8, 16, 32}) {
+            int efConstruction = 200;
+            HnswIndex index = new HnswIndex(dimension, m, efConstruction);
+            long buildStart = System.nanoTime();
+            for (float[] vector : data) {
+                index.insert(vector);
+            }
+            double buildSeconds = (System.nanoTime() - buildStart) / 1e9;
+            for (int efSearch : new int[]{16, 32, 64, 128, 256}) {
+                int[] ids = new int[K];
+                float[] scores = new float[K];
+                long[] latencies = new long[queries];
+                int hits = 0;
+                float[] query = new float[dimension];
+                for (int q = 0; q < queries; q++) {
+                    HnswIndex.normalizeInto(queryVectors[q], query, 0);
+                    long start = System.nanoTime();
+                    int found = index.search(query, K, efSearch, ids, scores);
+                    latencies[q] = System.nanoTime() - start;
+                    Set<Integer> expected = new HashSet<>();
+                    for (int id : truth[q]) {
+                        expected.add(id);
+                    }
+                    for (int i = 0; i < found; i++) {
+                        if (expected.contains(ids[i])) {
+                            hits++;
+                        }
+                    }
+                }
+                Arrays.sort(latencies);
+                System.out.printf("| %d | %d | %.1f | %d | %.3f | %.1f | %.1f |%n",
+                        m, efConstruction, buildSeconds, efSearch, hits / (double) (queries * K),
+                        latencies[queries / 2] / 1000.0, latencies[(int) (queries * 0.99)] / 1000.0);
+            }
+        }
+    }
+
+    private static int[] exactTopK(float[][] data, float[] query) {
+        float[] normalized = new float[query.length];
+        HnswIndex.normalizeInto(query, normalized, 0);
+        int[] best = new int[K];
+        float[] bestScores = new float[K];
+        Arrays.fill(bestScores, Float.NEGATIVE_INFINITY);
+        float[] vector = new float[query.length];
+        for (int i = 0; i < data.length; i++) {
+            HnswIndex.normalizeInto(data[i], vector, 0);
+            float score = 0;
+            for (int j = 0; j < vector.length; j++) {
+                score += vector[j] * normalized[j];
+            }
+            if (score > bestScores[K - 1]) {
+                int pos = K - 1;
+                while (pos > 0 && bestScores[pos - 1] < score) {
+                    bestScores[pos] = bestScores[pos - 1];
+                    best[pos] = best[pos - 1];
+                    pos--;
+                }
+                bestScores[pos] = score;
+                best[pos] = i;
+            }
+        }
+        return best;
+    }
+
+    private static float[][] clustered(Random random, int n, int dimension, int clusters) {
+        Random centers = new Random(1);
+        float[][] centroids = new float[clusters][dimension];
+        for (float[] centroid : centroids) {
+            for (int j = 0; j < dimension; j++) {
+                centroid[j] = (float) centers.nextGaussian();
+            }
+        }
+        float[][] data = new float[n][dimension];
+        for (int i = 0; i < n; i++) {
+            float[] centroid = centroids[random.nextInt(clusters)];
+            for (int j = 0; j < dimension; j++) {
+                data[i][j] = centroid[j] + (float) (random.nextGaussian() * 0.5);
+            }
+        }
+        return data;
+    }
+}
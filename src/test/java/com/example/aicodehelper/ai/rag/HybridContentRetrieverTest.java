@@ -0,0 +1,57 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HybridContentRetrieverTest {
+
+    private final Bm25Index index = new Bm25Index();
+
+    private final AtomicInteger denseCalls = new AtomicInteger();
+
+    // 向量检索固定返回 "线程池" 相关段落
+    private final ContentRetriever dense = query -> {
+        denseCalls.incrementAndGet();
+        return List.of(Content.from(TextSegment.from("线程池的核心参数")), Content.from(TextSegment.from("JVM 内存模型")));
+    };
+
+    private final HybridContentRetriever retriever = new HybridContentRetriever(dense, index, 10, 2, 60, 24);
+
+    HybridContentRetrieverTest() {
+        index.add("1", TextSegment.from("HashMap 基于数组和链表实现"));
+        index.add("2", TextSegment.from("JVM 内存模型"));
+        index.add("3", TextSegment.from("线程池的核心参数"));
+    }
+
+    @Test
+    void keywordQuerySkipsDenseRetrieval() {
+        List<Content> contents = retriever.retrieve(Query.from("HashMap"));
+        assertEquals("HashMap 基于数组和链表实现", contents.get(0).textSegment().text());
+        assertEquals(0, denseCalls.get());
+    }
+
+    @Test
+    void naturalLanguageQueryFusesBothRankings() {
+        List<Content> contents = retriever.retrieve(Query.from("请介绍一下 JVM 的内存模型是怎样划分的"));
+        assertEquals(1, denseCalls.get());
+        assertEquals(2, contents.size());
+        // 两路都命中的段落排在最前
+        assertEquals("JVM 内存模型", contents.get(0).textSegment().text());
+    }
+
+    @Test
+    void detectsKeywordQueries() {
+        assertTrue(retriever.isKeywordQuery("JVM"));
+        assertTrue(retriever.isKeywordQuery("第35题"));
+        assertFalse(retriever.isKeywordQuery("什么是线程池"));
+        assertFalse(retriever.isKeywordQuery("How does the garbage collector work in Java 17?"));
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalIngestorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reusesSnapshotForUnchangedFiles() throws IOException {
+        Path docs = Files.createDirectories(tempDir.resolve("docs"));
+        Files.writeString(docs.resolve("a.md"), "Java 基础\n\n集合框架与并发");
+        Files.writeString(docs.resolve("b.md"), "面试题\n\nHashMap 的实现原理");
+        Path snapshot = tempDir.resolve("snapshot.bin");
+        CountingEmbeddingModel model = new CountingEmbeddingModel();
+
+        IncrementalIngestor.Result first = ingestor(model, snapshot, "model-a").ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(2, first.embeddedFiles());
+        int embeddedOnFirstBoot = model.embedded.get();
+        assertTrue(embeddedOnFirstBoot > 0);
+
+        // 未变化的语料不再调用向量模型
+        IncrementalIngestor.Result second = ingestor(model, snapshot, "model-a").ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(2, second.reusedFiles());
+        assertEquals(embeddedOnFirstBoot, model.embedded.get());
+
+        // 只重新向量化被修改的文件
+        Files.writeString(docs.resolve("b.md"), "面试题\n\nConcurrentHashMap 的分段锁");
+        IncrementalIngestor.Result third = ingestor(model, snapshot, "model-a").ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(1, third.reusedFiles());
+        assertEquals(1, third.embeddedFiles());
+
+        // 换了向量模型, 快照整体作废
+        IncrementalIngestor.Result fourth = ingestor(model, snapshot, "model-b").ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(2, fourth.embeddedFiles());
+    }
+
+    @Test
+    void embedsInBoundedBatchesAndRetriesFailures() throws IOException {
+        Path docs = Files.createDirectories(tempDir.resolve("docs"));
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(docs.resolve("doc" + i + ".md"), "第一段 " + i + "\n\n第二段 " + i + "\n\n第三段 " + i);
+        }
+        FlakyEmbeddingModel model = new FlakyEmbeddingModel();
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        IncrementalIngestor ingestor = new IncrementalIngestor(
+                new DocumentByParagraphSplitter(10, 0),
+                segment -> segment,
+                model,
+                store,
+                tempDir.resolve("snapshot.bin"),
+                "paragraph(10,0)",
+                new IncrementalIngestor.Options(4, 8, 2, 3, Duration.ofMillis(1)));
+
+        IncrementalIngestor.Result result = ingestor.ingest(ingestor.load(docs));
+
+        assertEquals(20, result.files());
+        assertEquals(20, result.embeddedFiles());
+        assertEquals(0, result.failedFiles());
+        assertEquals(60, result.embeddedSegments());
+        assertEquals(8, result.batches());
+        assertTrue(model.maxBatch.get() <= 8);
+        assertTrue(model.maxConcurrent.get() <= 2);
+        // 第一次请求失败后重试
+        assertEquals(9, model.calls.get());
+        assertEquals(60, store.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1f, 1f, 0f}))
+                .maxResults(100)
+                .build()).matches().size());
+    }
+
+    @Test
+    void updateReembedsOnlyNewSegmentTexts() throws IOException {
+        Path docs = Files.createDirectories(tempDir.resolve("docs"));
+        Files.writeString(docs.resolve("a.md"), "第一段内容\n\n第二段内容\n\n第三段内容");
+        Files.writeString(docs.resolve("b.md"), "另一个文件");
+        CountingEmbeddingModel model = new CountingEmbeddingModel();
+        MappedVectorStore store = new MappedVectorStore(tempDir.resolve("vectors.f32"));
+        IncrementalIngestor ingestor = new IncrementalIngestor(
+                new DocumentByParagraphSplitter(10, 0),
+                segment -> segment,
+                model,
+                store,
+                tempDir.resolve("snapshot.bin"),
+                "paragraph(10,0)");
+        ingestor.ingest(ingestor.load(docs));
+        assertEquals(4, store.size());
+        int embedded = model.embedded.get();
+
+        // 只改了中间一段, 其余两段沿用旧向量
+        Files.writeString(docs.resolve("a.md"), "第一段内容\n\n修改后的段落\n\n第三段内容");
+        IncrementalIngestor.Result changed = ingestor.update(
+                List.of(FileSystemDocumentLoader.loadDocument(docs.resolve("a.md"))), List.of());
+        assertEquals(1, changed.embeddedSegments());
+        assertEquals(2, changed.reusedSegments());
+        assertEquals(embedded + 1, model.embedded.get());
+        assertEquals(4, store.size());
+
+        IncrementalIngestor.Result removed = ingestor.update(List.of(), List.of("a.md"));
+        assertEquals(1, removed.removedFiles());
+        assertEquals(1, store.size());
+        store.close();
+    }
+
+    @Test
+    void persistedIndexIsRebuiltWhenSnapshotIsInvalidated() throws IOException {
+        Path docs = Files.createDirectories(tempDir.resolve("docs"));
+        Files.writeString(docs.resolve("a.md"), "第一段内容\n\n第二段内容");
+        Path snapshot = tempDir.resolve("snapshot.bin");
+        Path index = tempDir.resolve("hnsw.idx");
+
+        HnswEmbeddingStore first = new HnswEmbeddingStore(index, 8, 50, 50);
+        new IncrementalIngestor(new DocumentByParagraphSplitter(10, 0), segment -> segment,
+                new CountingEmbeddingModel(), first, snapshot, "paragraph(10,0)|model-a")
+                .ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(2, first.size());
+
+        // 重启后换了切分参数, 段落ID全部变化, 旧节点不能留在索引里
+        HnswEmbeddingStore second = new HnswEmbeddingStore(index, 8, 50, 50);
+        new IncrementalIngestor(new DocumentByParagraphSplitter(1000, 0), segment -> segment,
+                new CountingEmbeddingModel(), second, snapshot, "paragraph(1000,0)|model-a")
+                .ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(1, second.size());
+
+        // 再次重启换了维度不同的向量模型, 不会因旧索引的维度而失败
+        EmbeddingModel wider = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                return Response.from(textSegments.stream()
+                        .map(segment -> Embedding.from(new float[]{1f, 0f, 0f, 1f}))
+                        .toList());
+            }
+        };
+        HnswEmbeddingStore third = new HnswEmbeddingStore(index, 8, 50, 50);
+        new IncrementalIngestor(new DocumentByParagraphSplitter(1000, 0), segment -> segment,
+                wider, third, snapshot, "paragraph(1000,0)|model-b")
+                .ingest(FileSystemDocumentLoader.loadDocuments(docs));
+        assertEquals(1, third.size());
+        assertEquals(1, third.search(EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1f, 0f, 0f, 1f}))
+                .maxResults(10)
+                .build()).matches().size());
+    }
+
+    @Test
+    void segmentIdsAreStableAcrossRuns() {
+        List<TextSegment> segments = List.of(TextSegment.from("same"), TextSegment.from("same"), TextSegment.from("other"));
+        List<String> ids = IncrementalIngestor.segmentIds("a.md", segments);
+        assertEquals(ids, IncrementalIngestor.segmentIds("a.md", segments));
+        assertEquals(3, ids.stream().distinct().count());
+    }
+
+    private IncrementalIngestor ingestor(EmbeddingModel model, Path snapshot, String modelName) {
+        return new IncrementalIngestor(
+                new DocumentByParagraphSplitter(1000, 200),
+                segment -> segment,
+                model,
+                new InMemoryEmbeddingStore<>(),
+                snapshot,
+                "paragraph(1000,200)|" + modelName);
+    }
+
+    static class CountingEmbeddingModel implements EmbeddingModel {
+
+        final AtomicInteger embedded = new AtomicInteger();
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            embedded.addAndGet(textSegments.size());
+            return Response.from(textSegments.stream()
+                    .map(segment -> Embedding.from(new float[]{segment.text().length(), 1f, 0f}))
+                    .toList());
+        }
+    }
+
+    /**
+     * 第一次调用失败, 同时记录批次大小和并发数
+     */
+    static class FlakyEmbeddingModel extends CountingEmbeddingModel {
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        final AtomicInteger concurrent = new AtomicInteger();
+
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        final AtomicInteger maxBatch = new AtomicInteger();
+
+        @Override
+        public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            try {
+                maxBatch.accumulateAndGet(textSegments.size(), Math::max);
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("429 Too Many Requests");
+                }
+                Thread.sleep(5);
+                return super.embedAll(textSegments);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matchesInMemoryStore() throws IOException {
+        Random random = new Random(42);
+        List<String> ids = new ArrayList<>();
+        List<Embedding> embeddings = new ArrayList<>();
+        List<TextSegment> segments = new ArrayList<>();
+        // 超过初始容量, 覆盖重新映射的路径
+        for (int i = 0; i < 3000; i++) {
+            ids.add("id-" + i);
+            embeddings.add(randomEmbedding(random, 32));
+            segments.add(TextSegment.from("segment " + i));
+        }
+        InMemoryEmbeddingStore<TextSegment> expected = new InMemoryEmbeddingStore<>();
+        expected.addAll(ids, embeddings, segments);
+        try (MappedVectorStore store = new MappedVectorStore(tempDir.resolve("vectors.f32"))) {
+            store.addAll(ids, embeddings, segments);
+            for (int q = 0; q < 20; q++) {
+                EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                        .queryEmbedding(randomEmbedding(random, 32))
+                        .maxResults(5)
+                        .minScore(0.5)
+                        .build();
+                List<EmbeddingMatch<TextSegment>> actualMatches = store.search(request).matches();
+                List<EmbeddingMatch<TextSegment>> expectedMatches = expected.search(request).matches();
+                assertEquals(expectedMatches.size(), actualMatches.size());
+                for (int i = 0; i < expectedMatches.size(); i++) {
+                    assertEquals(expectedMatches.get(i).embeddingId(), actualMatches.get(i).embeddingId());
+                    assertEquals(expectedMatches.get(i).score(), actualMatches.get(i).score(), 1e-4);
+                }
+            }
+        }
+    }
+
+    @Test
+    void removeAndOverwrite() throws IOException {
+        try (MappedVectorStore store = new MappedVectorStore(tempDir.resolve("vectors.f32"))) {
+            store.addAll(List.of("a", "b", "c"),
+                    List.of(Embedding.from(new float[]{1, 0}), Embedding.from(new float[]{0, 1}), Embedding.from(new float[]{1, 1})),
+                    List.of(TextSegment.from("a"), TextSegment.from("b"), TextSegment.from("c")));
+            store.removeAll(List.of("a"));
+            // 同一ID再次写入时覆盖, 不会重复
+            store.addAll(List.of("b"), List.of(Embedding.from(new float[]{0, 2})), List.of(TextSegment.from("b2")));
+            assertEquals(2, store.size());
+
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(Embedding.from(new float[]{0, 1}))
+                    .maxResults(3)
+                    .build()).matches();
+            assertEquals("b", matches.get(0).embeddingId());
+            assertEquals("b2", matches.get(0).embedded().text());
+            assertEquals("c", matches.get(1).embeddingId());
+        }
+    }
+
+    @Test
+    void rejectsMismatchedDimensionWithoutPartialWrite() throws IOException {
+        try (MappedVectorStore store = new MappedVectorStore(tempDir.resolve("vectors.f32"))) {
+            store.addAll(List.of("a"), List.of(Embedding.from(new float[]{1, 0})), List.of(TextSegment.from("a")));
+            assertThrows(IllegalArgumentException.class, () -> store.addAll(List.of("b", "c"),
+                    List.of(Embedding.from(new float[]{0, 1}), Embedding.from(new float[]{1, 1, 1})),
+                    List.of(TextSegment.from("b"), TextSegment.from("c"))));
+            assertThrows(IllegalArgumentException.class, () -> store.update(List.of("a"),
+                    List.of("d"), List.of(Embedding.from(new float[]{1})), List.of(TextSegment.from("d"))));
+            assertEquals(1, store.size());
+
+            List<EmbeddingMatch<TextSegment>> matches = store.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(Embedding.from(new float[]{0, 1}))
+                    .maxResults(3)
+                    .build()).matches();
+            assertEquals(1, matches.size());
+            assertEquals("a", matches.get(0).embeddingId());
+        }
+    }
+
+    private static Embedding randomEmbedding(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.splitter.DocumentByParagraphSplitter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RagIndexLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void becomesReadyInBackgroundAndRetriesFailedFiles() throws Exception {
+        Path docs = Files.createDirectories(tempDir.resolve("docs"));
+        Files.writeString(docs.resolve("a.md"), "Java 基础\n\n集合框架");
+        InMemoryEmbeddingStore<TextSegment> store = new InMemoryEmbeddingStore<>();
+        // 前两次调用失败, 首轮导入结束时文件向量化失败, 重试后成功
+        AtomicInteger calls = new AtomicInteger();
+        EmbeddingModel model = new EmbeddingModel() {
+            @Override
+            public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                if (calls.incrementAndGet() <= 2) {
+                    throw new RuntimeException("unavailable");
+                }
+                return Response.from(textSegments.stream().map(segment -> Embedding.from(new float[]{1, 0})).toList());
+            }
+        };
+        IncrementalIngestor ingestor = new IncrementalIngestor(new DocumentByParagraphSplitter(100, 0),
+                segment -> segment, model, store, tempDir.resolve("snapshot.bin"), "test",
+                new IncrementalIngestor.Options(1, 8, 1, 1, Duration.ofMillis(1)));
+
+        try (RagIndexLoader loader = new RagIndexLoader(ingestor, docs, Duration.ofMillis(10))) {
+            loader.start();
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while ((!loader.ready() || loader.lastError() != null) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(loader.ready());
+            assertNull(loader.lastError());
+            assertTrue(calls.get() >= 3);
+        }
+    }
+
+    @Test
+    void staysNotReadyWhileDocsDirectoryIsMissing() throws InterruptedException {
+        IncrementalIngestor ingestor = new IncrementalIngestor(new DocumentByParagraphSplitter(100, 0),
+                segment -> segment, new EmbeddingModel() {
+                    @Override
+                    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+                        throw new AssertionError();
+                    }
+                }, new InMemoryEmbeddingStore<>(), tempDir.resolve("snapshot.bin"), "test",
+                IncrementalIngestor.Options.defaults());
+
+        try (RagIndexLoader loader = new RagIndexLoader(ingestor, tempDir.resolve("missing"), Duration.ofMillis(10))) {
+            loader.start();
+            Thread.sleep(100);
+            assertFalse(loader.ready());
+            assertNotNull(loader.lastError());
+        }
+    }
+}
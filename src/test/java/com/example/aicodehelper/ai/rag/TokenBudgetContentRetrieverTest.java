@@ -0,0 +1,60 @@
+package com.example.aicodehelper.ai.rag;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.query.Query;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBudgetContentRetrieverTest {
+
+    private static Content segment(String fileName, String text) {
+        return Content.from(TextSegment.from(fileName + "\n" + text, Metadata.from("file_name", fileName)));
+    }
+
+    @Test
+    void mergesSameFileOnceAndTrimsSplitterOverlap() {
+        String overlap = "HashMap 在容量达到阈值时扩容为原来的两倍";
+        Content first = segment("java.md", "集合框架概览. " + overlap);
+        Content second = segment("java.md", overlap + ", 元素按哈希重新分布到新桶");
+        Content contained = segment("java.md", overlap);
+        Content other = segment("jvm.md", "G1 按 Region 回收");
+        TokenBudgetContentRetriever retriever = new TokenBudgetContentRetriever(
+                query -> List.of(first, second, contained, other), 1000, 200);
+
+        List<Content> contents = retriever.retrieve(Query.from("HashMap 扩容"));
+        assertEquals(2, contents.size());
+        String java = contents.get(0).textSegment().text();
+        assertTrue(java.startsWith("java.md\n集合框架概览"));
+        assertEquals(1, java.split("java.md", -1).length - 1);
+        assertEquals(1, java.split(overlap, -1).length - 1);
+        assertTrue(java.endsWith(", 元素按哈希重新分布到新桶"));
+        assertEquals("jvm.md\nG1 按 Region 回收", contents.get(1).textSegment().text());
+    }
+
+    @Test
+    void packsGreedilyUnderBudget() {
+        Content large = segment("a.md", "字".repeat(300));
+        Content huge = segment("b.md", "长".repeat(1000));
+        Content small = segment("c.md", "短".repeat(50));
+        TokenBudgetContentRetriever retriever = new TokenBudgetContentRetriever(
+                query -> List.of(large, huge, small), 400, 200);
+
+        List<Content> contents = retriever.retrieve(Query.from("q"));
+        // 放不下的跳过, 后面更短的仍然装入
+        assertEquals(List.of("a.md", "c.md"), contents.stream()
+                .map(content -> content.textSegment().metadata().getString("file_name")).toList());
+    }
+
+    @Test
+    void truncatesTopResultWhenItAloneExceedsBudget() {
+        TokenBudgetContentRetriever retriever = new TokenBudgetContentRetriever(
+                query -> List.of(segment("a.md", "字".repeat(500))), 100, 200);
+        String text = retriever.retrieve(Query.from("q")).get(0).textSegment().text();
+        assertTrue(text.length() < 110, "length " + text.length());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.aicodehelper.ai.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmRequestSchedulerTest {
+
+    private static final LlmRequestScheduler.Priority INTERACTIVE = LlmRequestScheduler.Priority.INTERACTIVE;
+
+    private static final LlmRequestScheduler.Priority BACKGROUND = LlmRequestScheduler.Priority.BACKGROUND;
+
+    // 每秒补充 100 个 token
+    private static LlmRequestScheduler scheduler(Duration maxWait) {
+        return new LlmRequestScheduler(new LlmRequestScheduler.Settings(0, 6000, maxWait, maxWait));
+    }
+
+    @Test
+    void interleavesSessionsAndServesInteractiveFirst() throws Exception {
+        try (LlmRequestScheduler scheduler = scheduler(Duration.ofSeconds(5))) {
+            // 先把桶用空, 之后的请求都要排队
+            scheduler.acquire(INTERACTIVE, "warmup", 6000);
+            List<String> order = new CopyOnWriteArrayList<>();
+            CompletableFuture<?> last = CompletableFuture.allOf(
+                    track(scheduler.submit(BACKGROUND, "ingest", 10), "ingest", order),
+                    track(scheduler.submit(INTERACTIVE, 1, 10), "a1", order),
+                    track(scheduler.submit(INTERACTIVE, 1, 10), "a2", order),
+                    track(scheduler.submit(INTERACTIVE, 1, 10), "a3", order),
+                    track(scheduler.submit(INTERACTIVE, 2, 10), "b1", order));
+            last.get(5, TimeUnit.SECONDS);
+            assertEquals(List.of("a1", "b1", "a2", "a3", "ingest"), order);
+            assertEquals(6, scheduler.granted());
+            assertEquals(0, scheduler.queued());
+        }
+    }
+
+    @Test
+    void shedsRequestsThatWaitTooLong() {
+        try (LlmRequestScheduler scheduler = scheduler(Duration.ofMillis(100))) {
+            scheduler.acquire(INTERACTIVE, 1, 6000);
+            long start = System.nanoTime();
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> scheduler.submit(INTERACTIVE, 1, 3000).get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RequestThrottledException.class, error.getCause());
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+            // 入口按排队量预测, 等不到的请求直接拒绝
+            assertThrows(RequestThrottledException.class, () -> scheduler.checkAdmission(INTERACTIVE, 3000));
+            assertEquals(2, scheduler.shed());
+        }
+    }
+
+    @Test
+    void timedOutRequestsBehindTheHeadLeaveTheQueueCounts() {
+        // 每分钟1个请求, 第一个请求之后的都要等很久
+        try (LlmRequestScheduler scheduler = new LlmRequestScheduler(new LlmRequestScheduler.Settings(
+                1, 0, Duration.ofMillis(100), Duration.ofMillis(100)))) {
+            scheduler.acquire(INTERACTIVE, 1, 10);
+            CompletableFuture<LlmRequestScheduler.Permit> head = scheduler.submit(INTERACTIVE, 1, 10);
+            CompletableFuture<LlmRequestScheduler.Permit> behind = scheduler.submit(INTERACTIVE, 1, 10);
+            assertEquals(2, scheduler.queued());
+
+            assertThrows(ExecutionException.class, () -> head.get(5, TimeUnit.SECONDS));
+            assertThrows(ExecutionException.class, () -> behind.get(5, TimeUnit.SECONDS));
+            // 调度线程还在等令牌, 超时的请求已经不再计入排队量
+            assertEquals(0, scheduler.queued());
+            assertEquals(2, scheduler.shed());
+        }
+    }
+
+    @Test
+    void refundsUnusedTokensAfterResponse() {
+        try (LlmRequestScheduler scheduler = scheduler(Duration.ofMillis(500))) {
+            LlmRequestScheduler.Permit permit = scheduler.acquire(INTERACTIVE, 1, 6000);
+            permit.release(100);
+            assertDoesNotThrow(() -> scheduler.acquire(INTERACTIVE, 1, 3000));
+        }
+    }
+
+    @Test
+    void estimatesCjkPerCharacter() {
+        assertEquals(4, TokenEstimator.estimate("面试题库"));
+        assertEquals(4, TokenEstimator.estimate("HashMap 原理"));
+        assertEquals(0, TokenEstimator.estimate(""));
+    }
+
+    private static CompletableFuture<?> track(CompletableFuture<LlmRequestScheduler.Permit> future, String name,
+                                              List<String> order) {
+        return future.thenAccept(permit -> order.add(name));
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.aicodehelper.ai.routing;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingChatModelTest {
+
+    private static final ChatRequest REQUEST = ChatRequest.builder().messages(UserMessage.from("hi")).build();
+
+    /**
+     * 本地假模型: 先等待 delay, 失败次数用完前抛出指定状态码
+     */
+    static class FakeModel implements ChatModel {
+
+        final String name;
+        final Duration delay;
+        final AtomicInteger failures;
+        final int status;
+        final AtomicInteger calls = new AtomicInteger();
+
+        FakeModel(String name, Duration delay, int failures, int status) {
+            this.name = name;
+            this.delay = delay;
+            this.failures = new AtomicInteger(failures);
+            this.status = status;
+        }
+
+        @Override
+        public ChatResponse chat(ChatRequest chatRequest) {
+            calls.incrementAndGet();
+            sleep();
+            if (failures.getAndDecrement() > 0) {
+                throw new HttpException(status, name + " failed");
+            }
+            return ChatResponse.builder().aiMessage(AiMessage.from(name)).build();
+        }
+
+        StreamingChatModel streaming() {
+            return new StreamingChatModel() {
+                @Override
+                public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+                    calls.incrementAndGet();
+                    Thread.ofVirtual().start(() -> {
+                        sleep();
+                        if (failures.getAndDecrement() > 0) {
+                            handler.onError(new HttpException(status, name + " failed"));
+                            return;
+                        }
+                        handler.onPartialResponse(name);
+                        handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(name)).build());
+                    });
+                }
+            };
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ModelRouter router(Duration hedgeDelay, FakeModel... models) {
+        List<ModelRouter.Backend> backends = Arrays.stream(models)
+                .map(model -> new ModelRouter.Backend(model.name,
+                        model.name.startsWith("cheap") ? ModelRouter.Tier.CHEAP : ModelRouter.Tier.DEFAULT, model, model.streaming()))
+                .toList();
+        return new ModelRouter(backends, 0.5, Duration.ofSeconds(30), hedgeDelay);
+    }
+
+    @Test
+    void fallsBackOnThrottlingAndCoolsDownBackend() {
+        FakeModel primary = new FakeModel("primary", Duration.ZERO, 1, 429);
+        FakeModel backup = new FakeModel("backup", Duration.ofMillis(20), 0, 0);
+        try (ModelRouter router = router(Duration.ofSeconds(1), primary, backup)) {
+            RoutingChatModel model = new RoutingChatModel(router, ModelRouter.Tier.DEFAULT);
+            assertEquals("backup", model.chat(REQUEST).aiMessage().text());
+            // 冷却期间即使更快也不再先选 primary
+            assertEquals("backup", model.chat(REQUEST).aiMessage().text());
+            assertEquals(1, primary.calls.get());
+        }
+    }
+
+    @Test
+    void doesNotRetryBadRequests() {
+        FakeModel primary = new FakeModel("primary", Duration.ZERO, 1, 400);
+        FakeModel backup = new FakeModel("backup", Duration.ZERO, 0, 0);
+        try (ModelRouter router = router(Duration.ofSeconds(1), primary, backup)) {
+            RoutingChatModel model = new RoutingChatModel(router, ModelRouter.Tier.DEFAULT);
+            HttpException error = assertThrows(HttpException.class, () -> model.chat(REQUEST));
+            assertEquals(400, error.statusCode());
+            assertEquals(0, backup.calls.get());
+        }
+    }
+
+    @Test
+    void prefersFasterBackendAndRequestedTier() {
+        FakeModel slow = new FakeModel("slow", Duration.ofMillis(60), 0, 0);
+        FakeModel fast = new FakeModel("fast", Duration.ofMillis(5), 0, 0);
+        FakeModel cheap = new FakeModel("cheap", Duration.ofMillis(60), 0, 0);
+        try (ModelRouter router = router(Duration.ofSeconds(1), slow, fast, cheap)) {
+            RoutingChatModel model = new RoutingChatModel(router, ModelRouter.Tier.DEFAULT);
+            // 前两次各自拿到样本, 之后稳定选择更快的后端
+            model.chat(REQUEST);
+            model.chat(REQUEST);
+            for (int i = 0; i < 5; i++) {
+                assertEquals("fast", model.chat(REQUEST).aiMessage().text());
+            }
+            assertEquals(1, slow.calls.get());
+            assertEquals("cheap", new RoutingChatModel(router, ModelRouter.Tier.CHEAP).chat(REQUEST).aiMessage().text());
+        }
+    }
+
+    @Test
+    void hedgesSlowFirstToken() throws Exception {
+        FakeModel slow = new FakeModel("slow", Duration.ofMillis(1000), 0, 0);
+        FakeModel fast = new FakeModel("fast", Duration.ofMillis(10), 0, 0);
+        try (ModelRouter router = router(Duration.ofMillis(100), slow, fast)) {
+            RoutingStreamingChatModel model = new RoutingStreamingChatModel(router, ModelRouter.Tier.DEFAULT);
+            StringBuilder tokens = new StringBuilder();
+            CompletableFuture<ChatResponse> done = new CompletableFuture<>();
+            long start = System.nanoTime();
+            model.chat(REQUEST, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    tokens.append(partialResponse);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    done.complete(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    done.completeExceptionally(error);
+                }
+            });
+            assertEquals("fast", done.get(5, TimeUnit.SECONDS).aiMessage().text());
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 800);
+            // 慢的后端晚到的输出被丢弃
+            Thread.sleep(1200);
+            assertEquals("fast", tokens.toString());
+        }
+    }
+
+    @Test
+    void streamingFallsBackOnServerError() throws Exception {
+        FakeModel broken = new FakeModel("broken", Duration.ZERO, 1, 503);
+        FakeModel backup = new FakeModel("backup", Duration.ZERO, 0, 0);
+        try (ModelRouter router = router(Duration.ofSeconds(5), broken, backup)) {
+            CompletableFuture<ChatResponse> done = new CompletableFuture<>();
+            new RoutingStreamingChatModel(router, ModelRouter.Tier.DEFAULT).chat(REQUEST, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    done.complete(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    done.completeExceptionally(error);
+                }
+            });
+            assertEquals("backup", done.get(5, TimeUnit.SECONDS).aiMessage().text());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.aicodehelper.ai.tools;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InterviewQuestionFetcherTest {
+
+    private static final String PAGE = """
+            <html><body>
+            <table><tr><td class="ant-table-cell">导航</td></tr></table>
+            <div class="ant-table"><table><tbody>
+              <tr><td class="ant-table-cell"><a href="/q/1"> HashMap 的底层实现？ </a></td></tr>
+              <tr><td class="ant-table-cell"><a href="/q/2">ConcurrentHashMap 如何保证线程安全？</a></td></tr>
+            </tbody></table></div>
+            """;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private volatile long delayMillis;
+
+    private HttpServer server;
+
+    private InterviewQuestionFetcher fetcher;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search/all", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            // 分块响应: 结果表格之后还有很长的页面尾部, 解析器不应该读完它
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAGE.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                byte[] filler = "<p>footer</p>".repeat(1000).getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < 100; i++) {
+                    out.write(filler);
+                }
+            } catch (IOException ignored) {
+                // 客户端提前关闭连接
+            }
+        });
+        server.start();
+        fetcher = new InterviewQuestionFetcher("http://127.0.0.1:" + server.getAddress().getPort(),
+                Duration.ofSeconds(2), Duration.ofMinutes(1), 100);
+    }
+
+    @AfterEach
+    void stopStub() {
+        fetcher.close();
+        server.stop(0);
+    }
+
+    @Test
+    void extractsQuestionsFromResultTable() {
+        assertEquals(List.of("HashMap 的底层实现？", "ConcurrentHashMap 如何保证线程安全？"), fetcher.search("HashMap"));
+    }
+
+    @Test
+    void cachesAndCoalescesIdenticalKeywords() {
+        delayMillis = 300;
+        List<CompletableFuture<List<String>>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            // 关键词按大小写和首尾空白归一
+            String keyword = i % 2 == 0 ? "JVM" : " jvm ";
+            calls.add(CompletableFuture.supplyAsync(() -> fetcher.search(keyword)));
+        }
+        calls.forEach(call -> assertEquals(2, call.join().size()));
+        assertEquals(1, requests.get());
+
+        fetcher.search("jvm");
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void failsWithinTimeBudget() {
+        delayMillis = 5000;
+        long start = System.nanoTime();
+        assertThrows(RuntimeException.class, () -> fetcher.search("slow"));
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 4000);
+    }
+}
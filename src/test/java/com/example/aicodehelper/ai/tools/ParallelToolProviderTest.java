@@ -0,0 +1,106 @@
+package com.example.aicodehelper.ai.tools;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.service.tool.ToolExecutor;
+import dev.langchain4j.service.tool.ToolProviderRequest;
+import dev.langchain4j.service.tool.ToolProviderResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelToolProviderTest {
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private final ParallelToolProvider provider = new ParallelToolProvider(
+            Map.of(),
+            List.of(request -> ToolProviderResult.builder()
+                    .add(spec("search"), sleeping(300, "search result"))
+                    .add(spec("weather"), sleeping(300, "sunny"))
+                    .add(spec("slow"), sleeping(5000, "never"))
+                    .build()),
+            Duration.ofSeconds(2),
+            Map.of("slow", Duration.ofMillis(100)));
+
+    @AfterEach
+    void close() {
+        provider.close();
+    }
+
+    @Test
+    void runsToolCallsOfOneMessageConcurrently() {
+        Map<String, ToolExecutor> tools = byName(provider.provideTools(new ToolProviderRequest("user-1", UserMessage.from("hi"))));
+        ToolExecutionRequest first = request("call_1", "search");
+        ToolExecutionRequest second = request("call_2", "weather");
+
+        long start = System.nanoTime();
+        provider.prefetch("user-1", AiMessage.from(List.of(first, second)));
+        // AiServices 按顺序执行, 但两个调用已经在并发进行
+        assertEquals("search result", tools.get("search").execute(first, "user-1"));
+        assertEquals("sunny", tools.get("weather").execute(second, "user-1"));
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertTrue(elapsedMillis < 550, "elapsed " + elapsedMillis);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void prefetchOnlyUsesExecutorsOfTheSameSessionsTurn() throws InterruptedException {
+        provider.provideTools(new ToolProviderRequest("user-1", UserMessage.from("hi")));
+        AiMessage toolCalls = AiMessage.from(List.of(request("call_4", "search"), request("call_5", "weather")));
+
+        // 其他会话没有本轮的执行器, 不提前启动
+        provider.prefetch("user-2", toolCalls);
+        // 模型给出最终回答, 会话1这一轮结束, 执行器随之移除
+        provider.prefetch("user-1", AiMessage.from("done"));
+        provider.prefetch("user-1", toolCalls);
+        Thread.sleep(100);
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void timedOutToolReturnsMessageInsteadOfBlocking() {
+        Map<String, ToolExecutor> tools = byName(provider.provideTools(new ToolProviderRequest("user-1", UserMessage.from("hi"))));
+        long start = System.nanoTime();
+        String result = tools.get("slow").execute(request("call_3", "slow"), "user-1");
+        assertTrue(result.contains("did not respond within 100 ms"), result);
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+    }
+
+    private ToolExecutor sleeping(long millis, String result) {
+        return (request, memoryId) -> {
+            executions.incrementAndGet();
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return "interrupted";
+            }
+            return result;
+        };
+    }
+
+    private static ToolSpecification spec(String name) {
+        return ToolSpecification.builder().name(name).description(name).build();
+    }
+
+    private static ToolExecutionRequest request(String id, String name) {
+        return ToolExecutionRequest.builder().id(id).name(name).arguments("{}").build();
+    }
+
+    private static Map<String, ToolExecutor> byName(ToolProviderResult result) {
+        Map<String, ToolExecutor> tools = new LinkedHashMap<>();
+        result.tools().forEach((specification, executor) -> tools.put(specification.name(), executor));
+        return tools;
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.aicodehelper.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压测驱动: 同时打开大量 /ai/chat SSE 流, 统计吞吐、首 token 时间和整流耗时的分位数,
+ * 期间通过 Actuator 采样服务端的堆占用和线程数
+ * <p>
+ * 用法: 先用 {@link LoadTestApplication} 启动桩服务和应用, 再运行
+ * {@code LoadDriver --base-url=http://localhost:8081/api --streams=2000 --ramp-up=5s}
+ */
+public class LoadDriver {
+
+    /**
+     * @param baseUrl 应用地址, 含 context-path, 例如 http://localhost:8081/api
+     * @param streams 并发流总数
+     * @param rampUp  在这段时间内均匀地打开全部连接
+     * @param timeout 单个流的超时
+     */
+    public record Settings(String baseUrl, int streams, Duration rampUp, Duration timeout, String message) {
+    }
+
+    /**
+     * 耗时分位数, 单位毫秒
+     */
+    public record Percentiles(long p50, long p90, long p99, long max) {
+
+        static Percentiles of(List<Long> values) {
+            if (values.isEmpty()) {
+                return new Percentiles(0, 0, 0, 0);
+            }
+            long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+            return new Percentiles(at(sorted, 0.50), at(sorted, 0.90), at(sorted, 0.99), sorted[sorted.length - 1]);
+        }
+
+        private static long at(long[] sorted, double quantile) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+        }
+    }
+
+    public record Report(int streams, int completed, int failed, long frames, double elapsedSeconds,
+                         Percentiles timeToFirstToken, Percentiles streamDuration,
+                         long maxHeapUsedBytes, long maxLiveThreads) {
+
+        public double streamsPerSecond() {
+            return completed / elapsedSeconds;
+        }
+
+        public double framesPerSecond() {
+            return frames / elapsedSeconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, """
+                            streams: %d, completed: %d, failed: %d, elapsed: %.1fs
+                            throughput: %.1f streams/s, %.1f SSE frames/s
+                            ttft ms: p50=%d p90=%d p99=%d max=%d
+                            stream ms: p50=%d p90=%d p99=%d max=%d
+                            server: max heap used %.1f MiB, max live threads %d""",
+                    streams, completed, failed, elapsedSeconds, streamsPerSecond(), framesPerSecond(),
+                    timeToFirstToken.p50(), timeToFirstToken.p90(), timeToFirstToken.p99(), timeToFirstToken.max(),
+                    streamDuration.p50(), streamDuration.p90(), streamDuration.p99(), streamDuration.max(),
+                    maxHeapUsedBytes / 1024.0 / 1024.0, maxLiveThreads);
+        }
+    }
+
+    private record StreamResult(boolean ok, long ttftMillis, long durationMillis, int frames) {
+
+        static final StreamResult FAILED = new StreamResult(false, 0, 0, 0);
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Settings settings;
+
+    private final HttpClient client;
+
+    public LoadDriver(Settings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public Report run() throws InterruptedException {
+        AtomicLong maxHeap = new AtomicLong();
+        AtomicLong maxThreads = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            maxHeap.accumulateAndGet(metric("jvm.memory.used", "area:heap"), Math::max);
+            maxThreads.accumulateAndGet(metric("jvm.threads.live", null), Math::max);
+        }, 0, 500, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        long rampStepNanos = settings.streams() > 1 ? settings.rampUp().toNanos() / settings.streams() : 0;
+        List<Future<StreamResult>> futures = new ArrayList<>(settings.streams());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < settings.streams(); i++) {
+                int memoryId = i;
+                futures.add(executor.submit(() -> stream(memoryId)));
+                if (rampStepNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(rampStepNanos);
+                }
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        sampler.shutdownNow();
+
+        List<Long> ttft = new ArrayList<>();
+        List<Long> durations = new ArrayList<>();
+        int failed = 0;
+        long frames = 0;
+        for (Future<StreamResult> future : futures) {
+            StreamResult result = future.resultNow();
+            if (!result.ok()) {
+                failed++;
+                continue;
+            }
+            ttft.add(result.ttftMillis());
+            durations.add(result.durationMillis());
+            frames += result.frames();
+        }
+        return new Report(settings.streams(), settings.streams() - failed, failed, frames, elapsedSeconds,
+                Percentiles.of(ttft), Percentiles.of(durations), maxHeap.get(), maxThreads.get());
+    }
+
+    private StreamResult stream(int memoryId) {
+        URI uri = URI.create(settings.baseUrl() + "/ai/chat?memoryId=" + memoryId + "&message="
+                + URLEncoder.encode(settings.message(), StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(settings.timeout())
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                if (response.statusCode() != 200) {
+                    return StreamResult.FAILED;
+                }
+                long firstToken = 0;
+                int frames = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("data:") && frames++ == 0) {
+                        firstToken = System.nanoTime();
+                    }
+                }
+                if (frames == 0) {
+                    return StreamResult.FAILED;
+                }
+                long end = System.nanoTime();
+                return new StreamResult(true, (firstToken - start) / 1_000_000, (end - start) / 1_000_000, frames);
+            }
+        } catch (Exception e) {
+            return StreamResult.FAILED;
+        }
+    }
+
+    /**
+     * 读取一个 Actuator 指标的 VALUE, 失败时返回 0
+     */
+    private long metric(String name, String tag) {
+        String url = settings.baseUrl() + "/actuator/metrics/" + name + (tag == null ? "" : "?tag=" + tag);
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofSeconds(2)).build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return 0;
+            }
+            for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+                if ("VALUE".equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asLong();
+                }
+            }
+        } catch (Exception e) {
+            // 采样失败不影响压测
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String baseUrl = option(args, "base-url", "http://localhost:8081/api");
+        int streams = Integer.parseInt(option(args, "streams", "1000"));
+        Duration rampUp = Duration.parse("PT" + option(args, "ramp-up", "5s").toUpperCase(Locale.ROOT));
+        Duration timeout = Duration.parse("PT" + option(args, "timeout", "120s").toUpperCase(Locale.ROOT));
+        String message = option(args, "message", "HashMap 的实现原理是什么?");
+        System.out.println(new LoadDriver(new Settings(baseUrl, streams, rampUp, timeout, message)).run());
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        return Arrays.stream(args)
+                .filter(arg -> arg.startsWith(prefix))
+                .map(arg -> arg.substring(prefix.length()))
+                .findFirst()
+                .orElse(defaultValue);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.aicodehelper.loadtest;
+
+import com.example.aicodehelper.AiCodeHelperApplication;
+import com.example.aicodehelper.ai.mcp.StubMcpServer;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * 用 loadtest profile 启动应用, 模型和 MCP 换成本机桩服务, 之后用 {@link LoadDriver} 施压
+ * <p>
+ * 桩服务参数通过系统属性调整: stub.first-token-delay-ms、stub.tokens-per-second、stub.answer-tokens、
+ * stub.error-rate、stub.error-status. 其余参数 (如 --server.port) 原样传给 Spring.
+ */
+public class LoadTestApplication {
+
+    public static void main(String[] args) throws Exception {
+        StubTls.trustInThisJvm();
+        StubModelServer.Settings settings = StubModelServer.Settings.fromSystemProperties();
+        StubModelServer models = new StubModelServer(settings);
+        StubMcpServer mcp = new StubMcpServer("stub-mcp");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            models.close();
+            mcp.close();
+        }));
+        System.out.println("Stub model server: " + models.endpoint() + " " + settings);
+        System.out.println("Stub MCP server: " + mcp.sseUrl());
+
+        SpringApplication application = new SpringApplication(AiCodeHelperApplication.class);
+        application.setAdditionalProfiles("loadtest");
+        String[] springArgs = new String[args.length + 2];
+        springArgs[0] = "--langchain4j.github-models.endpoint=" + models.endpoint();
+        springArgs[1] = "--mcp.sse-urls[0]=" + mcp.sseUrl();
+        System.arraycopy(args, 0, springArgs, 2, args.length);
+        application.run(springArgs);
+    }
+}
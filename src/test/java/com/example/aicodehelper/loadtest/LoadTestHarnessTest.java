@@ -0,0 +1,59 @@
+package com.example.aicodehelper.loadtest;
+
+import com.example.aicodehelper.ai.mcp.StubMcpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 压测链路的冒烟测试: 桩服务 + loadtest profile 下少量并发流都能完整跑完, 不访问外部服务
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class LoadTestHarnessTest {
+
+    private static final Duration FIRST_TOKEN_DELAY = Duration.ofMillis(100);
+
+    private static StubModelServer models;
+
+    private static StubMcpServer mcp;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void stubServers(DynamicPropertyRegistry registry) throws Exception {
+        StubTls.trustInThisJvm();
+        models = new StubModelServer(new StubModelServer.Settings(FIRST_TOKEN_DELAY, 200, 20, 0, 500));
+        mcp = new StubMcpServer("stub-mcp");
+        registry.add("langchain4j.github-models.endpoint", models::endpoint);
+        registry.add("mcp.sse-urls[0]", mcp::sseUrl);
+    }
+
+    @AfterAll
+    static void stopStubServers() {
+        models.close();
+        mcp.close();
+        StubTls.restoreTrust();
+    }
+
+    @Test
+    void streamsCompleteAgainstStubServers() throws InterruptedException {
+        LoadDriver.Report report = new LoadDriver(new LoadDriver.Settings("http://127.0.0.1:" + port + "/api",
+                50, Duration.ofMillis(200), Duration.ofSeconds(30), "HashMap 的实现原理是什么?")).run();
+
+        assertEquals(0, report.failed(), report::toString);
+        assertEquals(50, report.completed());
+        assertTrue(report.timeToFirstToken().p50() >= FIRST_TOKEN_DELAY.toMillis(), report::toString);
+        assertTrue(report.frames() >= 50);
+        assertTrue(models.chatRequests() >= 50);
+    }
+}
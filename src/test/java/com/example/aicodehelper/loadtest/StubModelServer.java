@@ -0,0 +1,288 @@
+package com.example.aicodehelper.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地的模型桩服务, 实现 GitHub Models (Azure AI Inference) 的 /chat/completions 和 /embeddings
+ * <p>
+ * 流式回答按设定的首 token 延迟和吐字速率输出, 可按比例注入错误; 向量按词哈希生成, 同样的文本总是得到同样的向量.
+ * 每个连接一个虚拟线程, 几千个并发流不会耗尽线程.
+ */
+public class StubModelServer implements AutoCloseable {
+
+    /**
+     * @param firstTokenDelay 收到请求到输出第一个 token 的时间
+     * @param tokensPerSecond 每个流的吐字速率
+     * @param answerTokens    每个回答的 token 数
+     * @param errorRate       返回 errorStatus 的请求比例
+     * @param errorStatus     注入的错误状态码, 例如 429 或 500
+     */
+    public record Settings(Duration firstTokenDelay, double tokensPerSecond, int answerTokens,
+                           double errorRate, int errorStatus) {
+
+        public static Settings defaults() {
+            return new Settings(Duration.ofMillis(300), 50, 100, 0, 500);
+        }
+
+        /**
+         * 从 stub.* 系统属性读取, 未设置的沿用默认值
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            return new Settings(
+                    Duration.ofMillis(Long.getLong("stub.first-token-delay-ms", defaults.firstTokenDelay().toMillis())),
+                    Double.parseDouble(System.getProperty("stub.tokens-per-second", String.valueOf(defaults.tokensPerSecond()))),
+                    Integer.getInteger("stub.answer-tokens", defaults.answerTokens()),
+                    Double.parseDouble(System.getProperty("stub.error-rate", String.valueOf(defaults.errorRate()))),
+                    Integer.getInteger("stub.error-status", defaults.errorStatus()));
+        }
+    }
+
+    private static final int EMBEDDING_DIMENSION = 64;
+
+    private static final String[] WORDS = {"HashMap ", "的", "底层", "是", "数组", "加", "链表", ", ", "JDK8 ", "之后",
+            "链表", "过长", "会", "转成", "红黑树", "。"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final HttpsServer server;
+
+    private final Settings settings;
+
+    private final AtomicLong chatRequests = new AtomicLong();
+
+    private final AtomicLong embeddingRequests = new AtomicLong();
+
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    public StubModelServer(Settings settings) throws IOException, GeneralSecurityException {
+        this.settings = settings;
+        server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.setHttpsConfigurator(new HttpsConfigurator(StubTls.serverContext()));
+        server.setExecutor(executor);
+        server.createContext("/chat/completions", this::chat);
+        server.createContext("/embeddings", this::embeddings);
+        server.start();
+    }
+
+    /**
+     * 配置给 langchain4j.github-models.endpoint 的地址
+     */
+    public String endpoint() {
+        return "https://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long chatRequests() {
+        return chatRequests.get();
+    }
+
+    public long embeddingRequests() {
+        return embeddingRequests.get();
+    }
+
+    public long injectedErrors() {
+        return injectedErrors.get();
+    }
+
+    private void chat(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            chatRequests.incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            if (injectError(exchange)) {
+                return;
+            }
+            String model = request.path("model").asText("stub");
+            int promptTokens = request.path("messages").toString().length() / 4;
+            // 学习报告要求结构化输出, 返回符合 Report 的 JSON
+            boolean report = request.toString().contains("suggestionList");
+            if (request.path("stream").asBoolean(false)) {
+                stream(exchange, model, promptTokens, report);
+            } else {
+                String content = report ? reportJson() : answer();
+                ObjectNode response = completion(model, "chat.completion");
+                ObjectNode choice = response.putArray("choices").addObject();
+                choice.put("index", 0);
+                choice.put("finish_reason", "stop");
+                ObjectNode message = choice.putObject("message");
+                message.put("role", "assistant");
+                message.put("content", content);
+                usage(response, promptTokens, settings.answerTokens());
+                sendJson(exchange, response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, int promptTokens, boolean report)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        Thread.sleep(settings.firstTokenDelay().toMillis());
+        long intervalNanos = (long) (1_000_000_000L / settings.tokensPerSecond());
+        long next = System.nanoTime();
+        String[] tokens = report ? new String[]{reportJson()} : null;
+        int count = report ? 1 : settings.answerTokens();
+        for (int i = 0; i < count; i++) {
+            ObjectNode chunk = completion(model, "chat.completion.chunk");
+            ObjectNode choice = chunk.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putNull("finish_reason");
+            ObjectNode delta = choice.putObject("delta");
+            if (i == 0) {
+                delta.put("role", "assistant");
+            }
+            delta.put("content", tokens != null ? tokens[i] : WORDS[i % WORDS.length]);
+            writeEvent(out, objectMapper.writeValueAsString(chunk));
+            next += intervalNanos;
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+            }
+        }
+        ObjectNode last = completion(model, "chat.completion.chunk");
+        ObjectNode choice = last.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.put("finish_reason", "stop");
+        choice.putObject("delta");
+        usage(last, promptTokens, count);
+        writeEvent(out, objectMapper.writeValueAsString(last));
+        writeEvent(out, "[DONE]");
+    }
+
+    private void embeddings(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            embeddingRequests.incrementAndGet();
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            if (injectError(exchange)) {
+                return;
+            }
+            ObjectNode response = objectMapper.createObjectNode();
+            response.put("id", UUID.randomUUID().toString());
+            response.put("object", "list");
+            response.put("model", request.path("model").asText("stub"));
+            ArrayNode data = response.putArray("data");
+            int tokens = 0;
+            JsonNode input = request.path("input");
+            for (int i = 0; i < input.size(); i++) {
+                String text = input.get(i).asText();
+                tokens += text.length() / 4 + 1;
+                ObjectNode item = data.addObject();
+                item.put("object", "embedding");
+                item.put("index", i);
+                ArrayNode vector = item.putArray("embedding");
+                for (float v : embed(text)) {
+                    vector.add(v);
+                }
+            }
+            ObjectNode usage = response.putObject("usage");
+            usage.put("prompt_tokens", tokens);
+            usage.put("total_tokens", tokens);
+            sendJson(exchange, response);
+        }
+    }
+
+    private boolean injectError(HttpExchange exchange) throws IOException {
+        if (settings.errorRate() <= 0 || ThreadLocalRandom.current().nextDouble() >= settings.errorRate()) {
+            return false;
+        }
+        injectedErrors.incrementAndGet();
+        byte[] body = ("{\"error\":{\"code\":\"stub\",\"message\":\"injected " + settings.errorStatus() + "\"}}")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(settings.errorStatus(), body.length);
+        exchange.getResponseBody().write(body);
+        return true;
+    }
+
+    private ObjectNode completion(String model, String object) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", "stub-" + UUID.randomUUID());
+        node.put("object", object);
+        node.put("created", System.currentTimeMillis() / 1000);
+        node.put("model", model);
+        return node;
+    }
+
+    private static void usage(ObjectNode node, int promptTokens, int completionTokens) {
+        ObjectNode usage = node.putObject("usage");
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+    }
+
+    private String answer() {
+        StringBuilder answer = new StringBuilder();
+        for (int i = 0; i < settings.answerTokens(); i++) {
+            answer.append(WORDS[i % WORDS.length]);
+        }
+        return answer.toString();
+    }
+
+    private static String reportJson() {
+        return "{\"name\":\"stub\",\"suggestionList\":[\"复习集合框架\",\"练习并发编程\"]}";
+    }
+
+    /**
+     * 按字符二元组哈希到固定维度并归一化
+     */
+    static float[] embed(String text) {
+        float[] vector = new float[EMBEDDING_DIMENSION];
+        for (int i = 0; i + 1 < text.length(); i++) {
+            int hash = text.substring(i, i + 2).hashCode() * 0x9E3779B1;
+            vector[Math.floorMod(hash, EMBEDDING_DIMENSION)] += (hash & 1) == 0 ? 1 : -1;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            vector[0] = 1;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private void sendJson(HttpExchange exchange, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
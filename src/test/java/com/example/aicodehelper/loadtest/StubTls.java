@@ -0,0 +1,104 @@
+package com.example.aicodehelper.loadtest;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 桩服务用的自签名证书
+ * <p>
+ * GitHub Models 客户端 (Azure SDK) 只允许通过 HTTPS 发送密钥, 桩服务因此也要走 TLS. 证书在运行时用 JDK 自带的
+ * keytool 生成, 并通过 javax.net.ssl.trustStore 让同一进程里的客户端信任它, 仓库里不放密钥文件.
+ * 这会改变整个 JVM 的默认信任库, 所以压测测试在单独的 surefire 执行里跑 (见 pom.xml), 结束后恢复原来的设置.
+ */
+final class StubTls {
+
+    private static final char[] PASSWORD = "loadtest".toCharArray();
+
+    private static final List<String> TRUST_PROPERTIES = List.of(
+            "javax.net.ssl.trustStore", "javax.net.ssl.trustStorePassword", "javax.net.ssl.trustStoreType");
+
+    // trustInThisJvm 之前的系统属性, 值为 null 表示原来没有设置
+    private static Map<String, String> previousTrust;
+
+    private static volatile Path keyStore;
+
+    private StubTls() {
+    }
+
+    static synchronized SSLContext serverContext() throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStore())) {
+            store.load(in, PASSWORD);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(store, PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * 让本进程的 HTTPS 客户端信任桩服务的证书, 必须在第一次建立 TLS 连接之前调用
+     */
+    static synchronized void trustInThisJvm() throws IOException {
+        if (previousTrust == null) {
+            previousTrust = new HashMap<>();
+            TRUST_PROPERTIES.forEach(name -> previousTrust.put(name, System.getProperty(name)));
+        }
+        System.setProperty("javax.net.ssl.trustStore", keyStore().toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", new String(PASSWORD));
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+    }
+
+    /**
+     * 恢复 {@link #trustInThisJvm} 之前的信任库设置
+     */
+    static synchronized void restoreTrust() {
+        if (previousTrust == null) {
+            return;
+        }
+        previousTrust.forEach((name, value) -> {
+            if (value == null) {
+                System.clearProperty(name);
+            } else {
+                System.setProperty(name, value);
+            }
+        });
+        previousTrust = null;
+    }
+
+    private static Path keyStore() throws IOException {
+        if (keyStore != null) {
+            return keyStore;
+        }
+        Path file = Files.createTempDirectory("stub-tls").resolve("stub.p12");
+        Path keytool = Path.of(System.getProperty("java.home"), "bin", "keytool");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "stub",
+                "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "30", "-dname", "CN=localhost",
+                "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-storetype", "PKCS12",
+                "-keystore", file.toString(), "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        try {
+            String output = new String(process.getInputStream().readAllBytes());
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed: " + output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("keytool interrupted", e);
+        }
+        file.toFile().deleteOnExit();
+        keyStore = file;
+        return file;
+    }
+}